@@ -4,6 +4,8 @@ import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.WindowManager;
 import components.ConfigDialog;
 import entity.Config;
 import org.jetbrains.annotations.NotNull;
@@ -11,10 +13,10 @@ import trackers.EyeTracker;
 import trackers.IDETracker;
 import trackers.ScreenRecorder;
 import utils.AvailabilityChecker;
+import utils.EventJournal;
 
 import javax.swing.*;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
 import java.io.IOException;
 import java.util.Objects;
 
@@ -39,6 +41,11 @@ public class StartStopTrackingAction extends AnAction {
      * This variable is the screen recorder.
      */
     private final ScreenRecorder screenRecorder = ScreenRecorder.getInstance();
+    /**
+     * This variable is the journal of the tracking data, used to recover the data if the IDE crashes before the
+     * tracking is stopped.
+     */
+    private static EventJournal eventJournal;
     /**
      * This variable is the configuration.
      */
@@ -92,16 +99,31 @@ public class StartStopTrackingAction extends AnAction {
 
                 if (config.getCheckBoxes().get(2)) {
                     screenRecorder.setDataOutputPath(realDataOutputPath);
+                    screenRecorder.setFrameQueuePolicy(config.getFrameQueuePolicy());
+                    screenRecorder.setFrameRate(config.getScreenFrameRate());
+                    screenRecorder.setCaptureRegion(config.getCaptureRegion());
+                    screenRecorder.setCaptureWindow(WindowManager.getInstance().getFrame(e.getProject()));
+                    screenRecorder.setCaptureScale(config.getCaptureScale());
+                    screenRecorder.setGrayscale(config.isGrayscale());
+                    screenRecorder.setEncoderProfile(config.getEncoderProfile());
                     screenRecorder.startRecording();
                 }
 
+                eventJournal = new EventJournal(realDataOutputPath + "journal.bin");
                 iDETracker = IDETracker.getInstance();
+                iDETracker.setEventJournal(eventJournal);
                 iDETracker.setProjectPath(projectPath);
                 iDETracker.setDataOutputPath(realDataOutputPath);
+                iDETracker.setOutputFormat(config.getOutputFormat());
+                iDETracker.setMouseCoalescing(config.getMouseCoalescing());
+                iDETracker.setTypingBurst(config.isTypingBurst());
+                iDETracker.setArchiveQuietPeriod(config.getArchiveQuietPeriod());
+                iDETracker.setArchiveMaxLatency(config.getArchiveMaxLatency());
                 iDETracker.startTracking(e.getProject());
 
                 if (config.getCheckBoxes().get(1)) {
                     eyeTracker = new EyeTracker(iDETracker);
+                    eyeTracker.setEventJournal(eventJournal);
                     eyeTracker.setProjectPath(projectPath);
                     eyeTracker.setDataOutputPath(realDataOutputPath);
                     eyeTracker.setPythonInterpreter(config.getPythonInterpreter());
@@ -109,6 +131,10 @@ public class StartStopTrackingAction extends AnAction {
                     // Set dominant eye
                     eyeTracker.setDominantEye(config.getDominantEye());
                     eyeTracker.setDeviceIndex(config.getEyeTrackerDevice());
+                    eyeTracker.setGazeFormat(config.getGazeFormat());
+                    eyeTracker.setFixationAlgorithm(config.getFixationAlgorithm());
+                    eyeTracker.setRawGazeOutput(config.isRawGazeOutput());
+                    eyeTracker.setOutputFormat(config.getOutputFormat());
                     eyeTracker.setPythonScriptTobii();
                     eyeTracker.setPythonScriptMouse();
                     eyeTracker.startTracking(e.getProject());
@@ -118,6 +144,7 @@ public class StartStopTrackingAction extends AnAction {
             } else {
                 isTracking = false;
                 iDETracker.stopTracking();
+                Disposer.dispose(iDETracker);
                 AddLabelAction.setIsEnabled(false);
                 ConfigAction.setIsEnabled(true);
                 if (config.getCheckBoxes().get(1) && eyeTracker != null) {
@@ -127,8 +154,11 @@ public class StartStopTrackingAction extends AnAction {
                     screenRecorder.stopRecording();
                 }
                 eyeTracker = null;
+                // the tracking data is complete, so the journal is no longer needed
+                eventJournal.delete();
+                eventJournal = null;
             }
-        } catch (ParserConfigurationException | TransformerException | IOException | InterruptedException ex) {
+        } catch (ParserConfigurationException | IOException | InterruptedException ex) {
             throw new RuntimeException(ex);
         }
     }
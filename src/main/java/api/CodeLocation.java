@@ -0,0 +1,111 @@
+package api;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This record is the source code element a gaze or fixation is mapped to, i.e., the {@code <location>} and
+ * {@code <ast_structure>} elements of the data files.
+ *
+ * @param path   The relative path of the file.
+ * @param line   The line in the file.
+ * @param column The column in the file.
+ * @param x      The x coordinate on the screen.
+ * @param y      The y coordinate on the screen.
+ * @param token  The token looked at, or an empty string if there is none.
+ * @param type   The type of the token.
+ * @param levels The AST ancestry of the token, from the innermost level. Unlike the {@code <ast_structure>} element of
+ *               the data files, which leaves out the levels if the token is the same as the previous one, the levels of
+ *               a published event are always complete.
+ */
+public record CodeLocation(String path, int line, int column, int x, int y, String token, String type,
+                           List<Level> levels) {
+    /**
+     * This record is a level of the AST ancestry.
+     *
+     * @param tag   The type of the PSI element.
+     * @param start The start position as {@code line:column}.
+     * @param end   The end position as {@code line:column}.
+     */
+    public record Level(String tag, String start, String end) {
+    }
+
+    public CodeLocation {
+        levels = List.copyOf(levels);
+    }
+
+    /**
+     * Read the location of a mapped gaze or fixation element.
+     *
+     * @param element The gaze or fixation element.
+     * @return The location, or {@code null} if the element is not mapped to the source code.
+     */
+    static CodeLocation fromElement(Element element) {
+        return fromElement(element, null);
+    }
+
+    /**
+     * Read the location of a mapped gaze or fixation element with the given AST ancestry, e.g., if the element leaves
+     * out its levels because its token is the same as the previous one.
+     *
+     * @param element The gaze or fixation element.
+     * @param levels  The AST ancestry, or {@code null} to read it from the element.
+     * @return The location, or {@code null} if the element is not mapped to the source code.
+     */
+    static CodeLocation fromElement(Element element, List<Level> levels) {
+        Element location = Elements.getChild(element, "location");
+        if (location == null) {
+            return null;
+        }
+        Element aSTStructure = Elements.getChild(element, "ast_structure");
+        boolean isReadingLevels = levels == null;
+        if (isReadingLevels) {
+            levels = new ArrayList<>();
+        }
+        String token = "", type = "";
+        if (aSTStructure != null) {
+            token = aSTStructure.getAttribute("token");
+            type = aSTStructure.getAttribute("type");
+            for (Node node = aSTStructure.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (isReadingLevels && node instanceof Element level) {
+                    levels.add(new Level(level.getAttribute("tag"), level.getAttribute("start"),
+                            level.getAttribute("end")));
+                }
+            }
+        }
+        return new CodeLocation(location.getAttribute("path"), Elements.getInt(location, "line"),
+                Elements.getInt(location, "column"), Elements.getInt(location, "x"), Elements.getInt(location, "y"),
+                token, type, levels);
+    }
+
+    /**
+     * Append the {@code <location>} and {@code <ast_structure>} elements to the gaze or fixation element.
+     *
+     * @param document The document to create the elements with.
+     * @param element  The gaze or fixation element.
+     */
+    void appendTo(Document document, Element element) {
+        Element location = document.createElement("location");
+        location.setAttribute("x", String.valueOf(x));
+        location.setAttribute("y", String.valueOf(y));
+        location.setAttribute("line", String.valueOf(line));
+        location.setAttribute("column", String.valueOf(column));
+        location.setAttribute("path", path);
+        element.appendChild(location);
+        Element aSTStructure = document.createElement("ast_structure");
+        aSTStructure.setAttribute("token", token);
+        aSTStructure.setAttribute("type", type);
+        for (Level level : levels) {
+            Element levelElement = document.createElement("level");
+            levelElement.setAttribute("tag", level.tag());
+            levelElement.setAttribute("start", level.start());
+            levelElement.setAttribute("end", level.end());
+            aSTStructure.appendChild(levelElement);
+        }
+        element.appendChild(aSTStructure);
+    }
+}
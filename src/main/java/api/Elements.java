@@ -0,0 +1,55 @@
+package api;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * This class contains the helpers to read the attributes of the tracking elements into the event records. A missing or
+ * malformed attribute reads as {@code NaN} or {@code -1}, as the tracking elements are not validated.
+ */
+final class Elements {
+    private Elements() {
+    }
+
+    static double getDouble(Element element, String name) {
+        String value = element.getAttribute(name);
+        try {
+            return value.isEmpty() ? Double.NaN : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    static long getLong(Element element, String name) {
+        String value = element.getAttribute(name);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            double number = getDouble(element, name);
+            return Double.isNaN(number) ? -1 : (long) number;
+        }
+    }
+
+    static int getInt(Element element, String name) {
+        return (int) getLong(element, name);
+    }
+
+    static String getString(Element element, String name) {
+        return element.hasAttribute(name) ? element.getAttribute(name) : null;
+    }
+
+    static Element getChild(Element element, String tagName) {
+        for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node instanceof Element child && child.getTagName().equals(tagName)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    static void setAttribute(Element element, String name, String value) {
+        if (value != null) {
+            element.setAttribute(name, value);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package api;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * This class is the real-time event bus of the trackers. The trackers publish immutable {@link TrackingEvent}s into a
+ * ring buffer without taking a lock, and every subscription reads the ring with its own cursor, either on its own thread
+ * (push) or when the caller drains it (pull), so a slow subscriber does not block the trackers or the other subscribers
+ * (unless it uses {@link OverflowPolicy#BLOCK}). See also {@link TrackingPublisher} for the
+ * {@link java.util.concurrent.Flow} interface.
+ * <p>
+ * The ring works like a multi-producer Disruptor: a producer claims the next sequence with an atomic increment and
+ * stores the event with its sequence in the slot {@code sequence % capacity}. A subscriber waits until the slot of its
+ * cursor holds its sequence, and if the slot already holds a later one, the events in between were overwritten and are
+ * counted as dropped. Nothing is stored while there are no subscriptions.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * EventBus.Subscription subscription = EventBus.getInstance().subscribe("Printer",
+ *         EnumSet.of(EventFamily.FIXATION), OverflowPolicy.DROP_OLDEST,
+ *         event -> System.out.println(((Fixation) event).location()));
+ * // ...
+ * subscription.close();
+ * }</pre>
+ */
+public final class EventBus {
+    private static final Logger LOG = Logger.getInstance(EventBus.class);
+
+    /**
+     * The default number of events in the ring.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+    /**
+     * The number of times a subscription checks for the next event before it parks its thread, as parking and waking
+     * up a thread costs much more than an event while the events are frequent.
+     */
+    private static final int SPIN_COUNT = 1000;
+    /**
+     * The time a subscription waits for an event before checking again, in case a wakeup is missed.
+     */
+    private static final long WAIT_NANOS = 10_000_000;
+    /**
+     * The time a producer waits for a {@link OverflowPolicy#BLOCK} subscription before checking again.
+     */
+    private static final long BLOCK_WAIT_NANOS = 50_000;
+
+    private static final EventBus eventBus = new EventBus(DEFAULT_CAPACITY);
+
+    /**
+     * This record is an event in the ring together with its sequence.
+     */
+    private record Slot(long sequence, TrackingEvent event) {
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<Slot> slots;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean hasBlockingSubscriptions = false;
+
+    /**
+     * Create the event bus.
+     *
+     * @param capacity The number of events in the ring, which must be a power of two.
+     */
+    public EventBus(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two: " + capacity);
+        }
+        this.capacity = capacity;
+        mask = capacity - 1;
+        slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Get the event bus the trackers publish to.
+     *
+     * @return The event bus.
+     */
+    public static EventBus getInstance() {
+        return eventBus;
+    }
+
+    /**
+     * Check whether there is any subscription, so that the producers can skip creating the events otherwise.
+     *
+     * @return Whether there is any subscription.
+     */
+    public boolean hasSubscriptions() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Publish an event to all the subscriptions. It does not wait unless a {@link OverflowPolicy#BLOCK} subscription
+     * is a whole ring behind.
+     *
+     * @param event The event.
+     */
+    public void publish(TrackingEvent event) {
+        if (subscriptions.isEmpty()) return;
+        long sequence = nextSequence.getAndIncrement();
+        if (hasBlockingSubscriptions) {
+            awaitBlockingSubscriptions(sequence);
+        }
+        int index = (int) sequence & mask;
+        Slot slot = new Slot(sequence, event);
+        Slot current;
+        do {
+            current = slots.get(index);
+            // a producer stalled for a whole ring must not overwrite a later event
+            if (current != null && current.sequence > sequence) return;
+        } while (!slots.compareAndSet(index, current, slot));
+        for (Subscription subscription : subscriptions) {
+            subscription.wake();
+        }
+    }
+
+    /**
+     * Subscribe to the events of the given families. The handler is called on a new daemon thread of the
+     * subscription, in the order of the sequences, starting with the events published after this call.
+     *
+     * @param name     The name of the subscription, used for the thread.
+     * @param families The families of the events to handle.
+     * @param policy   The overflow policy.
+     * @param handler  The handler of the events.
+     * @return The subscription, which must be closed when it is no longer needed.
+     */
+    public Subscription subscribe(String name, Set<EventFamily> families, OverflowPolicy policy,
+                                  Consumer<? super TrackingEvent> handler) {
+        Subscription subscription = new Subscription(name, families, policy, handler, nextSequence.get());
+        subscriptions.add(subscription);
+        updateBlockingSubscriptions();
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Subscribe to the events of the given families without a thread. The events are pulled with the {@code drain}
+     * methods of the subscription, starting with the events published after this call. With
+     * {@link OverflowPolicy#BLOCK}, the trackers wait whenever the subscription is not drained for a whole ring.
+     *
+     * @param families The families of the events to pull.
+     * @param policy   The overflow policy.
+     * @return The subscription, which must be closed when it is no longer needed.
+     */
+    public Subscription poll(Set<EventFamily> families, OverflowPolicy policy) {
+        Subscription subscription = new Subscription(null, families, policy, null, nextSequence.get());
+        subscriptions.add(subscription);
+        updateBlockingSubscriptions();
+        return subscription;
+    }
+
+    private void updateBlockingSubscriptions() {
+        hasBlockingSubscriptions = subscriptions.stream().anyMatch(s -> s.policy == OverflowPolicy.BLOCK);
+    }
+
+    private void awaitBlockingSubscriptions(long sequence) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.policy != OverflowPolicy.BLOCK || subscription.thread == Thread.currentThread()) continue;
+            while (sequence - subscription.cursor.get() >= capacity && subscription.isActive) {
+                LockSupport.parkNanos(BLOCK_WAIT_NANOS);
+            }
+        }
+    }
+
+    /**
+     * This class is a subscription of the event bus with its own cursor. A subscription from
+     * {@link #subscribe(String, Set, OverflowPolicy, Consumer)} pushes the events to its handler on its own thread, and
+     * a subscription from {@link #poll(Set, OverflowPolicy)} is drained by the caller.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final Set<EventFamily> families;
+        private final OverflowPolicy policy;
+        private final Consumer<? super TrackingEvent> handler;
+        private final Thread thread;
+        /**
+         * The sequence of the next event to read, only used by the reader of the subscription.
+         */
+        private long sequence;
+        /**
+         * The sequence of the next event to read for the other threads. It and the counts are only written by the
+         * reader of the subscription, with lazy sets, as the other threads do not need them immediately.
+         */
+        private final AtomicLong cursor;
+        private final AtomicLong handledCount = new AtomicLong();
+        private final AtomicLong droppedCount = new AtomicLong();
+        private volatile boolean isActive = true;
+        private volatile boolean isWaiting = false;
+
+        private Subscription(String name, Set<EventFamily> families, OverflowPolicy policy,
+                             Consumer<? super TrackingEvent> handler, long cursor) {
+            this.families = families.isEmpty() ? EnumSet.noneOf(EventFamily.class) : EnumSet.copyOf(families);
+            this.policy = policy;
+            this.handler = handler;
+            this.sequence = cursor;
+            this.cursor = new AtomicLong(cursor);
+            if (handler != null) {
+                thread = new Thread(this::run, "CodeGRITS Event Bus " + name);
+                thread.setDaemon(true);
+            } else {
+                thread = null;
+            }
+        }
+
+        private void run() {
+            while (isActive) {
+                TrackingEvent event = next();
+                if (event == null) {
+                    await(sequence);
+                    continue;
+                }
+                try {
+                    handler.accept(event);
+                } catch (RuntimeException e) {
+                    LOG.warn("Failed to handle the " + event.family() + " event in " + thread.getName(), e);
+                }
+            }
+        }
+
+        /**
+         * Read the next event of the subscribed families, skipping the dropped events.
+         *
+         * @return The event, or {@code null} if there is no event to read now.
+         */
+        private TrackingEvent next() {
+            while (true) {
+                Slot slot = slots.get((int) sequence & mask);
+                if (slot == null || slot.sequence < sequence) return null;
+                long next = sequence + 1;
+                if (slot.sequence > sequence) {
+                    // lapped by the producers, so skip to the oldest event that can still be in the ring
+                    next = Math.max(next, nextSequence.get() - capacity);
+                    droppedCount.lazySet(droppedCount.get() + next - sequence);
+                    cursor.lazySet(sequence = next);
+                    continue;
+                }
+                if (policy == OverflowPolicy.SAMPLE) {
+                    long lag = nextSequence.get() - next;
+                    if (lag > capacity / 2) {
+                        long skipped = lag / (capacity / 2);
+                        droppedCount.lazySet(droppedCount.get() + skipped);
+                        next += skipped;
+                    }
+                }
+                cursor.lazySet(sequence = next);
+                TrackingEvent event = slot.event;
+                if (families.contains(event.family())) {
+                    handledCount.lazySet(handledCount.get() + 1);
+                    return event;
+                }
+            }
+        }
+
+        /**
+         * Move the available events into the buffer. The events are immutable, so they are not copied.
+         *
+         * @param buffer The buffer.
+         * @param offset The index of the buffer to start at.
+         * @param length The maximum number of events.
+         * @return The number of events moved, which is 0 if there is no event to read now.
+         * @throws IllegalStateException If the subscription has a handler.
+         */
+        public synchronized int drain(TrackingEvent[] buffer, int offset, int length) {
+            checkPull();
+            int count = 0;
+            TrackingEvent event;
+            while (count < length && (event = next()) != null) {
+                buffer[offset + count++] = event;
+            }
+            return count;
+        }
+
+        /**
+         * Move the available gazes into the arrays, i.e., their timestamps and their coordinates on the screen, without
+         * allocating. The other events of the subscribed families are skipped, so the subscription should only be for
+         * {@link EventFamily#GAZE}.
+         *
+         * @param timestamps The array of the timestamps.
+         * @param xs         The array of the x coordinates.
+         * @param ys         The array of the y coordinates.
+         * @param offset     The index of the arrays to start at.
+         * @param length     The maximum number of gazes.
+         * @return The number of gazes moved, which is 0 if there is no gaze to read now.
+         * @throws IllegalStateException If the subscription has a handler.
+         */
+        public synchronized int drainGazes(long[] timestamps, int[] xs, int[] ys, int offset, int length) {
+            checkPull();
+            int count = 0;
+            TrackingEvent event;
+            while (count < length && (event = next()) != null) {
+                if (event instanceof GazeSample gaze && gaze.location() != null) {
+                    timestamps[offset + count] = gaze.timestamp();
+                    xs[offset + count] = gaze.location().x();
+                    ys[offset + count] = gaze.location().y();
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void checkPull() {
+            if (thread != null) {
+                throw new IllegalStateException("The events of the subscription are pushed to its handler");
+            }
+        }
+
+        private void await(long sequence) {
+            int index = (int) sequence & mask;
+            for (int i = 0; i < SPIN_COUNT; i++) {
+                Slot slot = slots.get(index);
+                if (slot != null && slot.sequence >= sequence) return;
+                Thread.onSpinWait();
+            }
+            isWaiting = true;
+            Slot slot = slots.get(index);
+            if (isActive && (slot == null || slot.sequence < sequence)) {
+                LockSupport.parkNanos(this, WAIT_NANOS);
+            }
+            isWaiting = false;
+        }
+
+        private void wake() {
+            if (isWaiting && thread != null) {
+                isWaiting = false;
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * Get the number of events handled or drained so far.
+         *
+         * @return The number of events.
+         */
+        public long getHandledCount() {
+            return handledCount.get();
+        }
+
+        /**
+         * Get the number of events dropped so far because the subscription could not keep up, of all families.
+         *
+         * @return The number of events.
+         */
+        public long getDroppedCount() {
+            return droppedCount.get();
+        }
+
+        /**
+         * Unsubscribe. The thread stops after the event it is handling, without waiting for the events left in the
+         * ring. It can be called from the handler.
+         */
+        @Override
+        public void close() {
+            isActive = false;
+            subscriptions.remove(this);
+            updateBlockingSubscriptions();
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        /**
+         * Check whether the subscription is still subscribed.
+         *
+         * @return Whether the subscription is not closed.
+         */
+        public boolean isActive() {
+            return isActive;
+        }
+    }
+}
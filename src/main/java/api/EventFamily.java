@@ -0,0 +1,44 @@
+package api;
+
+/**
+ * This enum is the family of a real-time tracking event, which subscribers of the {@link EventBus} can filter on. Each
+ * family corresponds to a section of the {@code eye_tracking.xml} or {@code ide_tracking.xml} file.
+ */
+public enum EventFamily {
+    /**
+     * The gazes mapped to the source code, i.e., {@link GazeSample}.
+     */
+    GAZE,
+    /**
+     * The fixations mapped to the source code, i.e., {@link Fixation}.
+     */
+    FIXATION,
+    /**
+     * The {@code <action>} elements.
+     */
+    ACTION,
+    /**
+     * The {@code <typing>} and {@code <typing_burst>} elements.
+     */
+    TYPING,
+    /**
+     * The {@code <file>} elements.
+     */
+    FILE,
+    /**
+     * The {@code <mouse>} and {@code <mouse_path>} elements.
+     */
+    MOUSE,
+    /**
+     * The {@code <caret>} elements.
+     */
+    CARET,
+    /**
+     * The {@code <selection>} elements.
+     */
+    SELECTION,
+    /**
+     * The {@code <visible_area>} elements.
+     */
+    VISIBLE_AREA
+}
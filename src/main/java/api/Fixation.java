@@ -0,0 +1,80 @@
+package api;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.List;
+
+/**
+ * This record is a fixation mapped to the source code, i.e., a {@code <fixation>} element of the
+ * {@code eye_tracking.xml} file with a location.
+ *
+ * @param start       The timestamp of the first gaze of the fixation in milliseconds since the epoch.
+ * @param end         The timestamp of the last gaze of the fixation.
+ * @param x           The x coordinate of the centroid on the screen.
+ * @param y           The y coordinate of the centroid on the screen.
+ * @param sampleCount The number of gazes in the fixation.
+ * @param aoi         The AOI of the fixation.
+ * @param location    The source code element the fixation is mapped to.
+ */
+public record Fixation(long start, long end, int x, int y, int sampleCount, String aoi, CodeLocation location)
+        implements TrackingEvent {
+    /**
+     * Read a mapped {@code <fixation>} element.
+     *
+     * @param fixation The fixation element.
+     * @return The fixation.
+     */
+    public static Fixation fromElement(Element fixation) {
+        return fromElement(fixation, null);
+    }
+
+    /**
+     * Read a mapped {@code <fixation>} element with the given AST ancestry of its location.
+     *
+     * @param fixation The fixation element.
+     * @param levels   The AST ancestry, or {@code null} to read it from the element.
+     * @return The fixation.
+     */
+    public static Fixation fromElement(Element fixation, List<CodeLocation.Level> levels) {
+        return new Fixation(Elements.getLong(fixation, "start"), Elements.getLong(fixation, "end"),
+                Elements.getInt(fixation, "x"), Elements.getInt(fixation, "y"),
+                Elements.getInt(fixation, "sample_count"), Elements.getString(fixation, "AOI"),
+                CodeLocation.fromElement(fixation, levels));
+    }
+
+    /**
+     * Get the duration of the fixation in milliseconds.
+     *
+     * @return The duration.
+     */
+    public long duration() {
+        return end - start;
+    }
+
+    @Override
+    public EventFamily family() {
+        return EventFamily.FIXATION;
+    }
+
+    @Override
+    public long timestamp() {
+        return start;
+    }
+
+    @Override
+    public Element toElement(Document document) {
+        Element fixation = document.createElement("fixation");
+        fixation.setAttribute("start", String.valueOf(start));
+        fixation.setAttribute("end", String.valueOf(end));
+        fixation.setAttribute("duration", String.valueOf(duration()));
+        fixation.setAttribute("x", String.valueOf(x));
+        fixation.setAttribute("y", String.valueOf(y));
+        fixation.setAttribute("sample_count", String.valueOf(sampleCount));
+        Elements.setAttribute(fixation, "AOI", aoi);
+        if (location != null) {
+            location.appendTo(document, fixation);
+        }
+        return fixation;
+    }
+}
@@ -0,0 +1,91 @@
+package api;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.util.List;
+
+/**
+ * This record is a gaze mapped to the source code, i.e., a {@code <gaze>} element of the {@code eye_tracking.xml} file
+ * with a location.
+ *
+ * @param timestamp The timestamp of the gaze in milliseconds since the epoch.
+ * @param leftEye   The data of the left eye.
+ * @param rightEye  The data of the right eye.
+ * @param aoi       The AOI of the gaze.
+ * @param location  The source code element the gaze is mapped to.
+ */
+public record GazeSample(long timestamp, Eye leftEye, Eye rightEye, String aoi, CodeLocation location)
+        implements TrackingEvent {
+    /**
+     * This record is the data of an eye. A value the eye tracker does not report is {@code NaN}.
+     *
+     * @param gazePointX    The x coordinate of the gaze point, as a ratio of the screen width.
+     * @param gazePointY    The y coordinate of the gaze point, as a ratio of the screen height.
+     * @param gazeValidity  The validity of the gaze point.
+     * @param pupilDiameter The diameter of the pupil in millimeters.
+     * @param pupilValidity The validity of the pupil diameter.
+     */
+    public record Eye(double gazePointX, double gazePointY, double gazeValidity, double pupilDiameter,
+                      double pupilValidity) {
+        private static Eye fromElement(Element eye) {
+            if (eye == null) {
+                return new Eye(Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+            }
+            return new Eye(Elements.getDouble(eye, "gaze_point_x"), Elements.getDouble(eye, "gaze_point_y"),
+                    Elements.getDouble(eye, "gaze_validity"), Elements.getDouble(eye, "pupil_diameter"),
+                    Elements.getDouble(eye, "pupil_validity"));
+        }
+
+        private Element toElement(Document document, String tagName) {
+            Element eye = document.createElement(tagName);
+            eye.setAttribute("gaze_point_x", String.valueOf(gazePointX));
+            eye.setAttribute("gaze_point_y", String.valueOf(gazePointY));
+            eye.setAttribute("gaze_validity", String.valueOf(gazeValidity));
+            eye.setAttribute("pupil_diameter", String.valueOf(pupilDiameter));
+            eye.setAttribute("pupil_validity", String.valueOf(pupilValidity));
+            return eye;
+        }
+    }
+
+    /**
+     * Read a mapped {@code <gaze>} element.
+     *
+     * @param gaze The gaze element.
+     * @return The gaze sample.
+     */
+    public static GazeSample fromElement(Element gaze) {
+        return fromElement(gaze, null);
+    }
+
+    /**
+     * Read a mapped {@code <gaze>} element with the given AST ancestry of its location.
+     *
+     * @param gaze   The gaze element.
+     * @param levels The AST ancestry, or {@code null} to read it from the element.
+     * @return The gaze sample.
+     */
+    public static GazeSample fromElement(Element gaze, List<CodeLocation.Level> levels) {
+        return new GazeSample(Elements.getLong(gaze, "timestamp"), Eye.fromElement(Elements.getChild(gaze, "left_eye")),
+                Eye.fromElement(Elements.getChild(gaze, "right_eye")), Elements.getString(gaze, "AOI"),
+                CodeLocation.fromElement(gaze, levels));
+    }
+
+    @Override
+    public EventFamily family() {
+        return EventFamily.GAZE;
+    }
+
+    @Override
+    public Element toElement(Document document) {
+        Element gaze = document.createElement("gaze");
+        gaze.setAttribute("timestamp", String.valueOf(timestamp));
+        Elements.setAttribute(gaze, "AOI", aoi);
+        gaze.appendChild(leftEye.toElement(document, "left_eye"));
+        gaze.appendChild(rightEye.toElement(document, "right_eye"));
+        if (location != null) {
+            location.appendTo(document, gaze);
+        }
+        return gaze;
+    }
+}
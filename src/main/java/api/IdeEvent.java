@@ -0,0 +1,96 @@
+package api;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This record is an event of the IDE tracker, i.e., an element of the {@code ide_tracking.xml} file such as
+ * {@code <caret>} or {@code <typing>}. The attributes are the same as in the data file (see the data format).
+ *
+ * @param family     The family of the event.
+ * @param tag        The tag name of the element.
+ * @param timestamp  The {@code timestamp} attribute, or the {@code start} attribute for the events with a duration.
+ * @param attributes The attributes of the element.
+ */
+public record IdeEvent(EventFamily family, String tag, long timestamp, Map<String, String> attributes)
+        implements TrackingEvent {
+    public IdeEvent {
+        attributes = Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+    }
+
+    /**
+     * Read a flat element of the {@code ide_tracking.xml} file.
+     *
+     * @param family  The family of the element.
+     * @param element The element.
+     * @return The IDE event.
+     */
+    public static IdeEvent fromElement(EventFamily family, Element element) {
+        NamedNodeMap attributeNodes = element.getAttributes();
+        Map<String, String> attributes = new LinkedHashMap<>(attributeNodes.getLength() * 2);
+        for (int i = 0; i < attributeNodes.getLength(); i++) {
+            Attr attribute = (Attr) attributeNodes.item(i);
+            attributes.put(attribute.getName(), attribute.getValue());
+        }
+        long timestamp = Elements.getLong(element, element.hasAttribute("timestamp") ? "timestamp" : "start");
+        return new IdeEvent(family, element.getTagName(), timestamp, attributes);
+    }
+
+    /**
+     * Get an attribute of the event.
+     *
+     * @param name The name of the attribute.
+     * @return The value, or {@code null} if the event does not have it.
+     */
+    public String attribute(String name) {
+        return attributes.get(name);
+    }
+
+    /**
+     * Get the {@code id} attribute of the event, e.g., {@code caretPositionChanged} or {@code EditorCopy}.
+     *
+     * @return The id, or {@code null} if the event does not have it.
+     */
+    public String id() {
+        return attributes.get("id");
+    }
+
+    /**
+     * Get the {@code path} attribute of the event, i.e., the path of its file.
+     *
+     * @return The path, or {@code null} if the event does not have it.
+     */
+    public String path() {
+        return attributes.get("path");
+    }
+
+    /**
+     * Get an integer attribute of the event, e.g., {@code line} or {@code column}.
+     *
+     * @param name         The name of the attribute.
+     * @param defaultValue The value if the event does not have the attribute or it is not an integer.
+     * @return The value.
+     */
+    public int getInt(String name, int defaultValue) {
+        String value = attributes.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public Element toElement(Document document) {
+        Element element = document.createElement(tag);
+        attributes.forEach(element::setAttribute);
+        return element;
+    }
+}
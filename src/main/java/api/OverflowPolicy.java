@@ -0,0 +1,21 @@
+package api;
+
+/**
+ * This enum is what a subscription of the {@link EventBus} does when its handler cannot keep up with the events.
+ */
+public enum OverflowPolicy {
+    /**
+     * The events overwritten in the ring before the subscriber reads them are dropped. The producers never wait.
+     */
+    DROP_OLDEST,
+    /**
+     * The producers wait for the subscriber before overwriting an event it has not read, so no event is dropped. A slow
+     * handler then slows down the trackers, including the UI thread of the IDE.
+     */
+    BLOCK,
+    /**
+     * Like {@link #DROP_OLDEST}, but once the subscriber is more than half the ring behind, it only handles every n-th
+     * event, where n grows with the lag. The handled events stay spread over time instead of leaving a gap.
+     */
+    SAMPLE
+}
@@ -1,31 +1,37 @@
 package api;
 
 import com.intellij.openapi.project.Project;
-import trackers.EyeTracker;
 import trackers.IDETracker;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.Socket;
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.function.Consumer;
 
 /**
- * This class provides the API for getting real-time data from the IDE and eye tracker.
+ * This class provides the API for getting real-time data from the IDE and eye tracker. While the IDE or eye tracker
+ * data is requested, the {@link StreamingServer} streams it to the local clients on {@link StreamingServer#DEFAULT_PORT},
+ * and the handlers get the JSON of each event, in the same format as the frames of the server.
  */
 public class RealtimeDataImpl {
 
     // make it singleton
     private static RealtimeDataImpl realtimeData = new RealtimeDataImpl();
-    Socket socket;
-    InputStream dataInputStream;
     private Consumer<String> ideTrackerDataHandler;
     private Consumer<String> eyeTrackerDataHandler;
     private static IDETracker ideTracker;
-    private static EyeTracker eyeTracker;
+    private static final Set<EventFamily> IDE_EVENT_FAMILIES = EnumSet.complementOf(
+            EnumSet.of(EventFamily.GAZE, EventFamily.FIXATION));
+    private static final Set<EventFamily> EYE_EVENT_FAMILIES = EnumSet.of(EventFamily.GAZE, EventFamily.FIXATION);
+    /**
+     * This variable is the streaming server, which runs while the IDE or eye tracker data is requested.
+     */
+    private StreamingServer streamingServer;
+    private boolean isIDEStreaming = false;
+    private boolean isEyeStreaming = false;
+    private EventBus.Subscription ideTrackerDataSubscription;
+    private EventBus.Subscription eyeTrackerDataSubscription;
 
     private RealtimeDataImpl() {
     }
@@ -38,55 +44,91 @@ public class RealtimeDataImpl {
         System.out.println("Hello World!");
     }
 
-    public void getRawIDETrackerData(Project project) throws ParserConfigurationException {
+    /**
+     * This method starts the IDE tracker and streams its data to the local clients.
+     *
+     * @param project The project.
+     * @throws ParserConfigurationException If the IDE tracker cannot be created.
+     * @throws IOException                  If the streaming server cannot be started or the IDE tracker cannot start.
+     */
+    public synchronized void getRawIDETrackerData(Project project) throws ParserConfigurationException, IOException {
+        startStreaming();
+        isIDEStreaming = true;
         ideTracker = IDETracker.getInstance();
         ideTracker.startTracking(project);
     }
 
-    public void getRawEyeTrackerData() {
-
+    /**
+     * This method streams the gazes and fixations of the running eye tracker to the local clients.
+     *
+     * @throws IOException If the streaming server cannot be started.
+     */
+    public synchronized void getRawEyeTrackerData() throws IOException {
+        startStreaming();
+        isEyeStreaming = true;
     }
 
-    public void stopIDETrackerData() throws TransformerException {
-        ideTracker.stopTracking();
+    /**
+     * This method stops the IDE tracker and its stream. The streaming server stops once no data is requested.
+     *
+     * @throws IOException If the IDE tracking data cannot be written.
+     */
+    public synchronized void stopIDETrackerData() throws IOException {
+        if (ideTrackerDataSubscription != null) {
+            ideTrackerDataSubscription.close();
+            ideTrackerDataSubscription = null;
+        }
+        isIDEStreaming = false;
+        stopStreaming();
+        if (ideTracker != null) {
+            ideTracker.stopTracking();
+            ideTracker = null;
+        }
     }
 
-    public void stopEyeTrackerData() {
-
+    /**
+     * This method stops the stream of the eye tracker data. The streaming server stops once no data is requested.
+     */
+    public synchronized void stopEyeTrackerData() {
+        if (eyeTrackerDataSubscription != null) {
+            eyeTrackerDataSubscription.close();
+            eyeTrackerDataSubscription = null;
+        }
+        isEyeStreaming = false;
+        stopStreaming();
     }
 
-    public void getHandledIDETrackerData(Project project) throws ParserConfigurationException, IOException {
+    /**
+     * This method starts the IDE tracker and passes its data to the handler, as well as to the local clients.
+     *
+     * @param project The project.
+     * @throws ParserConfigurationException If the IDE tracker cannot be created.
+     * @throws IOException                  If the streaming server cannot be started or the IDE tracker cannot start.
+     */
+    public synchronized void getHandledIDETrackerData(Project project) throws ParserConfigurationException, IOException {
         if (ideTrackerDataHandler == null) {
             return;
         }
-        ideTracker = IDETracker.getInstance();
-        ideTracker.setIsRealTimeDataTransmitting(true);
-        ideTracker.startTracking(project);
-        Thread ideTrackerThread = new Thread(() -> {
-            try {
-
-                Thread.sleep(2000);
-                Socket socket = new Socket("localhost", 12346);
-                InputStream dataInputStream = socket.getInputStream();
-                InputStreamReader inputStreamReader = new InputStreamReader(dataInputStream);
-                BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-                while (true) {
-                    String line = bufferedReader.readLine();
-                    System.out.println(ideTrackerDataHandler.toString());
-//                    ideTrackerDataHandler.accept(line);
-                    System.out.println(line);
-                }
-            } catch (IOException | InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-        });
-        ideTrackerThread.start();
+        getRawIDETrackerData(project);
+        Consumer<String> handler = ideTrackerDataHandler;
+        ideTrackerDataSubscription = EventBus.getInstance().subscribe("IDE Tracker Data", IDE_EVENT_FAMILIES,
+                OverflowPolicy.DROP_OLDEST, event -> handler.accept(StreamingServer.toJson(event)));
     }
 
-    public void getHandledEyeTrackerData() {
+    /**
+     * This method passes the gazes and fixations of the running eye tracker to the handler, as well as to the local
+     * clients.
+     *
+     * @throws IOException If the streaming server cannot be started.
+     */
+    public synchronized void getHandledEyeTrackerData() throws IOException {
         if (eyeTrackerDataHandler == null) {
             throw new RuntimeException("Eye Tracker Data Handler not set!");
         }
+        getRawEyeTrackerData();
+        Consumer<String> handler = eyeTrackerDataHandler;
+        eyeTrackerDataSubscription = EventBus.getInstance().subscribe("Eye Tracker Data", EYE_EVENT_FAMILIES,
+                OverflowPolicy.DROP_OLDEST, event -> handler.accept(StreamingServer.toJson(event)));
     }
 
     public void setIDETrackerDataHandler(Consumer<String> ideTrackerDataHandler) {
@@ -97,4 +139,26 @@ public class RealtimeDataImpl {
         this.eyeTrackerDataHandler = eyeTrackerDataHandler;
     }
 
+    /**
+     * This method returns the port of the streaming server.
+     *
+     * @return The port, or -1 if the server is not running.
+     */
+    public synchronized int getStreamingPort() {
+        return streamingServer != null ? streamingServer.getPort() : -1;
+    }
+
+    private void startStreaming() throws IOException {
+        if (streamingServer == null) {
+            streamingServer = new StreamingServer(StreamingServer.DEFAULT_PORT);
+        }
+    }
+
+    private void stopStreaming() {
+        if (streamingServer != null && !isIDEStreaming && !isEyeStreaming) {
+            streamingServer.close();
+            streamingServer = null;
+        }
+    }
+
 }
@@ -0,0 +1,386 @@
+package api;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is the loopback streaming server of the real-time data. It subscribes to the {@link EventBus} and pushes
+ * the events to any number of local TCP clients, e.g., the tools of other processes that cannot load the plugin API.
+ * <p>
+ * Each frame is a 4-byte big-endian length followed by that many bytes of UTF-8 JSON. The server sends one frame per
+ * event, i.e., the fields of the {@link TrackingEvent} record together with its {@code family}, e.g.,
+ * {@code {"family":"CARET","tag":"caret","timestamp":1696216429855,"attributes":{...}}}. If frames were dropped for a
+ * client, it gets {@code {"dropped":<count>}} once it catches up. A client may send the same kind of frame with
+ * {@code {"families":["GAZE","CARET"]}} at any time to only receive those families; it receives all of them by default.
+ * <p>
+ * A single thread accepts the clients and writes the frames with a selector. Each client has its own queue bounded by
+ * {@link #MAX_PENDING_BYTES}, and the frames for a client that does not read fast enough are dropped instead of slowing
+ * down the trackers or the other clients.
+ */
+public final class StreamingServer implements Closeable {
+    private static final Logger LOG = Logger.getInstance(StreamingServer.class);
+
+    /**
+     * The default port of the server.
+     */
+    public static final int DEFAULT_PORT = 12346;
+    /**
+     * The maximum size of the frames queued for a client in bytes.
+     */
+    public static final long MAX_PENDING_BYTES = 4 << 20;
+    /**
+     * The maximum size of a frame sent by a client in bytes.
+     */
+    public static final int MAX_REQUEST_SIZE = 64 << 10;
+    /**
+     * The maximum number of frames written to a client in one gathering write.
+     */
+    private static final int MAX_WRITE_BATCH = 64;
+
+    private static final Gson gson = new GsonBuilder().serializeSpecialFloatingPointValues().create();
+
+    /**
+     * This class is a connected client.
+     */
+    private static final class Client {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private volatile Set<EventFamily> families = EnumSet.allOf(EventFamily.class);
+        private final Queue<ByteBuffer> frames = new ConcurrentLinkedQueue<>();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicLong droppedCount = new AtomicLong();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(Integer.BYTES + MAX_REQUEST_SIZE);
+        private final ByteBuffer[] writeBatch = new ByteBuffer[MAX_WRITE_BATCH];
+
+        private Client(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean hasPendingWrites = new AtomicBoolean();
+    private final Thread thread;
+    private final EventBus.Subscription subscription;
+    private volatile boolean isRunning = true;
+
+    /**
+     * Start the server on the loopback address and subscribe it to the events of the trackers.
+     *
+     * @param port The port, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public StreamingServer(int port) throws IOException {
+        this(port, EventBus.getInstance());
+    }
+
+    /**
+     * Start the server on the loopback address and subscribe it to the events of the given event bus.
+     *
+     * @param port     The port, or 0 for any free port.
+     * @param eventBus The event bus.
+     * @throws IOException If the port cannot be bound.
+     */
+    public StreamingServer(int port, EventBus eventBus) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        thread = new Thread(this::run, "CodeGRITS Streaming Server");
+        thread.setDaemon(true);
+        thread.start();
+        subscription = eventBus.subscribe("Streaming Server", EnumSet.allOf(EventFamily.class),
+                OverflowPolicy.DROP_OLDEST, this::broadcast);
+    }
+
+    /**
+     * Get the port the server listens on.
+     *
+     * @return The port.
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Get the number of the connected clients.
+     *
+     * @return The number of the clients.
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Convert an event to the JSON of its frame.
+     *
+     * @param event The event.
+     * @return The JSON.
+     */
+    public static String toJson(TrackingEvent event) {
+        JsonObject json = gson.toJsonTree(event).getAsJsonObject();
+        json.addProperty("family", event.family().name());
+        return gson.toJson(json);
+    }
+
+    /**
+     * Queue the frame of the event for every client that receives its family. It runs on the thread of the
+     * subscription, and the frame is only encoded once.
+     *
+     * @param event The event.
+     */
+    private void broadcast(TrackingEvent event) {
+        ByteBuffer frame = null;
+        boolean isQueued = false;
+        for (Client client : clients) {
+            if (!client.families.contains(event.family())) continue;
+            if (frame == null) {
+                frame = encode(toJson(event));
+            }
+            if (client.pendingBytes.get() + frame.remaining() > MAX_PENDING_BYTES) {
+                client.droppedCount.incrementAndGet();
+                continue;
+            }
+            client.pendingBytes.addAndGet(frame.remaining());
+            client.frames.add(frame.duplicate());
+            isQueued = true;
+        }
+        if (isQueued && !hasPendingWrites.getAndSet(true)) {
+            selector.wakeup();
+        }
+    }
+
+    private static ByteBuffer encode(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + bytes.length);
+        frame.putInt(bytes.length).put(bytes).flip();
+        return frame.asReadOnlyBuffer();
+    }
+
+    private void run() {
+        try {
+            while (isRunning) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        try {
+                            accept();
+                        } catch (IOException e) {
+                            LOG.warn("Failed to accept a streaming client", e);
+                        }
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(client);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(client);
+                        }
+                    } catch (IOException e) {
+                        // the client is gone, e.g., reset by the peer
+                        closeClient(client);
+                    }
+                }
+                selector.selectedKeys().clear();
+                if (hasPendingWrites.getAndSet(false)) {
+                    for (Client client : clients) {
+                        if (!client.frames.isEmpty() && client.key.isValid()) {
+                            client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (isRunning) {
+                LOG.warn("The streaming server stopped", e);
+            }
+        } finally {
+            for (Client client : clients) {
+                closeClient(client);
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the streaming server", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Client client = new Client(channel, key);
+            key.attach(client);
+            clients.add(client);
+        }
+    }
+
+    /**
+     * Read the frames sent by the client, i.e., the families it subscribes to.
+     *
+     * @param client The client.
+     * @throws IOException If the client cannot be read.
+     */
+    private void read(Client client) throws IOException {
+        ByteBuffer buffer = client.readBuffer;
+        if (client.channel.read(buffer) < 0) {
+            closeClient(client);
+            return;
+        }
+        buffer.flip();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt(buffer.position());
+            if (length < 0 || length > MAX_REQUEST_SIZE) {
+                LOG.warn("Closing a streaming client that sent a frame of " + length + " bytes");
+                closeClient(client);
+                return;
+            }
+            if (buffer.remaining() < Integer.BYTES + length) break;
+            byte[] bytes = new byte[length];
+            buffer.position(buffer.position() + Integer.BYTES);
+            buffer.get(bytes);
+            String request = new String(bytes, StandardCharsets.UTF_8);
+            try {
+                handleRequest(client, request);
+            } catch (RuntimeException e) {
+                // only the client that sent the request is closed, not the server
+                LOG.warn("Closing a streaming client after its request failed: " + request, e);
+                closeClient(client);
+                return;
+            }
+        }
+        buffer.compact();
+    }
+
+    private void handleRequest(Client client, String request) {
+        try {
+            JsonElement families = JsonParser.parseString(request).getAsJsonObject().get("families");
+            if (families == null) return;
+            Set<EventFamily> subscribedFamilies = EnumSet.noneOf(EventFamily.class);
+            JsonArray familyNames = families.getAsJsonArray();
+            for (JsonElement familyName : familyNames) {
+                if (!familyName.isJsonPrimitive()) {
+                    LOG.warn("Ignoring the event family " + familyName + " that is not a string");
+                    continue;
+                }
+                try {
+                    subscribedFamilies.add(EventFamily.valueOf(familyName.getAsString()));
+                } catch (IllegalArgumentException e) {
+                    LOG.warn("Ignoring the unknown event family " + familyName);
+                }
+            }
+            client.families = subscribedFamilies;
+        } catch (JsonParseException | IllegalStateException e) {
+            LOG.warn("Ignoring the malformed request of a streaming client: " + request);
+        }
+    }
+
+    /**
+     * Write the queued frames to the client until its socket buffer is full or the queue is empty.
+     *
+     * @param client The client.
+     * @throws IOException If the client cannot be written.
+     */
+    private void write(Client client) throws IOException {
+        while (true) {
+            int count = 0;
+            for (ByteBuffer frame : client.frames) {
+                client.writeBatch[count++] = frame;
+                if (count == MAX_WRITE_BATCH) break;
+            }
+            if (count == 0) {
+                long dropped = client.droppedCount.getAndSet(0);
+                if (dropped > 0) {
+                    ByteBuffer notice = encode("{\"dropped\":" + dropped + "}");
+                    client.pendingBytes.addAndGet(notice.remaining());
+                    client.frames.add(notice);
+                    continue;
+                }
+                client.key.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+            long written = client.channel.write(client.writeBatch, 0, count);
+            client.pendingBytes.addAndGet(-written);
+            for (int i = 0; i < count; i++) {
+                if (client.writeBatch[i].hasRemaining()) {
+                    // the socket buffer is full, so wait until it is writable again
+                    Arrays.fill(client.writeBatch, null);
+                    return;
+                }
+                client.frames.poll();
+                client.writeBatch[i] = null;
+            }
+        }
+    }
+
+    private void closeClient(Client client) {
+        clients.remove(client);
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close a streaming client", e);
+        }
+    }
+
+    /**
+     * Stop the server. The subscription is closed, and the clients are disconnected without waiting for their queued
+     * frames.
+     */
+    @Override
+    public void close() {
+        if (!isRunning) return;
+        isRunning = false;
+        subscription.close();
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package api;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * This interface is an immutable real-time tracking event published on the {@link EventBus}. Unlike the XML elements
+ * written to the data files, the events can be shared between threads and subscribers.
+ */
+public sealed interface TrackingEvent permits GazeSample, Fixation, IdeEvent {
+    /**
+     * Get the family of the event.
+     *
+     * @return The family.
+     */
+    EventFamily family();
+
+    /**
+     * Get the timestamp of the event in milliseconds since the epoch. For the events with a duration, it is the start.
+     *
+     * @return The timestamp.
+     */
+    long timestamp();
+
+    /**
+     * Create the XML element of the event, with the same layout as in the data files.
+     *
+     * @param document The document to create the element with.
+     * @return The element.
+     */
+    Element toElement(Document document);
+}
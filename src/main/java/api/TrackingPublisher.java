@@ -0,0 +1,143 @@
+package api;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class publishes the events of the {@link EventBus} as a {@link Flow.Publisher}, e.g., for reactive libraries.
+ * Each subscriber gets its own subscription of the event bus, and {@code onNext} is only called on its thread while
+ * the subscriber has requested events. While the demand is 0, the subscription does not read the ring, so the overflow
+ * policy decides what happens: {@link OverflowPolicy#DROP_OLDEST} and {@link OverflowPolicy#SAMPLE} drop the events
+ * the subscriber falls behind on, and {@link OverflowPolicy#BLOCK} makes the trackers wait for the demand.
+ * <p>
+ * The stream of events is infinite, so {@code onComplete} is never called. A subscriber stops it with
+ * {@link Flow.Subscription#cancel()}.
+ * <p>
+ * Example:
+ * <pre>{@code
+ * new TrackingPublisher(EnumSet.of(EventFamily.FIXATION), OverflowPolicy.DROP_OLDEST).subscribe(
+ *         new Flow.Subscriber<TrackingEvent>() {
+ *             private Flow.Subscription subscription;
+ *
+ *             public void onSubscribe(Flow.Subscription subscription) {
+ *                 this.subscription = subscription;
+ *                 subscription.request(1);
+ *             }
+ *
+ *             public void onNext(TrackingEvent event) {
+ *                 highlight(((Fixation) event).location());
+ *                 subscription.request(1);
+ *             }
+ *
+ *             public void onError(Throwable throwable) {
+ *             }
+ *
+ *             public void onComplete() {
+ *             }
+ *         });
+ * }</pre>
+ */
+public final class TrackingPublisher implements Flow.Publisher<TrackingEvent> {
+    /**
+     * The time the thread of a subscription waits for demand before checking again, in case a wakeup is missed.
+     */
+    private static final long DEMAND_WAIT_NANOS = 10_000_000;
+
+    private final EventBus eventBus;
+    private final Set<EventFamily> families;
+    private final OverflowPolicy policy;
+
+    /**
+     * Create the publisher of the events of the trackers.
+     *
+     * @param families The families of the events to publish.
+     * @param policy   The overflow policy of the subscriptions.
+     */
+    public TrackingPublisher(Set<EventFamily> families, OverflowPolicy policy) {
+        this(EventBus.getInstance(), families, policy);
+    }
+
+    /**
+     * Create the publisher of the events of the given event bus.
+     *
+     * @param eventBus The event bus.
+     * @param families The families of the events to publish.
+     * @param policy   The overflow policy of the subscriptions.
+     */
+    public TrackingPublisher(EventBus eventBus, Set<EventFamily> families, OverflowPolicy policy) {
+        this.eventBus = eventBus;
+        this.families = families.isEmpty() ? EnumSet.noneOf(EventFamily.class) : EnumSet.copyOf(families);
+        this.policy = policy;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TrackingEvent> subscriber) {
+        DemandSubscription subscription = new DemandSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.start();
+    }
+
+    /**
+     * This class is the subscription of a subscriber, which holds the thread of its event bus subscription until there
+     * is demand.
+     */
+    private final class DemandSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super TrackingEvent> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private volatile boolean isCancelled = false;
+        private volatile Thread thread;
+        private EventBus.Subscription busSubscription;
+
+        private DemandSubscription(Flow.Subscriber<? super TrackingEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        private synchronized void start() {
+            if (isCancelled) return;
+            busSubscription = eventBus.subscribe("Flow " + subscriber.getClass().getSimpleName(), families, policy,
+                    this::deliver);
+        }
+
+        private void deliver(TrackingEvent event) {
+            thread = Thread.currentThread();
+            while (demand.get() == 0) {
+                if (isCancelled) return;
+                LockSupport.parkNanos(this, DEMAND_WAIT_NANOS);
+            }
+            if (isCancelled) return;
+            demand.getAndUpdate(n -> n == Long.MAX_VALUE ? n : n - 1);
+            subscriber.onNext(event);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("The demand must be positive: " + n));
+                return;
+            }
+            demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            Thread waiting = thread;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            isCancelled = true;
+            synchronized (this) {
+                if (busSubscription != null) {
+                    busSubscription.close();
+                }
+            }
+            Thread waiting = thread;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+    }
+}
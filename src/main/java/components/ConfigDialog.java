@@ -6,7 +6,14 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.ProjectManager;
 import com.intellij.openapi.ui.*;
 import com.intellij.ui.DocumentAdapter;
+import entity.CaptureRegionEnum;
+import entity.EncoderProfileEnum;
 import entity.EyeEnum;
+import entity.FixationAlgorithmEnum;
+import entity.FrameQueuePolicyEnum;
+import entity.GazeFormatEnum;
+import entity.MouseCoalescingEnum;
+import entity.OutputFormatEnum;
 import org.jetbrains.annotations.NotNull;
 import utils.AvailabilityChecker;
 import com.intellij.icons.AllIcons;
@@ -46,6 +53,26 @@ public class ConfigDialog extends DialogWrapper {
 
     private final JComboBox<Double> freqCombo = new ComboBox<>();
     private final JComboBox<String> deviceCombo = new ComboBox<>(new String[]{"Mouse"});
+    private final JComboBox<String> gazeFormatCombo = new ComboBox<>(new String[]{"Text", "Binary"});
+    private final JComboBox<String> fixationAlgorithmCombo = new ComboBox<>(new String[]{"Off", "I-VT", "I-DT"});
+    private final JComboBox<String> rawGazeOutputCombo = new ComboBox<>(new String[]{"On", "Off"});
+    private final JComboBox<String> outputFormatCombo = new ComboBox<>(new String[]{"XML", "Columnar"});
+    private final JComboBox<String> mouseCoalescingCombo = new ComboBox<>(
+            new String[]{"Every Event", "Time Bucket", "Distance", "Douglas-Peucker"});
+    private final JComboBox<String> typingBurstCombo = new ComboBox<>(new String[]{"Every Key", "Bursts"});
+    private static final long[] ARCHIVE_QUIET_PERIODS = {250, 500, 1000, 2000};
+    private final JComboBox<String> archiveQuietPeriodCombo = new ComboBox<>(
+            new String[]{"0.25 s", "0.5 s", "1 s", "2 s"});
+    private static final long[] ARCHIVE_MAX_LATENCIES = {2000, 5000, 10000, 30000};
+    private final JComboBox<String> archiveMaxLatencyCombo = new ComboBox<>(new String[]{"2 s", "5 s", "10 s", "30 s"});
+    private final JComboBox<String> frameQueuePolicyCombo = new ComboBox<>(
+            new String[]{"Drop Newest", "Drop Oldest", "Faster Preset"});
+    private final JComboBox<Integer> screenFrameRateCombo = new ComboBox<>(new Integer[]{5, 10, 15, 30});
+    private final JComboBox<String> captureRegionCombo = new ComboBox<>(new String[]{"Full Screen", "IDE Window"});
+    private static final double[] CAPTURE_SCALES = {1, 0.75, 0.5};
+    private final JComboBox<String> captureScaleCombo = new ComboBox<>(new String[]{"100%", "75%", "50%"});
+    private final JComboBox<String> grayscaleCombo = new ComboBox<>(new String[]{"Color", "Grayscale"});
+    private final JComboBox<String> encoderProfileCombo = new ComboBox<>(new String[]{"Low CPU", "Balanced", "Archival"});
 
     private boolean pythonEnvironment = false;
     private boolean eyeTracker = false;
@@ -167,9 +194,42 @@ public class ConfigDialog extends DialogWrapper {
         } else {
             deviceCombo.setSelectedIndex(0);
         }
+        outputFormatCombo.setSelectedIndex(config.getOutputFormat().ordinal());
+        mouseCoalescingCombo.setSelectedIndex(config.getMouseCoalescing().ordinal());
+        typingBurstCombo.setSelectedIndex(config.isTypingBurst() ? 1 : 0);
+        archiveQuietPeriodCombo.setSelectedIndex(1);
+        for (int i = 0; i < ARCHIVE_QUIET_PERIODS.length; i++) {
+            if (ARCHIVE_QUIET_PERIODS[i] == config.getArchiveQuietPeriod()) {
+                archiveQuietPeriodCombo.setSelectedIndex(i);
+            }
+        }
+        archiveMaxLatencyCombo.setSelectedIndex(1);
+        for (int i = 0; i < ARCHIVE_MAX_LATENCIES.length; i++) {
+            if (ARCHIVE_MAX_LATENCIES[i] == config.getArchiveMaxLatency()) {
+                archiveMaxLatencyCombo.setSelectedIndex(i);
+            }
+        }
+        gazeFormatCombo.setSelectedIndex(config.getGazeFormat().ordinal());
+        fixationAlgorithmCombo.setSelectedIndex(config.getFixationAlgorithm().ordinal());
+        rawGazeOutputCombo.setSelectedIndex(config.isRawGazeOutput() ? 0 : 1);
+        frameQueuePolicyCombo.setSelectedIndex(config.getFrameQueuePolicy().ordinal());
+        screenFrameRateCombo.setSelectedItem(config.getScreenFrameRate());
+        captureRegionCombo.setSelectedIndex(config.getCaptureRegion().ordinal());
+        captureScaleCombo.setSelectedIndex(0);
+        for (int i = 0; i < CAPTURE_SCALES.length; i++) {
+            if (CAPTURE_SCALES[i] == config.getCaptureScale()) {
+                captureScaleCombo.setSelectedIndex(i);
+            }
+        }
+        grayscaleCombo.setSelectedIndex(config.isGrayscale() ? 1 : 0);
+        encoderProfileCombo.setSelectedIndex(config.getEncoderProfile().ordinal());
+        setScreenRecordingCombosEnabled(checkBoxes.get(2).isSelected());
         if (!checkBoxes.get(1).isSelected()) {
             freqCombo.setEnabled(false);
             deviceCombo.setEnabled(false);
+            gazeFormatCombo.setEnabled(false);
+            fixationAlgorithmCombo.setEnabled(false);
+            rawGazeOutputCombo.setEnabled(false);
         }
     }
 
@@ -181,6 +241,20 @@ public class ConfigDialog extends DialogWrapper {
                 getPythonInterpreter(), getDataOutputPath(), deviceCombo.getSelectedIndex(), getSelectedEye());
         String domEye = getSelectedEye().toString();
         LOG.info("Part 3, dominant eye is now: " + domEye);
+        config.setGazeFormat(GazeFormatEnum.values()[gazeFormatCombo.getSelectedIndex()]);
+        config.setFixationAlgorithm(FixationAlgorithmEnum.values()[fixationAlgorithmCombo.getSelectedIndex()]);
+        config.setRawGazeOutput(rawGazeOutputCombo.getSelectedIndex() == 0);
+        config.setOutputFormat(OutputFormatEnum.values()[outputFormatCombo.getSelectedIndex()]);
+        config.setMouseCoalescing(MouseCoalescingEnum.values()[mouseCoalescingCombo.getSelectedIndex()]);
+        config.setTypingBurst(typingBurstCombo.getSelectedIndex() == 1);
+        config.setArchiveQuietPeriod(ARCHIVE_QUIET_PERIODS[archiveQuietPeriodCombo.getSelectedIndex()]);
+        config.setArchiveMaxLatency(ARCHIVE_MAX_LATENCIES[archiveMaxLatencyCombo.getSelectedIndex()]);
+        config.setFrameQueuePolicy(FrameQueuePolicyEnum.values()[frameQueuePolicyCombo.getSelectedIndex()]);
+        config.setScreenFrameRate((Integer) screenFrameRateCombo.getSelectedItem());
+        config.setCaptureRegion(CaptureRegionEnum.values()[captureRegionCombo.getSelectedIndex()]);
+        config.setCaptureScale(CAPTURE_SCALES[captureScaleCombo.getSelectedIndex()]);
+        config.setGrayscale(grayscaleCombo.getSelectedIndex() == 1);
+        config.setEncoderProfile(EncoderProfileEnum.values()[encoderProfileCombo.getSelectedIndex()]);
         config.saveAsJson();
     }
 
@@ -358,6 +432,23 @@ public class ConfigDialog extends DialogWrapper {
 
         panel.add(dataOutputTextField);
 
+        JPanel outputComboPanel = new JPanel();
+        outputComboPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        outputComboPanel.setLayout(new BoxLayout(outputComboPanel, BoxLayout.X_AXIS));
+        outputComboPanel.add(createComboPanel("Output Format", outputFormatCombo));
+        outputComboPanel.add(createComboPanel("Mouse Motion", mouseCoalescingCombo));
+        outputComboPanel.add(createComboPanel("Typing", typingBurstCombo));
+        outputComboPanel.setBorder(new EmptyBorder(JBUI.insets(0, 20, 5, 20)));
+        panel.add(outputComboPanel);
+
+        JPanel archiveComboPanel = new JPanel();
+        archiveComboPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        archiveComboPanel.setLayout(new BoxLayout(archiveComboPanel, BoxLayout.X_AXIS));
+        archiveComboPanel.add(createComboPanel("Archive Quiet Period", archiveQuietPeriodCombo));
+        archiveComboPanel.add(createComboPanel("Archive Max Latency", archiveMaxLatencyCombo));
+        archiveComboPanel.setBorder(new EmptyBorder(JBUI.insets(0, 20, 5, 20)));
+        panel.add(archiveComboPanel);
+
         JPanel freqPanel = new JPanel();
         freqPanel.setLayout(new BoxLayout(freqPanel, BoxLayout.Y_AXIS));
         freqPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
@@ -388,9 +479,41 @@ public class ConfigDialog extends DialogWrapper {
         comboPanel.setBorder(new EmptyBorder(JBUI.insets(0, 20, 5, 20)));
         panel.add(comboPanel);
 
+        JPanel eyeTrackingComboPanel = new JPanel();
+        eyeTrackingComboPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        eyeTrackingComboPanel.setLayout(new BoxLayout(eyeTrackingComboPanel, BoxLayout.X_AXIS));
+        eyeTrackingComboPanel.add(createComboPanel("Gaze Data Format", gazeFormatCombo));
+        eyeTrackingComboPanel.add(createComboPanel("Fixation Detection", fixationAlgorithmCombo));
+        eyeTrackingComboPanel.add(createComboPanel("Raw Gazes", rawGazeOutputCombo));
+        eyeTrackingComboPanel.setBorder(new EmptyBorder(JBUI.insets(0, 20, 5, 20)));
+        panel.add(eyeTrackingComboPanel);
+
+        JPanel screenRecordingComboPanel = new JPanel();
+        screenRecordingComboPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        screenRecordingComboPanel.setLayout(new BoxLayout(screenRecordingComboPanel, BoxLayout.X_AXIS));
+        screenRecordingComboPanel.add(createComboPanel("Recorded Region", captureRegionCombo));
+        screenRecordingComboPanel.add(createComboPanel("Video Scale", captureScaleCombo));
+        screenRecordingComboPanel.add(createComboPanel("Video Color", grayscaleCombo));
+        screenRecordingComboPanel.setBorder(new EmptyBorder(JBUI.insets(0, 20, 5, 20)));
+        panel.add(screenRecordingComboPanel);
+
+        JPanel encodingComboPanel = new JPanel();
+        encodingComboPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        encodingComboPanel.setLayout(new BoxLayout(encodingComboPanel, BoxLayout.X_AXIS));
+        encodingComboPanel.add(createComboPanel("Frame Rate", screenFrameRateCombo));
+        encodingComboPanel.add(createComboPanel("Encoder", encoderProfileCombo));
+        encodingComboPanel.add(createComboPanel("Slow Encoding", frameQueuePolicyCombo));
+        encodingComboPanel.setBorder(new EmptyBorder(JBUI.insets(0, 20, 5, 20)));
+        panel.add(encodingComboPanel);
+
+        screenRecording.addChangeListener(e -> setScreenRecordingCombosEnabled(screenRecording.isSelected()));
+
         eyeTracking.addChangeListener(e -> {
             freqCombo.setEnabled(eyeTracking.isSelected());
             deviceCombo.setEnabled(eyeTracking.isSelected());
+            gazeFormatCombo.setEnabled(eyeTracking.isSelected());
+            fixationAlgorithmCombo.setEnabled(eyeTracking.isSelected());
+            rawGazeOutputCombo.setEnabled(eyeTracking.isSelected());
         });
 
         JPanel labelAreaPanel = new JPanel();
@@ -444,6 +567,42 @@ public class ConfigDialog extends DialogWrapper {
         return panel;
     }
 
+    /**
+     * Create a panel with a label above the combo box, in the same layout as the sample frequency panel.
+     *
+     * @param label The text of the label.
+     * @param combo The combo box.
+     * @return The panel.
+     */
+    private JPanel createComboPanel(String label, JComboBox<?> combo) {
+        JPanel comboPanel = new JPanel();
+        comboPanel.setLayout(new BoxLayout(comboPanel, BoxLayout.Y_AXIS));
+        comboPanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        JLabel comboLabel = new JLabel(label);
+        comboLabel.setHorizontalTextPosition(JLabel.LEFT);
+        comboLabel.setBorder(new EmptyBorder(JBUI.insetsBottom(5)));
+        combo.setAlignmentX(Component.LEFT_ALIGNMENT);
+        combo.setMaximumSize(new Dimension(230, 40));
+        comboPanel.add(comboLabel);
+        comboPanel.add(combo);
+        return comboPanel;
+    }
+
+    /**
+     * Enable or disable the combo boxes of the screen recording settings, which only apply if the screen recording is
+     * selected.
+     *
+     * @param isEnabled Whether the combo boxes are enabled.
+     */
+    private void setScreenRecordingCombosEnabled(boolean isEnabled) {
+        captureRegionCombo.setEnabled(isEnabled);
+        captureScaleCombo.setEnabled(isEnabled);
+        grayscaleCombo.setEnabled(isEnabled);
+        screenFrameRateCombo.setEnabled(isEnabled);
+        encoderProfileCombo.setEnabled(isEnabled);
+        frameQueuePolicyCombo.setEnabled(isEnabled);
+    }
+
     /**
      * Add the label area to the configuration dialog. A label area contains a text field and a button to add or remove the label area.
      *
@@ -0,0 +1,10 @@
+package entity;
+
+/**
+ * The region of the screen recording. {@code FULL_SCREEN} records the whole first screen, and {@code IDE_WINDOW}
+ * records only the bounds of the IDE window, which follow the window when it is moved or resized.
+ */
+public enum CaptureRegionEnum {
+    FULL_SCREEN,
+    IDE_WINDOW;
+}
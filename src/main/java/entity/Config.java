@@ -25,6 +25,20 @@ public class Config implements Serializable {
     private Integer eyeTrackerDevice;
     // Making a default for EyeEnum
     private EyeEnum dominantEye;
+    private GazeFormatEnum gazeFormat = GazeFormatEnum.TEXT;
+    private FixationAlgorithmEnum fixationAlgorithm = FixationAlgorithmEnum.NONE;
+    private boolean rawGazeOutput = true;
+    private OutputFormatEnum outputFormat = OutputFormatEnum.XML;
+    private MouseCoalescingEnum mouseCoalescing = MouseCoalescingEnum.NONE;
+    private boolean typingBurst = false;
+    private long archiveQuietPeriod = 500;
+    private long archiveMaxLatency = 5000;
+    private FrameQueuePolicyEnum frameQueuePolicy = FrameQueuePolicyEnum.DROP_OLDEST;
+    private int screenFrameRate = 10;
+    private CaptureRegionEnum captureRegion = CaptureRegionEnum.FULL_SCREEN;
+    private double captureScale = 1;
+    private boolean grayscale = false;
+    private EncoderProfileEnum encoderProfile = EncoderProfileEnum.BALANCED;
     private static final Logger LOG = Logger.getInstance(Config.class);
 
     /**
@@ -76,6 +90,20 @@ public class Config implements Serializable {
         jsonObject.addProperty("eyeTrackerDevice", eyeTrackerDevice);
         LOG.info("In saveasjson, dominant eye is now: " + dominantEye.toString());
         jsonObject.addProperty("dominantEye", dominantEye.toString());
+        jsonObject.addProperty("gazeFormat", gazeFormat.toString());
+        jsonObject.addProperty("fixationAlgorithm", fixationAlgorithm.toString());
+        jsonObject.addProperty("rawGazeOutput", rawGazeOutput);
+        jsonObject.addProperty("outputFormat", outputFormat.toString());
+        jsonObject.addProperty("mouseCoalescing", mouseCoalescing.toString());
+        jsonObject.addProperty("typingBurst", typingBurst);
+        jsonObject.addProperty("archiveQuietPeriod", archiveQuietPeriod);
+        jsonObject.addProperty("archiveMaxLatency", archiveMaxLatency);
+        jsonObject.addProperty("frameQueuePolicy", frameQueuePolicy.toString());
+        jsonObject.addProperty("screenFrameRate", screenFrameRate);
+        jsonObject.addProperty("captureRegion", captureRegion.toString());
+        jsonObject.addProperty("captureScale", captureScale);
+        jsonObject.addProperty("grayscale", grayscale);
+        jsonObject.addProperty("encoderProfile", encoderProfile.toString());
 
         Gson gson = new Gson();
         try (FileWriter fileWriter = new FileWriter(PathManager.getPluginsPath() + "/config.json")) {
@@ -106,6 +134,34 @@ public class Config implements Serializable {
             else {
                 dominantEye = EyeEnum.RIGHT;
             }
+            JsonElement gazeFormatJson = jsonObject.get("gazeFormat");
+            gazeFormat = gazeFormatJson != null ? GazeFormatEnum.valueOf(gazeFormatJson.getAsString()) : GazeFormatEnum.TEXT;
+            JsonElement fixationAlgorithmJson = jsonObject.get("fixationAlgorithm");
+            fixationAlgorithm = fixationAlgorithmJson != null ? FixationAlgorithmEnum.valueOf(fixationAlgorithmJson.getAsString()) : FixationAlgorithmEnum.NONE;
+            JsonElement rawGazeOutputJson = jsonObject.get("rawGazeOutput");
+            rawGazeOutput = rawGazeOutputJson == null || rawGazeOutputJson.getAsBoolean();
+            JsonElement outputFormatJson = jsonObject.get("outputFormat");
+            outputFormat = outputFormatJson != null ? OutputFormatEnum.valueOf(outputFormatJson.getAsString()) : OutputFormatEnum.XML;
+            JsonElement mouseCoalescingJson = jsonObject.get("mouseCoalescing");
+            mouseCoalescing = mouseCoalescingJson != null ? MouseCoalescingEnum.valueOf(mouseCoalescingJson.getAsString()) : MouseCoalescingEnum.NONE;
+            JsonElement typingBurstJson = jsonObject.get("typingBurst");
+            typingBurst = typingBurstJson != null && typingBurstJson.getAsBoolean();
+            JsonElement archiveQuietPeriodJson = jsonObject.get("archiveQuietPeriod");
+            archiveQuietPeriod = archiveQuietPeriodJson != null ? archiveQuietPeriodJson.getAsLong() : 500;
+            JsonElement archiveMaxLatencyJson = jsonObject.get("archiveMaxLatency");
+            archiveMaxLatency = archiveMaxLatencyJson != null ? archiveMaxLatencyJson.getAsLong() : 5000;
+            JsonElement frameQueuePolicyJson = jsonObject.get("frameQueuePolicy");
+            frameQueuePolicy = frameQueuePolicyJson != null ? FrameQueuePolicyEnum.valueOf(frameQueuePolicyJson.getAsString()) : FrameQueuePolicyEnum.DROP_OLDEST;
+            JsonElement screenFrameRateJson = jsonObject.get("screenFrameRate");
+            screenFrameRate = screenFrameRateJson != null ? screenFrameRateJson.getAsInt() : 10;
+            JsonElement captureRegionJson = jsonObject.get("captureRegion");
+            captureRegion = captureRegionJson != null ? CaptureRegionEnum.valueOf(captureRegionJson.getAsString()) : CaptureRegionEnum.FULL_SCREEN;
+            JsonElement captureScaleJson = jsonObject.get("captureScale");
+            captureScale = captureScaleJson != null ? captureScaleJson.getAsDouble() : 1;
+            JsonElement grayscaleJson = jsonObject.get("grayscale");
+            grayscale = grayscaleJson != null && grayscaleJson.getAsBoolean();
+            JsonElement encoderProfileJson = jsonObject.get("encoderProfile");
+            encoderProfile = encoderProfileJson != null ? EncoderProfileEnum.valueOf(encoderProfileJson.getAsString()) : EncoderProfileEnum.BALANCED;
             String labelsString = jsonObject.get("labels").getAsString().substring(1, jsonObject.get("labels").getAsString().length() - 1);
             if (labelsString.equals("")) {
                 labels = List.of();
@@ -143,6 +199,188 @@ public class Config implements Serializable {
 
     public EyeEnum getDominantEye() {return dominantEye;}
 
+    public GazeFormatEnum getGazeFormat() {
+        return gazeFormat;
+    }
+
+    /**
+     * Set the format of the gaze data sent from the Python eye tracker process.
+     *
+     * @param gazeFormat The gaze data format.
+     */
+    public void setGazeFormat(GazeFormatEnum gazeFormat) {
+        this.gazeFormat = gazeFormat;
+    }
+
+    public FixationAlgorithmEnum getFixationAlgorithm() {
+        return fixationAlgorithm;
+    }
+
+    /**
+     * Set the algorithm of the online fixation detection.
+     *
+     * @param fixationAlgorithm The fixation detection algorithm, or {@code NONE} to not detect fixations.
+     */
+    public void setFixationAlgorithm(FixationAlgorithmEnum fixationAlgorithm) {
+        this.fixationAlgorithm = fixationAlgorithm;
+    }
+
+    public boolean isRawGazeOutput() {
+        return rawGazeOutput;
+    }
+
+    /**
+     * Set whether the raw gazes are recorded when fixations are detected.
+     *
+     * @param rawGazeOutput Whether the raw gazes are recorded.
+     */
+    public void setRawGazeOutput(boolean rawGazeOutput) {
+        this.rawGazeOutput = rawGazeOutput;
+    }
+
+    public OutputFormatEnum getOutputFormat() {
+        return outputFormat;
+    }
+
+    /**
+     * Set the format of the tracking data files.
+     *
+     * @param outputFormat The output format.
+     */
+    public void setOutputFormat(OutputFormatEnum outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    public MouseCoalescingEnum getMouseCoalescing() {
+        return mouseCoalescing;
+    }
+
+    /**
+     * Set the policy of coalescing the mouse motion events.
+     *
+     * @param mouseCoalescing The coalescing policy.
+     */
+    public void setMouseCoalescing(MouseCoalescingEnum mouseCoalescing) {
+        this.mouseCoalescing = mouseCoalescing;
+    }
+
+    public boolean isTypingBurst() {
+        return typingBurst;
+    }
+
+    /**
+     * Set whether the keystrokes are folded into typing bursts.
+     *
+     * @param typingBurst Whether the keystrokes are folded into typing bursts.
+     */
+    public void setTypingBurst(boolean typingBurst) {
+        this.typingBurst = typingBurst;
+    }
+
+    public long getArchiveQuietPeriod() {
+        return archiveQuietPeriod;
+    }
+
+    /**
+     * Set the quiet period of a changed file before it is archived.
+     *
+     * @param archiveQuietPeriod The quiet period in milliseconds.
+     */
+    public void setArchiveQuietPeriod(long archiveQuietPeriod) {
+        this.archiveQuietPeriod = archiveQuietPeriod;
+    }
+
+    public long getArchiveMaxLatency() {
+        return archiveMaxLatency;
+    }
+
+    /**
+     * Set the max latency from the first change of a file to its archive.
+     *
+     * @param archiveMaxLatency The max latency in milliseconds.
+     */
+    public void setArchiveMaxLatency(long archiveMaxLatency) {
+        this.archiveMaxLatency = archiveMaxLatency;
+    }
+
+    public FrameQueuePolicyEnum getFrameQueuePolicy() {
+        return frameQueuePolicy;
+    }
+
+    /**
+     * Set the policy of the screen recorder when the encoder cannot keep up with the capture.
+     *
+     * @param frameQueuePolicy The policy.
+     */
+    public void setFrameQueuePolicy(FrameQueuePolicyEnum frameQueuePolicy) {
+        this.frameQueuePolicy = frameQueuePolicy;
+    }
+
+    public int getScreenFrameRate() {
+        return screenFrameRate;
+    }
+
+    /**
+     * Set the frame rate of the screen recording.
+     *
+     * @param screenFrameRate The frame rate.
+     */
+    public void setScreenFrameRate(int screenFrameRate) {
+        this.screenFrameRate = screenFrameRate;
+    }
+
+    public CaptureRegionEnum getCaptureRegion() {
+        return captureRegion;
+    }
+
+    /**
+     * Set the region of the screen that is recorded.
+     *
+     * @param captureRegion The region.
+     */
+    public void setCaptureRegion(CaptureRegionEnum captureRegion) {
+        this.captureRegion = captureRegion;
+    }
+
+    public double getCaptureScale() {
+        return captureScale;
+    }
+
+    /**
+     * Set the scale of the recorded video relative to the recorded region.
+     *
+     * @param captureScale The scale, e.g., 0.5 for half the width and height.
+     */
+    public void setCaptureScale(double captureScale) {
+        this.captureScale = captureScale;
+    }
+
+    public boolean isGrayscale() {
+        return grayscale;
+    }
+
+    /**
+     * Set whether the screen is recorded in grayscale.
+     *
+     * @param grayscale Whether the screen is recorded in grayscale.
+     */
+    public void setGrayscale(boolean grayscale) {
+        this.grayscale = grayscale;
+    }
+
+    public EncoderProfileEnum getEncoderProfile() {
+        return encoderProfile;
+    }
+
+    /**
+     * Set the profile of the encoder of the screen recording.
+     *
+     * @param encoderProfile The profile.
+     */
+    public void setEncoderProfile(EncoderProfileEnum encoderProfile) {
+        this.encoderProfile = encoderProfile;
+    }
+
     public String toString() {
         return "Config{" +
                 "checkBoxes=" + checkBoxes +
@@ -151,6 +389,20 @@ public class Config implements Serializable {
                 ", pythonInterpreter='" + pythonInterpreter + '\'' +
                 ", dataOutputPath='" + dataOutputPath + '\'' +
                 ", eyeTrackerDevice=" + eyeTrackerDevice +
+                ", gazeFormat=" + gazeFormat +
+                ", fixationAlgorithm=" + fixationAlgorithm +
+                ", rawGazeOutput=" + rawGazeOutput +
+                ", outputFormat=" + outputFormat +
+                ", mouseCoalescing=" + mouseCoalescing +
+                ", typingBurst=" + typingBurst +
+                ", archiveQuietPeriod=" + archiveQuietPeriod +
+                ", archiveMaxLatency=" + archiveMaxLatency +
+                ", frameQueuePolicy=" + frameQueuePolicy +
+                ", screenFrameRate=" + screenFrameRate +
+                ", captureRegion=" + captureRegion +
+                ", captureScale=" + captureScale +
+                ", grayscale=" + grayscale +
+                ", encoderProfile=" + encoderProfile +
                 '}';
     }
 
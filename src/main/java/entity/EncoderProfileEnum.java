@@ -0,0 +1,12 @@
+package entity;
+
+/**
+ * The profile of the encoder of the screen recorder, which trades CPU time for file size. {@code LOW_CPU} uses the
+ * fastest x264 preset on a single thread, {@code BALANCED} a fast preset on two threads, and {@code ARCHIVAL} the
+ * default preset of x264 with a lower CRF for smaller and sharper files at a higher CPU cost.
+ */
+public enum EncoderProfileEnum {
+    LOW_CPU,
+    BALANCED,
+    ARCHIVAL;
+}
@@ -0,0 +1,11 @@
+package entity;
+
+/**
+ * The algorithm of the online fixation detection. {@code NONE} disables the detection, {@code IVT} is the
+ * velocity-threshold identification, and {@code IDT} is the dispersion-threshold identification.
+ */
+public enum FixationAlgorithmEnum {
+    NONE,
+    IVT,
+    IDT;
+}
@@ -0,0 +1,13 @@
+package entity;
+
+/**
+ * The policy of the screen recorder when the queue of captured frames is full, i.e., the encoder cannot keep up.
+ * {@code DROP_NEWEST} drops the frame just captured, {@code DROP_OLDEST} drops the oldest queued frame, and
+ * {@code DEGRADE_PRESET} drops the oldest queued frame and switches the encoder to a faster preset at the next segment
+ * if too many frames were dropped during the last one.
+ */
+public enum FrameQueuePolicyEnum {
+    DROP_NEWEST,
+    DROP_OLDEST,
+    DEGRADE_PRESET;
+}
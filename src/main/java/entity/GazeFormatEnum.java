@@ -0,0 +1,10 @@
+package entity;
+
+/**
+ * The format of the gaze data sent from the Python eye tracker process to the plugin.
+ * {@code TEXT} is one human-readable line per sample, {@code BINARY} is a fixed-width little-endian frame per sample.
+ */
+public enum GazeFormatEnum {
+    TEXT,
+    BINARY;
+}
@@ -0,0 +1,14 @@
+package entity;
+
+/**
+ * The policy of coalescing the mouse motion events. {@code NONE} records every {@code mouseMoved} and
+ * {@code mouseDragged} event, {@code TIME_BUCKET} keeps the last point of each time bucket, {@code DISTANCE} keeps the
+ * points that moved far enough from the last kept point, and {@code DOUGLAS_PEUCKER} simplifies the trajectory with the
+ * Douglas-Peucker algorithm.
+ */
+public enum MouseCoalescingEnum {
+    NONE,
+    TIME_BUCKET,
+    DISTANCE,
+    DOUGLAS_PEUCKER;
+}
@@ -0,0 +1,11 @@
+package entity;
+
+/**
+ * The format of the tracking data files. {@code XML} writes {@code ide_tracking.xml} and {@code eye_tracking.xml},
+ * {@code COLUMNAR} writes the directories {@code ide_tracking/} and {@code eye_tracking/} with one columnar binary file
+ * per section, which can be converted to the XML files with {@link utils.ColumnarExporter}.
+ */
+public enum OutputFormatEnum {
+    XML,
+    COLUMNAR;
+}
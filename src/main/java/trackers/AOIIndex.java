@@ -0,0 +1,163 @@
+package trackers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is the spatial index of the AOIs (e.g., tool windows and popups) on the screen, used to find the AOI of a
+ * gaze point. The screen is divided into a uniform grid of {@link #CELL_SIZE} pixel cells, and each cell keeps the
+ * AOIs overlapping it, ordered by priority. A point query only checks the AOIs of one cell, and an update only touches
+ * the cells of the changed AOI.
+ * <p>
+ * When AOIs overlap, the AOI of the higher {@link Layer} wins (popups are above tool windows), and within a layer, the
+ * most recently updated AOI wins, so the result does not depend on the iteration order of a map.
+ */
+public final class AOIIndex {
+    /**
+     * The size of a grid cell in pixels.
+     */
+    public static final int CELL_SIZE = 128;
+
+    /**
+     * This enum is the layer of an AOI. A later layer is above an earlier one.
+     */
+    public enum Layer {
+        TOOL_WINDOW, POPUP
+    }
+
+    /**
+     * This record is an AOI in the index. The bounds are inclusive, i.e., a point on the edge is inside the AOI.
+     *
+     * @param id     The id of the AOI, e.g., the tool window id.
+     * @param x      The x coordinate of the AOI on the screen.
+     * @param y      The y coordinate of the AOI on the screen.
+     * @param width  The width of the AOI.
+     * @param height The height of the AOI.
+     * @param layer  The layer of the AOI.
+     * @param order  The order of the update of the AOI, used to break ties within a layer.
+     */
+    public record Entry(String id, int x, int y, int width, int height, Layer layer, long order) {
+        /**
+         * Check whether the point is inside the AOI.
+         *
+         * @param pointX The x coordinate of the point.
+         * @param pointY The y coordinate of the point.
+         * @return {@code true} if the point is inside the AOI, {@code false} otherwise.
+         */
+        public boolean contains(int pointX, int pointY) {
+            return x <= pointX && pointX <= x + width && y <= pointY && pointY <= y + height;
+        }
+    }
+
+    private static final Comparator<Entry> PRIORITY = Comparator.comparing(Entry::layer)
+            .thenComparingLong(Entry::order).reversed();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+    private long nextOrder = 0;
+
+    /**
+     * Add the AOI, or update its bounds and layer if it is already in the index.
+     *
+     * @param id     The id of the AOI.
+     * @param x      The x coordinate of the AOI on the screen.
+     * @param y      The y coordinate of the AOI on the screen.
+     * @param width  The width of the AOI.
+     * @param height The height of the AOI.
+     * @param layer  The layer of the AOI.
+     */
+    public void put(String id, int x, int y, int width, int height, Layer layer) {
+        remove(id);
+        Entry entry = new Entry(id, x, y, width, height, layer, nextOrder++);
+        entries.put(id, entry);
+        if (width < 0 || height < 0) return;
+        for (int cellX = cellOf(x); cellX <= cellOf(x + width); cellX++) {
+            for (int cellY = cellOf(y); cellY <= cellOf(y + height); cellY++) {
+                List<Entry> cell = cells.computeIfAbsent(cellKey(cellX, cellY), key -> new ArrayList<>(2));
+                int index = Collections.binarySearch(cell, entry, PRIORITY);
+                cell.add(index < 0 ? -index - 1 : index, entry);
+            }
+        }
+    }
+
+    /**
+     * Remove the AOI from the index. Nothing happens if it is not in the index.
+     *
+     * @param id The id of the AOI.
+     */
+    public void remove(String id) {
+        Entry entry = entries.remove(id);
+        if (entry == null || entry.width < 0 || entry.height < 0) return;
+        for (int cellX = cellOf(entry.x); cellX <= cellOf(entry.x + entry.width); cellX++) {
+            for (int cellY = cellOf(entry.y); cellY <= cellOf(entry.y + entry.height); cellY++) {
+                long key = cellKey(cellX, cellY);
+                List<Entry> cell = cells.get(key);
+                cell.remove(entry);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the AOI with the highest priority at the point.
+     *
+     * @param pointX The x coordinate of the point on the screen.
+     * @param pointY The y coordinate of the point on the screen.
+     * @return The AOI, or {@code null} if no AOI contains the point.
+     */
+    public Entry find(int pointX, int pointY) {
+        List<Entry> cell = cells.get(cellKey(cellOf(pointX), cellOf(pointY)));
+        if (cell == null) return null;
+        for (Entry entry : cell) {
+            if (entry.contains(pointX, pointY)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the AOI by its id.
+     *
+     * @param id The id of the AOI.
+     * @return The AOI, or {@code null} if it is not in the index.
+     */
+    public Entry get(String id) {
+        return entries.get(id);
+    }
+
+    /**
+     * Create a copy of the index that can be updated without affecting this index.
+     *
+     * @return The copy.
+     */
+    public AOIIndex copy() {
+        AOIIndex copy = new AOIIndex();
+        copy.entries.putAll(entries);
+        cells.forEach((key, cell) -> copy.cells.put(key, new ArrayList<>(cell)));
+        copy.nextOrder = nextOrder;
+        return copy;
+    }
+
+    /**
+     * Get the number of AOIs in the index.
+     *
+     * @return The number of AOIs.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static int cellOf(int coordinate) {
+        return Math.floorDiv(coordinate, CELL_SIZE);
+    }
+
+    private static long cellKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,148 @@
+package trackers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class benchmarks the lookup of the AOI of a gaze point offline. At each number of AOIs, the same synthetic
+ * layout, i.e., tool windows scattered over a 4K screen with a popup from time to time, is searched for the same random
+ * gaze points by streaming over the AOI map like the former {@link EyeTracker}, and by
+ * {@link AOIRegistry.Snapshot#find(int, int)}. For each lookup, it reports the time and the allocated bytes per query,
+ * and the share of the queries that hit an AOI, which is the same for both.
+ * <p>
+ * It runs from the command line with {@code java trackers.AOIIndexBenchmark [queries] [rounds]}, which defaults to one
+ * million queries in 5 rounds, of which the fastest is reported.
+ */
+public final class AOIIndexBenchmark {
+    private static final int[] AOI_COUNTS = {20, 50, 200};
+    private static final int SCREEN_WIDTH = 3840;
+    private static final int SCREEN_HEIGHT = 2160;
+    private static final String SEARCH_EVERYWHERE = "SearchEverywhere";
+
+    /**
+     * The bounds of an AOI in the former AOI map.
+     */
+    private record Bounds(int x, int y, int width, int height) {
+        boolean contains(int pointX, int pointY) {
+            return x <= pointX && pointX <= x + width && y <= pointY && pointY <= y + height;
+        }
+    }
+
+    private final Map<String, Bounds> aoiMap = new HashMap<>();
+    private final AOIRegistry aoiRegistry = new AOIRegistry();
+    private final int[] pointsX;
+    private final int[] pointsY;
+    private int hitCount;
+    private long checksum = 0;
+
+    AOIIndexBenchmark(int aoiCount, int queryCount) {
+        Random random = new Random(42);
+        for (int i = 0; i < aoiCount; i++) {
+            // every tenth AOI is a popup, the first one being the Search Everywhere popup
+            boolean isPopup = i % 10 == 0;
+            String id = i == 0 ? SEARCH_EVERYWHERE : (isPopup ? "Popup" : "ToolWindow") + i;
+            int width = isPopup ? 600 + random.nextInt(400) : 200 + random.nextInt(700);
+            int height = isPopup ? 300 + random.nextInt(400) : 150 + random.nextInt(550);
+            int x = random.nextInt(SCREEN_WIDTH - width);
+            int y = random.nextInt(SCREEN_HEIGHT - height);
+            aoiMap.put(id, new Bounds(x, y, width, height));
+            aoiRegistry.put(id, x, y, width, height, isPopup ? AOIIndex.Layer.POPUP : AOIIndex.Layer.TOOL_WINDOW);
+        }
+        pointsX = new int[queryCount];
+        pointsY = new int[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            pointsX[i] = random.nextInt(SCREEN_WIDTH);
+            pointsY[i] = random.nextInt(SCREEN_HEIGHT);
+        }
+    }
+
+    /**
+     * Search the AOIs of the random gaze points at each number of AOIs and print the results.
+     *
+     * @param args The number of queries and the number of rounds, both optional.
+     */
+    public static void main(String[] args) {
+        int queryCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        System.out.printf("%d queries on a %dx%d screen, best of %d rounds%n", queryCount, SCREEN_WIDTH, SCREEN_HEIGHT,
+                rounds);
+        System.out.printf("%-6s %-10s %10s %13s %8s%n", "AOIs", "lookup", "ns/query", "bytes/query", "hit_%");
+        for (int aoiCount : AOI_COUNTS) {
+            AOIIndexBenchmark benchmark = new AOIIndexBenchmark(aoiCount, queryCount);
+            benchmark.run(aoiCount, "stream", rounds, benchmark::stream);
+            benchmark.run(aoiCount, "index", rounds, benchmark::index);
+        }
+    }
+
+    private void run(int aoiCount, String lookup, int rounds, Runnable findAll) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean sunThreads = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = Long.MAX_VALUE;
+        // the first round warms up the JIT compiler
+        for (int round = 0; round <= rounds; round++) {
+            hitCount = 0;
+            long bytesStart = sunThreads != null ? sunThreads.getCurrentThreadAllocatedBytes() : 0;
+            long start = System.nanoTime();
+            findAll.run();
+            long nanos = System.nanoTime() - start;
+            long bytes = sunThreads != null ? sunThreads.getCurrentThreadAllocatedBytes() - bytesStart : 0;
+            if (round > 0) {
+                bestNanos = Math.min(bestNanos, nanos);
+                bestBytes = Math.min(bestBytes, bytes);
+            }
+        }
+        System.out.printf("%-6d %-10s %10.1f %13s %8.1f%n", aoiCount, lookup, bestNanos / (double) pointsX.length,
+                sunThreads != null ? String.format(Locale.ROOT, "%.1f", bestBytes / (double) pointsX.length) : "n/a",
+                hitCount * 100.0 / pointsX.length);
+        if (checksum == Long.MIN_VALUE) {
+            // keeps the found AOIs from being optimized away
+            System.out.println(checksum);
+        }
+    }
+
+    /**
+     * Find the AOIs like the former {@link EyeTracker}, which checked the Search Everywhere popup first, and then
+     * streamed over the AOI map for the first AOI containing the point.
+     */
+    private void stream() {
+        for (int i = 0; i < pointsX.length; i++) {
+            int pointX = pointsX[i];
+            int pointY = pointsY[i];
+            String aoi;
+            Bounds popup = aoiMap.get(SEARCH_EVERYWHERE);
+            if (popup != null && popup.contains(pointX, pointY)) {
+                aoi = SEARCH_EVERYWHERE;
+            } else {
+                aoi = aoiMap.entrySet().stream()
+                        .filter(e -> e.getValue().contains(pointX, pointY))
+                        .findFirst()
+                        .map(Map.Entry::getKey)
+                        .orElse("OOB");
+            }
+            count(aoi);
+        }
+    }
+
+    /**
+     * Find the AOIs like {@link EyeTracker}, which takes a snapshot of the registry for every gaze.
+     */
+    private void index() {
+        for (int i = 0; i < pointsX.length; i++) {
+            AOIIndex.Entry entry = aoiRegistry.snapshot().find(pointsX[i], pointsY[i]);
+            count(entry != null ? entry.id() : "OOB");
+        }
+    }
+
+    private void count(String aoi) {
+        if (!aoi.equals("OOB")) {
+            hitCount++;
+        }
+        checksum += aoi.hashCode();
+    }
+}
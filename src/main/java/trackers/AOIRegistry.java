@@ -0,0 +1,105 @@
+package trackers;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class is the registry of the AOIs shared between the IDE tracker and the eye tracker. The IDE tracker updates it
+ * from the tool window and popup listeners, and the eye tracker reads it from the thread processing the gazes.
+ * <p>
+ * Every update publishes a new immutable {@link Snapshot} with the next version number, so a reader takes a consistent
+ * snapshot without locking, and the version recorded with a gaze identifies the exact AOIs it was evaluated against.
+ */
+public final class AOIRegistry {
+    /**
+     * This class is an immutable version of the AOIs.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final AOIIndex index;
+
+        private Snapshot(long version, AOIIndex index) {
+            this.version = version;
+            this.index = index;
+        }
+
+        /**
+         * Get the version of the snapshot. The version starts from 0 and increases by 1 on every update.
+         *
+         * @return The version.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Find the AOI with the highest priority at the point.
+         *
+         * @param pointX The x coordinate of the point on the screen.
+         * @param pointY The y coordinate of the point on the screen.
+         * @return The AOI, or {@code null} if no AOI contains the point.
+         */
+        public AOIIndex.Entry find(int pointX, int pointY) {
+            return index.find(pointX, pointY);
+        }
+
+        /**
+         * Get the AOI by its id.
+         *
+         * @param id The id of the AOI.
+         * @return The AOI, or {@code null} if it is not in the snapshot.
+         */
+        public AOIIndex.Entry get(String id) {
+            return index.get(id);
+        }
+
+        /**
+         * Get the number of AOIs in the snapshot.
+         *
+         * @return The number of AOIs.
+         */
+        public int size() {
+            return index.size();
+        }
+    }
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(0, new AOIIndex()));
+
+    /**
+     * Add the AOI, or update its bounds and layer if it is already registered, and publish a new snapshot.
+     *
+     * @param id     The id of the AOI.
+     * @param x      The x coordinate of the AOI on the screen.
+     * @param y      The y coordinate of the AOI on the screen.
+     * @param width  The width of the AOI.
+     * @param height The height of the AOI.
+     * @param layer  The layer of the AOI.
+     */
+    public synchronized void put(String id, int x, int y, int width, int height, AOIIndex.Layer layer) {
+        Snapshot snapshot = current.get();
+        AOIIndex index = snapshot.index.copy();
+        index.put(id, x, y, width, height, layer);
+        current.set(new Snapshot(snapshot.version + 1, index));
+    }
+
+    /**
+     * Remove the AOI and publish a new snapshot. Nothing happens if it is not registered.
+     *
+     * @param id The id of the AOI.
+     */
+    public synchronized void remove(String id) {
+        Snapshot snapshot = current.get();
+        if (snapshot.index.get(id) == null) return;
+        AOIIndex index = snapshot.index.copy();
+        index.remove(id);
+        current.set(new Snapshot(snapshot.version + 1, index));
+    }
+
+    /**
+     * Get the current snapshot of the AOIs. The snapshot does not change after it is taken.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+}
@@ -0,0 +1,173 @@
+package trackers;
+
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.Editor;
+import com.intellij.openapi.editor.LogicalPosition;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class caches the AST ancestry of the PSI elements looked at, i.e., the tag and the start and end positions of
+ * every level from the element up to the file, which the eye tracker records for each gaze. Gazes land on the same few
+ * elements many times per second, so the upward traversal and the position conversions are done once per element.
+ * <p>
+ * The cache is kept per document, and is cleared when the modification stamp of the document changes. Both the
+ * documents and the elements of a document are evicted in least recently used order.
+ */
+public final class ASTAncestryCache {
+    /**
+     * The default maximum number of elements cached per document.
+     */
+    public static final int DEFAULT_ELEMENT_CAPACITY = 256;
+    /**
+     * The default maximum number of documents cached.
+     */
+    public static final int DEFAULT_DOCUMENT_CAPACITY = 16;
+
+    /**
+     * This record is a level of the AST ancestry.
+     *
+     * @param tag   The tag of the PSI element of the level.
+     * @param start The start position of the level, i.e., {@code line:column}.
+     * @param end   The end position of the level, i.e., {@code line:column}.
+     */
+    public record Level(String tag, String start, String end) {
+    }
+
+    /**
+     * This class is the cache of a document at a modification stamp.
+     */
+    private final class DocumentCache {
+        private long modificationStamp;
+        private final Map<PsiElement, List<Level>> ancestries = createLruMap(elementCapacity);
+
+        private DocumentCache(long modificationStamp) {
+            this.modificationStamp = modificationStamp;
+        }
+    }
+
+    private final int elementCapacity;
+    private final Map<Document, DocumentCache> documentCaches;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Create the cache with the default capacities.
+     */
+    public ASTAncestryCache() {
+        this(DEFAULT_DOCUMENT_CAPACITY, DEFAULT_ELEMENT_CAPACITY);
+    }
+
+    /**
+     * Create the cache.
+     *
+     * @param documentCapacity The maximum number of documents cached.
+     * @param elementCapacity  The maximum number of elements cached per document.
+     */
+    public ASTAncestryCache(int documentCapacity, int elementCapacity) {
+        this.elementCapacity = elementCapacity;
+        documentCaches = createLruMap(documentCapacity);
+    }
+
+    private static <K, V> Map<K, V> createLruMap(int capacity) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Get the AST ancestry of the PSI element, from the element itself up to (excluding) the file. It must be called in
+     * a read action.
+     *
+     * @param editor     The editor of the document of the element, used to convert the offsets to positions.
+     * @param psiElement The PSI element.
+     * @return The levels of the ancestry, or an empty list if the element is {@code null}.
+     */
+    public synchronized List<Level> getAncestry(Editor editor, PsiElement psiElement) {
+        if (psiElement == null) {
+            return Collections.emptyList();
+        }
+        Document document = editor.getDocument();
+        long modificationStamp = document.getModificationStamp();
+        DocumentCache documentCache = documentCaches.computeIfAbsent(document, key -> new DocumentCache(modificationStamp));
+        if (documentCache.modificationStamp != modificationStamp) {
+            documentCache.ancestries.clear();
+            documentCache.modificationStamp = modificationStamp;
+        }
+        List<Level> ancestry = documentCache.ancestries.get(psiElement);
+        if (ancestry != null) {
+            hitCount.incrementAndGet();
+            return ancestry;
+        }
+        missCount.incrementAndGet();
+        ancestry = computeAncestry(editor, psiElement);
+        documentCache.ancestries.put(psiElement, ancestry);
+        return ancestry;
+    }
+
+    /**
+     * Perform the upward traversal in the AST.
+     */
+    private static List<Level> computeAncestry(Editor editor, PsiElement psiElement) {
+        List<Level> ancestry = new ArrayList<>();
+        PsiElement parent = psiElement;
+        while (parent != null) {
+            if (parent instanceof PsiFile) {
+                break;
+            }
+            LogicalPosition startLogicalPosition = editor.offsetToLogicalPosition(parent.getTextRange().getStartOffset());
+            LogicalPosition endLogicalPosition = editor.offsetToLogicalPosition(parent.getTextRange().getEndOffset());
+            ancestry.add(new Level(String.valueOf(parent),
+                    startLogicalPosition.line + ":" + startLogicalPosition.column,
+                    endLogicalPosition.line + ":" + endLogicalPosition.column));
+            parent = parent.getParent();
+        }
+        return Collections.unmodifiableList(ancestry);
+    }
+
+    /**
+     * Clear the cache. The metrics are kept.
+     */
+    public synchronized void clear() {
+        documentCaches.clear();
+    }
+
+    /**
+     * Get the number of lookups answered from the cache.
+     *
+     * @return The number of hits.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of lookups that traversed the AST.
+     *
+     * @return The number of misses.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get the ratio of the lookups answered from the cache.
+     *
+     * @return The hit rate between 0 and 1, or 0 if there is no lookup yet.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,120 @@
+package trackers;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class paces the capture of the screen recorder with {@link System#nanoTime()} deadlines. The k-th deadline is
+ * computed from the start rather than accumulated, so the frames do not drift from the target frame rate. If a capture
+ * takes longer than the period, the deadlines that have already passed are counted as missed and skipped instead of
+ * being captured back to back.
+ */
+public final class CaptureScheduler {
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final int frameRate;
+    private long startNanos;
+    private long tick = 0;
+    private long frameCount = 0;
+    private long missedCount = 0;
+    private long maxLatenessNanos = 0;
+
+    /**
+     * Create the scheduler.
+     *
+     * @param frameRate The target frame rate.
+     */
+    public CaptureScheduler(int frameRate) {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("The frame rate must be positive: " + frameRate);
+        }
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * Wait until the deadline of the next frame. The first frame is due immediately.
+     *
+     * @return The deadline of the frame, in the time of {@link System#nanoTime()}.
+     */
+    public long awaitNextDeadline() {
+        long now = System.nanoTime();
+        if (frameCount == 0) {
+            startNanos = now;
+        }
+        long deadline = getDeadline(tick);
+        if (now - deadline >= getDeadline(tick + 1) - deadline) {
+            // late by at least a whole period, so skip to the last deadline that has passed
+            long lateTick = (now - startNanos) * frameRate / NANOS_PER_SECOND;
+            missedCount += lateTick - tick;
+            tick = lateTick;
+            deadline = getDeadline(tick);
+        }
+        while ((now = System.nanoTime()) < deadline) {
+            LockSupport.parkNanos(this, deadline - now);
+        }
+        maxLatenessNanos = Math.max(maxLatenessNanos, now - deadline);
+        tick++;
+        frameCount++;
+        return deadline;
+    }
+
+    private long getDeadline(long tick) {
+        return startNanos + tick * NANOS_PER_SECOND / frameRate;
+    }
+
+    /**
+     * Get the target frame rate.
+     *
+     * @return The frame rate.
+     */
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Get the number of frames scheduled so far.
+     *
+     * @return The number of frames.
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Get the number of deadlines missed so far, i.e., the frames that were not captured because a previous capture
+     * took too long.
+     *
+     * @return The number of deadlines.
+     */
+    public long getMissedCount() {
+        return missedCount;
+    }
+
+    /**
+     * Get the maximum time a frame started after its deadline.
+     *
+     * @return The time in milliseconds.
+     */
+    public double getMaxLateness() {
+        return maxLatenessNanos / 1e6;
+    }
+
+    /**
+     * Get the time since the first frame.
+     *
+     * @return The time in milliseconds, or 0 if no frame has been scheduled.
+     */
+    public double getElapsedTime() {
+        return frameCount == 0 ? 0 : (System.nanoTime() - startNanos) / 1e6;
+    }
+
+    /**
+     * Get the achieved frame rate since the first frame, for comparison with the target frame rate.
+     *
+     * @param frameCount The number of frames actually captured.
+     * @return The frame rate, or 0 if no time has passed.
+     */
+    public double getAchievedFrameRate(long frameCount) {
+        double elapsedTime = getElapsedTime();
+        return elapsedTime > 0 ? frameCount * 1000 / elapsedTime : 0;
+    }
+}
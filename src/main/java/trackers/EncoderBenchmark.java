@@ -0,0 +1,221 @@
+package trackers;
+
+import entity.EncoderProfileEnum;
+import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.javacv.FFmpegFrameRecorder;
+import org.bytedeco.javacv.Frame;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * This class benchmarks the encoder profiles of the {@link ScreenRecorder} offline. Each profile encodes the same
+ * synthetic sequence of IDE-like frames, i.e., lines of code on a dark editor that is typed into, scrolled, and
+ * switched to another file from time to time, with a blinking caret and a moving mouse pointer. For each profile, it
+ * reports the encoding speed in frames per second, the CPU time per frame, and the file size per minute of video.
+ * <p>
+ * It runs from the command line with {@code java trackers.EncoderBenchmark [width] [height] [seconds] [frame rate]},
+ * which defaults to one minute of 1920x1080 video at 10 fps.
+ */
+public final class EncoderBenchmark {
+    private static final int CELL_WIDTH = 8;
+    private static final int CELL_HEIGHT = 16;
+    private static final int GUTTER_WIDTH = 6 * CELL_WIDTH;
+    private static final int DOCUMENT_LINES = 2000;
+    private static final int[] BACKGROUND = {43, 43, 43};
+    private static final int[] GUTTER = {49, 51, 53};
+    private static final int[][] TOKEN_COLORS = {
+            {169, 183, 198}, // identifier
+            {204, 120, 50}, // keyword
+            {106, 135, 89}, // string
+            {104, 151, 187}, // number
+            {128, 128, 128}, // comment
+    };
+    private static final int[] POINTER = {255, 255, 255};
+
+    private final int width;
+    private final int height;
+    private final int frameRate;
+    private final int visibleLines;
+    private final Random random = new Random(42);
+    private final long[] lineSeeds = new long[DOCUMENT_LINES];
+    private final int[] typedLengths = new int[DOCUMENT_LINES];
+    private int topLine = 0;
+    private int caretLine = 10;
+    private int pointerX;
+    private int pointerY;
+
+    EncoderBenchmark(int width, int height, int frameRate) {
+        this.width = width;
+        this.height = height;
+        this.frameRate = frameRate;
+        this.visibleLines = height / CELL_HEIGHT;
+        this.pointerX = width / 2;
+        this.pointerY = height / 2;
+        openFile(0);
+    }
+
+    /**
+     * Encode the synthetic frames with each profile and print the results.
+     *
+     * @param args The width and height of the frames, the length of the video in seconds, and the frame rate, all
+     *             optional.
+     * @throws IOException If a video cannot be encoded.
+     */
+    public static void main(String[] args) throws IOException {
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 1920;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 1080;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 60;
+        int frameRate = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        System.out.printf("%d x %d, %d s at %d fps%n", width, height, seconds, frameRate);
+        System.out.printf("%-10s %-10s %10s %14s %12s%n", "profile", "preset", "fps", "cpu_ms/frame", "MB/minute");
+        for (EncoderProfileEnum profile : EncoderProfileEnum.values()) {
+            new EncoderBenchmark(width, height, frameRate).run(profile, seconds * frameRate);
+        }
+    }
+
+    private void run(EncoderProfileEnum profile, int frameCount) throws IOException {
+        Path file = Files.createTempFile("codegrits-encoder-benchmark", ".mp4");
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        com.sun.management.OperatingSystemMXBean sunOs = os instanceof com.sun.management.OperatingSystemMXBean
+                ? (com.sun.management.OperatingSystemMXBean) os : null;
+        Frame frame = new Frame(width, height, Frame.DEPTH_UBYTE, 3);
+        long encodeNanos = 0;
+        long cpuNanos = 0;
+        try {
+            FFmpegFrameRecorder recorder = new FFmpegFrameRecorder(file.toFile(), width, height);
+            recorder.setFormat("mp4");
+            recorder.setFrameRate(frameRate);
+            recorder.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+            ScreenRecorder.configureEncoder(recorder, profile, ScreenRecorder.getPreset(profile), frameRate);
+            recorder.start();
+            try {
+                for (int i = 0; i < frameCount; i++) {
+                    render(i, (ByteBuffer) frame.image[0], frame.imageStride);
+                    // only the encoder is measured, not the rendering of the frames
+                    long cpuStart = sunOs != null ? sunOs.getProcessCpuTime() : 0;
+                    long start = System.nanoTime();
+                    recorder.record(frame);
+                    encodeNanos += System.nanoTime() - start;
+                    cpuNanos += sunOs != null ? sunOs.getProcessCpuTime() - cpuStart : 0;
+                }
+                long cpuStart = sunOs != null ? sunOs.getProcessCpuTime() : 0;
+                long start = System.nanoTime();
+                recorder.stop();
+                encodeNanos += System.nanoTime() - start;
+                cpuNanos += sunOs != null ? sunOs.getProcessCpuTime() - cpuStart : 0;
+            } finally {
+                recorder.release();
+            }
+            double minutes = frameCount / (double) frameRate / 60;
+            System.out.printf("%-10s %-10s %10.1f %14.2f %12.2f%n", profile, ScreenRecorder.getPreset(profile),
+                    frameCount / (encodeNanos / 1e9), sunOs != null ? cpuNanos / 1e6 / frameCount : Double.NaN,
+                    Files.size(file) / 1e6 / minutes);
+        } finally {
+            frame.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Advance the scene to the frame and draw it. Every frame may type a character at the caret, every 3 seconds the
+     * editor scrolls and the caret moves, and every 20 seconds another file is opened.
+     *
+     * @param index  The index of the frame.
+     * @param image  The BGR image of the frame to draw into.
+     * @param stride The stride of the image in bytes.
+     */
+    void render(int index, ByteBuffer image, int stride) {
+        if (index > 0 && index % (20 * frameRate) == 0) {
+            openFile(index);
+        } else if (index > 0 && index % (3 * frameRate) == 0) {
+            topLine = Math.min(DOCUMENT_LINES - visibleLines, Math.max(0, topLine + random.nextInt(41) - 10));
+            caretLine = topLine + random.nextInt(visibleLines);
+        }
+        if (random.nextInt(2) == 0) {
+            typedLengths[caretLine]++;
+        }
+        pointerX = Math.floorMod(pointerX + random.nextInt(9) - 4, width - 12);
+        pointerY = Math.floorMod(pointerY + random.nextInt(9) - 4, height - 12);
+
+        for (int y = 0; y < height; y++) {
+            fill(image, stride, y, 0, GUTTER_WIDTH, GUTTER);
+            fill(image, stride, y, GUTTER_WIDTH, width, BACKGROUND);
+        }
+        for (int row = 0; row < visibleLines; row++) {
+            int line = topLine + row;
+            drawText(image, stride, row, 1, String.format("%4d", line + 1), TOKEN_COLORS[4]);
+            Random lineRandom = new Random(lineSeeds[line]);
+            int length = lineRandom.nextInt(80) + typedLengths[line];
+            int column = lineRandom.nextInt(4) * 4;
+            while (column < length) {
+                int tokenLength = Math.min(length - column, lineRandom.nextInt(9) + 2);
+                int[] color = TOKEN_COLORS[lineRandom.nextInt(TOKEN_COLORS.length)];
+                drawGlyphs(image, stride, row, 7 + column, tokenLength, lineRandom.nextLong(), color);
+                column += tokenLength + 1;
+            }
+            if (line == caretLine && index / Math.max(1, frameRate / 2) % 2 == 0) {
+                int x = (7 + length) * CELL_WIDTH;
+                for (int y = row * CELL_HEIGHT; y < (row + 1) * CELL_HEIGHT; y++) {
+                    fill(image, stride, y, x, x + 2, TOKEN_COLORS[0]);
+                }
+            }
+        }
+        for (int y = 0; y < 12; y++) {
+            fill(image, stride, pointerY + y, pointerX, pointerX + 12 - y, POINTER);
+        }
+    }
+
+    private void openFile(int index) {
+        Random fileRandom = new Random(index);
+        for (int i = 0; i < DOCUMENT_LINES; i++) {
+            lineSeeds[i] = fileRandom.nextLong();
+            typedLengths[i] = 0;
+        }
+        topLine = 0;
+        caretLine = Math.min(10, visibleLines - 1);
+    }
+
+    private void drawText(ByteBuffer image, int stride, int row, int column, String text, int[] color) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) != ' ') {
+                drawGlyphs(image, stride, row, column + i, 1, text.charAt(i), color);
+            }
+        }
+    }
+
+    /**
+     * Draw pseudo glyphs, i.e., 5x7 bit patterns derived from the seed, doubled vertically to look like characters.
+     */
+    private void drawGlyphs(ByteBuffer image, int stride, int row, int column, int count, long seed, int[] color) {
+        for (int i = 0; i < count; i++) {
+            int x = (column + i) * CELL_WIDTH + 1;
+            if (x + 5 > width) return;
+            long bits = Long.rotateLeft(seed * 0x9E3779B97F4A7C15L, i * 7);
+            for (int gy = 0; gy < 7; gy++) {
+                for (int gx = 0; gx < 5; gx++) {
+                    if ((bits >>> (gy * 5 + gx) & 1) == 0) continue;
+                    int y = row * CELL_HEIGHT + 1 + gy * 2;
+                    fill(image, stride, y, x + gx, x + gx + 1, color);
+                    fill(image, stride, y + 1, x + gx, x + gx + 1, color);
+                }
+            }
+        }
+    }
+
+    private void fill(ByteBuffer image, int stride, int y, int fromX, int toX, int[] rgb) {
+        if (y < 0 || y >= height) return;
+        for (int x = Math.max(0, fromX); x < Math.min(width, toX); x++) {
+            int index = y * stride + x * 3;
+            // the frame is BGR
+            image.put(index, (byte) rgb[2]);
+            image.put(index + 1, (byte) rgb[1]);
+            image.put(index + 2, (byte) rgb[0]);
+        }
+    }
+}
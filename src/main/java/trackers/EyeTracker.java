@@ -1,9 +1,20 @@
 package trackers;
+import api.CodeLocation;
+import api.EventBus;
+import api.EventFamily;
+import api.Fixation;
+import api.GazeSample;
+import api.OverflowPolicy;
 import com.intellij.openapi.diagnostic.Logger;
 import entity.EyeEnum;
+import entity.FixationAlgorithmEnum;
+import entity.GazeFormatEnum;
+import entity.OutputFormatEnum;
 
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ex.ApplicationEx;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.LogicalPosition;
 import com.intellij.openapi.editor.event.VisibleAreaListener;
@@ -18,18 +29,32 @@ import com.intellij.psi.PsiFile;
 import org.jetbrains.annotations.NotNull;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import utils.ColumnarWriter;
+import utils.EventJournal;
 import utils.RelativePathGetter;
-import utils.XMLWriter;
+import utils.SpillingXMLWriter;
+import utils.StreamingXMLWriter;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.TransformerException;
 import java.awt.*;
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Consumer;
 
 /**
@@ -44,19 +69,41 @@ public class EyeTracker implements Disposable {
     PsiDocumentManager psiDocumentManager;
     public Editor editor;
     /**
-     * This variable is the XML document for storing the eye tracking data.
+     * This variable is the XML document for creating the eye tracking elements. The elements are not appended to it,
+     * but written to the {@code eyeTrackingWriter} as soon as they are complete.
      */
     Document eyeTracking = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-    Element root = eyeTracking.createElement("eye_tracking");
     Element setting = eyeTracking.createElement("setting");
-    Element gazes = eyeTracking.createElement("gazes");
+    /**
+     * This variable is the writer streaming the eye tracking data to the {@code eye_tracking.xml} file.
+     */
+    StreamingXMLWriter eyeTrackingWriter;
+    /**
+     * This variable is the format of the eye tracking data files.
+     */
+    OutputFormatEnum outputFormat = OutputFormatEnum.XML;
+    /**
+     * This variable is the writer of the {@code eye_tracking} directory in the columnar format, used instead of the
+     * {@code eyeTrackingWriter} and the {@code fixationWriter}.
+     */
+    private ColumnarWriter columnarWriter;
+    /**
+     * This variable is the journal the gazes and fixations are also appended to, so that they can be recovered after a
+     * crash.
+     */
+    EventJournal eventJournal;
+    private int journalFileId = -1;
     /**
      * This variable indicates whether the tracking is started.
      */
-    boolean isTracking = false;
+    volatile boolean isTracking = false;
     double screenWidth, screenHeight;
     String projectPath = "", filePath = "";
-    PsiElement lastElement = null;
+    /**
+     * This variable is the last PSI element mapped for each kind of element, i.e., {@code gaze} and {@code fixation},
+     * so that a fixation is only compared with the previous fixation rather than with its own gazes.
+     */
+    private final Map<String, PsiElement> lastElements = new HashMap<>();
     Rectangle visibleArea = null;
     Process pythonProcess;
     Thread pythonOutputThread;
@@ -66,7 +113,66 @@ public class EyeTracker implements Disposable {
     int deviceIndex = 0;
     // This enum determines which eye is dominant, which affects the x,y calculation
     EyeEnum dominantEye;
+    /**
+     * This variable indicates the format of the gaze data sent from the Python process.
+     */
+    GazeFormatEnum gazeFormat = GazeFormatEnum.TEXT;
+    /**
+     * This variable indicates the algorithm of the online fixation detection. Fixations are not detected if it is
+     * {@code NONE}.
+     */
+    FixationAlgorithmEnum fixationAlgorithm = FixationAlgorithmEnum.NONE;
+    /**
+     * This variable indicates whether the raw gazes are recorded. It is only {@code false} if fixations are detected.
+     */
+    boolean isRawGazeOutput = true;
+    /**
+     * This variable is the fixation detector fed with the valid gaze points, or {@code null} if fixations are not
+     * detected.
+     */
+    private FixationDetector fixationDetector;
+    /**
+     * This variable is the writer spilling the fixations to the disk while the gazes are streamed, so that they can be
+     * appended after the {@code <gazes>} of the {@code eye_tracking.xml} file.
+     */
+    private SpillingXMLWriter fixationWriter;
     private IDETracker ideTracker;
+    /**
+     * This variable is the reusable record the raw gaze data lines are decoded into. It is only used by the
+     * {@code pythonOutputThread}.
+     */
+    private final RawGazeSample sample = new RawGazeSample();
+    /**
+     * This variable is the pipeline mapping the gazes in the editor to the source code elements in batches.
+     */
+    private GazeMappingPipeline<GazeTarget> mappingPipeline;
+    /**
+     * This variable is the cache of the AST ancestry of the PSI elements looked at.
+     */
+    private final ASTAncestryCache astAncestryCache = new ASTAncestryCache();
+    /**
+     * This variable is the aggregator of the dwell time and visits of the files, lines and PSI elements looked at, which
+     * is written to the {@code heatmap.json} file.
+     */
+    private HeatmapAggregator heatmapAggregator;
+    /**
+     * This variable is the key of the sequence number of a gaze or fixation element in its user data.
+     */
+    private static final String SEQUENCE_KEY = "sequence";
+    /**
+     * This variable is the buffer writing the gazes in the order they arrived, although the gazes in the editor are
+     * written by the mapping thread after the others.
+     */
+    private final ReorderBuffer<Element> gazeOrder = new ReorderBuffer<>(this::appendElement);
+    /**
+     * This variable is the buffer writing the fixations in the order they were detected.
+     */
+    private final ReorderBuffer<Element> fixationOrder = new ReorderBuffer<>(this::appendElement);
+    /**
+     * This variable is the time in milliseconds to wait for the Python process to exit, and then for the
+     * {@code pythonOutputThread} to process its last samples, when the tracking stops.
+     */
+    private static final long STOP_TIMEOUT = 1000;
 
     private static final Logger LOG = Logger.getInstance(EyeTracker.class);
 
@@ -75,9 +181,14 @@ public class EyeTracker implements Disposable {
      */
     private static boolean isRealTimeDataTransmitting = false;
     /**
-     * This variable is the handler for eye tracking data.
+     * This variable is the subscription of the handler set by {@link #setEyeTrackerDataHandler(Consumer)}.
+     */
+    private EventBus.Subscription eyeTrackerDataSubscription;
+    /**
+     * This variable is the XML document for creating the elements passed to the handler set by
+     * {@link #setEyeTrackerDataHandler(Consumer)}. It is only used by the thread of the subscription.
      */
-    private Consumer<Element> eyeTrackerDataHandler;
+    private final Document handlerDocument = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
 
     /**
      * This is the default constructor.
@@ -85,10 +196,6 @@ public class EyeTracker implements Disposable {
     public EyeTracker(IDETracker iDETracker) throws ParserConfigurationException {
         this.ideTracker = iDETracker;
 
-        eyeTracking.appendChild(root);
-        root.appendChild(setting);
-        root.appendChild(gazes);
-
         Dimension size = Toolkit.getDefaultToolkit().getScreenSize();
         screenWidth = size.getWidth();
         screenHeight = size.getHeight();
@@ -153,6 +260,7 @@ public class EyeTracker implements Disposable {
      */
     public void startTracking(Project project) throws IOException {
         isTracking = true;
+        lastElements.clear();
         psiDocumentManager = PsiDocumentManager.getInstance(project);
         editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
         if (editor != null) {
@@ -171,19 +279,80 @@ public class EyeTracker implements Disposable {
         setting.setAttribute("sample_frequency", String.valueOf(sampleFrequency));
         // Records the dominant eye in the eye_tracking.xml file.
         setting.setAttribute("dominant_eye", dominantEye.toString());
+        boolean isDetectingFixations = fixationAlgorithm != FixationAlgorithmEnum.NONE;
+        if (isDetectingFixations) {
+            setting.setAttribute("fixation_algorithm", fixationAlgorithm.toString());
+            fixationDetector = new FixationDetector(fixationAlgorithm, this::processFixation);
+        } else {
+            isRawGazeOutput = true;
+        }
+        List<String> sections = isDetectingFixations ? List.of("gazes", "fixations") : List.of("gazes");
+        if (eventJournal != null) {
+            journalFileId = eventJournal.openFile("eye_tracking", sections);
+            eventJournal.append(journalFileId, null, setting);
+        }
+        if (outputFormat == OutputFormatEnum.COLUMNAR) {
+            columnarWriter = new ColumnarWriter(dataOutputPath + "/eye_tracking", "eye_tracking", sections);
+        } else {
+            if (isDetectingFixations) {
+                fixationWriter = new SpillingXMLWriter(dataOutputPath + "/spill", List.of("fixations"));
+            }
+            eyeTrackingWriter = new StreamingXMLWriter(dataOutputPath + "/eye_tracking.xml", "eye_tracking");
+            eyeTrackingWriter.writeElement(setting);
+            eyeTrackingWriter.startElement("gazes");
+        }
+        heatmapAggregator = new HeatmapAggregator(Path.of(dataOutputPath, "heatmap.json"),
+                ApplicationManager.getApplication()::runReadAction);
+        mappingPipeline = new GazeMappingPipeline<>("CodeGRITS Gaze Mapping", GazeMappingPipeline.DEFAULT_CAPACITY,
+                GazeMappingPipeline.DEFAULT_MAX_BATCH_SIZE, GazeMappingPipeline.DEFAULT_BATCH_INTERVAL,
+                GazeTarget::isSameTarget, this::mapGazes, this::dropGazes);
         track();
     }
 
     /**
-     * This method stops the eye tracking.
+     * This method stops the eye tracking. The Python process is destroyed, and the {@code pythonOutputThread} is joined
+     * once it has read the end of the output, so that no sample reaches the fixation detector or the mapping pipeline
+     * after they are closed. Then the last fixation and the queued gazes are mapped, the fixations are appended after
+     * the gazes, and the open elements of the {@code eye_tracking.xml} file are closed.
      *
-     * @throws TransformerException The exception.
+     * @throws IOException The exception.
      */
-    public void stopTracking() throws TransformerException {
+    public void stopTracking() throws IOException {
         isTracking = false;
-        pythonOutputThread.interrupt();
         pythonProcess.destroy();
-        XMLWriter.writeToXML(eyeTracking, dataOutputPath + "/eye_tracking.xml");
+        try {
+            if (!pythonProcess.waitFor(STOP_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                pythonProcess.destroyForcibly();
+            }
+            pythonOutputThread.join(STOP_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (pythonOutputThread.isAlive()) {
+            LOG.warn("The Python output thread has not ended; its last samples are ignored");
+        }
+        if (fixationDetector != null) {
+            fixationDetector.flush();
+        }
+        mappingPipeline.close();
+        LOG.info("Gaze mapping: " + mappingPipeline.getQueuedCount() + " queued, "
+                + mappingPipeline.getCoalescedCount() + " coalesced, " + mappingPipeline.getDroppedCount() + " dropped");
+        LOG.info("AST ancestry cache: " + astAncestryCache.getHitCount() + " hits, "
+                + astAncestryCache.getMissCount() + " misses, hit rate " + astAncestryCache.getHitRate());
+        astAncestryCache.clear();
+        if (gazeOrder.getPendingCount() > 0 || fixationOrder.getPendingCount() > 0) {
+            LOG.warn("Gazes or fixations are still waiting for earlier ones: " + gazeOrder.getPendingCount()
+                    + " gazes, " + fixationOrder.getPendingCount() + " fixations");
+        }
+        heatmapAggregator.close();
+        if (columnarWriter != null) {
+            columnarWriter.close(List.of(setting));
+            return;
+        }
+        if (fixationWriter != null) {
+            eyeTrackingWriter.appendSections(fixationWriter);
+        }
+        eyeTrackingWriter.close();
     }
 
     /**
@@ -202,40 +371,43 @@ public class EyeTracker implements Disposable {
 
     private record EyeGazePoint(int eyeX, int eyeY) { } ;
 
+    /**
+     * This record is the target of a gaze in the editor, captured when the gaze is processed, so that the gaze is
+     * mapped against the editor and file it was on even if the selected editor changes before the mapping.
+     */
+    private record GazeTarget(Editor editor, String filePath, EyeGazePoint gazePoint, Point relativePoint) {
+        static boolean isSameTarget(GazeTarget a, GazeTarget b) {
+            return a.editor == b.editor && a.filePath.equals(b.filePath) && a.relativePoint.equals(b.relativePoint);
+        }
+    }
 
-    private EyeGazePoint createPointFromMessage(String message, Element gaze) {
-        String leftInfo = message.split("; ")[1];
-        String leftGazePointX = leftInfo.split(", ")[0];
-        String leftGazePointY = leftInfo.split(", ")[1];
 
-        String rightInfo = message.split("; ")[2];
-        String rightGazePointX = rightInfo.split(", ")[0];
-        String rightGazePointY = rightInfo.split(", ")[1];
+    private EyeGazePoint createPoint(RawGazeSample sample) {
+        double leftGazePointX = sample.getValue(RawGazeSample.LEFT_GAZE_POINT_X);
+        double leftGazePointY = sample.getValue(RawGazeSample.LEFT_GAZE_POINT_Y);
+        double rightGazePointX = sample.getValue(RawGazeSample.RIGHT_GAZE_POINT_X);
+        double rightGazePointY = sample.getValue(RawGazeSample.RIGHT_GAZE_POINT_Y);
 
-        if (leftGazePointX.equals("nan") || leftGazePointY.equals("nan") || rightGazePointX.equals("nan") || rightGazePointY.equals("nan")) {
+        if (Double.isNaN(leftGazePointX) || Double.isNaN(leftGazePointY) || Double.isNaN(rightGazePointX) || Double.isNaN(rightGazePointY)) {
             return null;
         }
         int eyeX;
         // Kaia 01_28_25: Use the X value from the dominant eye and the average of the Y values.
         switch(dominantEye) {
             case LEFT:
-                eyeX = (int) (Double.parseDouble(leftGazePointX) * screenWidth);
+                eyeX = (int) (leftGazePointX * screenWidth);
                 break;
             case RIGHT:
-                eyeX = (int) (Double.parseDouble(rightGazePointX) * screenWidth);
+                eyeX = (int) (rightGazePointX * screenWidth);
                 break;
             default:
                 eyeX = 0;
                 return null;
         }
-        int eyeY = (int) ((Double.parseDouble(leftGazePointY) + Double.parseDouble(rightGazePointY)) / 2 * screenHeight);
+        int eyeY = (int) ((leftGazePointY + rightGazePointY) / 2 * screenHeight);
         return new EyeGazePoint(eyeX, eyeY);
     }
 
-    private boolean inBounds(IDETracker.AOIBounds bounds, EyeGazePoint gazePoint) {
-        return bounds.x <= gazePoint.eyeX && gazePoint.eyeX <= (bounds.x + bounds.width) &&
-                bounds.y <= gazePoint.eyeY && gazePoint.eyeY <= (bounds.y + bounds.height);
-    }
     /**
      * This method processes the raw data message from the eye tracker. It will filter the data, map the data to the specific source code element, and perform the upward traversal in the AST.
      *
@@ -243,19 +415,77 @@ public class EyeTracker implements Disposable {
      */
     public void processRawData(String message) {
         if (!isTracking) return;
-        Element gaze = getRawGazeElement(message);
-        gazes.appendChild(gaze);
-        EyeGazePoint gazePoint = createPointFromMessage(message, gaze);
+        if (!sample.parse(message)) {
+            LOG.debug("Skipped malformed raw gaze data: " + message);
+            return;
+        }
+        processSample(sample);
+    }
+
+    /**
+     * This method processes the decoded raw gaze data. It will feed the fixation detector, filter the data, map the data to the specific source code element, and perform the upward traversal in the AST.
+     *
+     * @param sample The decoded raw gaze data.
+     */
+    public void processSample(RawGazeSample sample) {
+        if (!isTracking) return;
+        EyeGazePoint gazePoint = createPoint(sample);
+        if (fixationDetector != null) {
+            if (gazePoint == null) {
+                fixationDetector.addInvalidSample();
+            } else {
+                fixationDetector.addSample(sample.getTimestamp(), gazePoint.eyeX, gazePoint.eyeY);
+            }
+        }
+        if (!isRawGazeOutput) return;
+        Element gaze = getRawGazeElement(sample);
+        issueSequence(gaze);
         if(gazePoint == null) { // CLG note: Java is smart enough that this null check means it won't
                                 // complain that gazePoint might be null after this point.
             gaze.setAttribute("remark", "Fail | Invalid Gaze Point");
+            writeElement(gaze);
             return;
         }
+        mapElement(gaze, gazePoint);
+    }
+
+    /**
+     * This method processes a detected fixation. The fixation is mapped to the specific source code element once, like a
+     * gaze at its centroid.
+     *
+     * @param fixation The fixation.
+     */
+    private void processFixation(FixationDetector.Fixation fixation) {
+        Element fixationElement = eyeTracking.createElement("fixation");
+        issueSequence(fixationElement);
+        fixationElement.setAttribute("start", String.valueOf(fixation.start()));
+        fixationElement.setAttribute("end", String.valueOf(fixation.end()));
+        fixationElement.setAttribute("duration", String.valueOf(fixation.duration()));
+        int x = (int) Math.round(fixation.x());
+        int y = (int) Math.round(fixation.y());
+        fixationElement.setAttribute("x", String.valueOf(x));
+        fixationElement.setAttribute("y", String.valueOf(y));
+        fixationElement.setAttribute("sample_count", String.valueOf(fixation.sampleCount()));
+        mapElement(fixationElement, new EyeGazePoint(x, y));
+    }
 
-        // First, check to see if in the SearchEverywhere popup, which will overlay everything if it exists
-        IDETracker.AOIBounds popup = ideTracker.getAOIMap().get("SearchEverywhere");
-        if ((popup != null) && inBounds(popup, gazePoint)) {
-            gaze.setAttribute("AOI", "SearchEverywhere");
+    /**
+     * This method finds the AOI of a gaze or fixation element. If it is in the editor, it is queued to be mapped to the
+     * specific source code element, otherwise it is written directly. Either way, it is written after the elements
+     * created before it.
+     *
+     * @param gaze      The gaze or fixation element.
+     * @param gazePoint The point on the screen.
+     */
+    private void mapElement(Element gaze, EyeGazePoint gazePoint) {
+        // Record the version of the AOIs the gaze is evaluated against, so that the result can be reproduced.
+        AOIRegistry.Snapshot aois = ideTracker.getAOIRegistry().snapshot();
+        gaze.setAttribute("aoi_version", String.valueOf(aois.getVersion()));
+        // First, check to see if in a popup (e.g., SearchEverywhere), which will overlay everything if it exists
+        AOIIndex.Entry aoi = aois.find(gazePoint.eyeX, gazePoint.eyeY);
+        if (aoi != null && aoi.layer() == AOIIndex.Layer.POPUP) {
+            gaze.setAttribute("AOI", aoi.id());
+            writeElement(gaze);
             return;
         }
 
@@ -268,31 +498,10 @@ public class EyeTracker implements Disposable {
                 // FIXME KAIA: claire pleads that you check this; I inverted the if condition
                 // to make it so that this SHOULD be true if the AOI IS the editor
                 // (previously it was a check if the AOI was NOT the editor).
-                // I'd be happier if there were a way to use the "inBounds" helper function I made, above
-                // but the types don't match up and I'm a little bit too lazy to figure out how to make them match up.
                 gaze.setAttribute("AOI", "Editor");
                 Point relativePoint = new Point(relativeX, relativeY);
 
-                EventQueue.invokeLater(new Thread(() -> {
-                    PsiFile psiFile = psiDocumentManager.getPsiFile(editor.getDocument());
-                    LogicalPosition logicalPosition = editor.xyToLogicalPosition(relativePoint);
-                    if (psiFile != null) {
-                        int offset = editor.logicalPositionToOffset(logicalPosition);
-                        PsiElement psiElement = psiFile.findElementAt(offset);
-                        Element location = eyeTracking.createElement("location");
-                        location.setAttribute("x", String.valueOf(gazePoint.eyeX));
-                        location.setAttribute("y", String.valueOf(gazePoint.eyeY));
-                        location.setAttribute("line", String.valueOf(logicalPosition.line));
-                        location.setAttribute("column", String.valueOf(logicalPosition.column));
-                        location.setAttribute("path", RelativePathGetter.getRelativePath(filePath, projectPath));
-                        gaze.appendChild(location);
-                        Element aSTStructure = getASTStructureElement(psiElement);
-                        gaze.appendChild(aSTStructure);
-                        lastElement = psiElement;
-//                System.out.println(gaze.getAttribute("timestamp") + " " + System.currentTimeMillis());
-                        handleElement(gaze);
-                    }
-                }));
+                mappingPipeline.submit(new GazeTarget(editor, filePath, gazePoint, relativePoint), gaze);
                 return;
             }
         } catch (IllegalComponentStateException | NullPointerException e) {
@@ -303,20 +512,194 @@ public class EyeTracker implements Disposable {
         // anyhoozles.  Execution would get here for one of two reasons: either the catch block immediately above
         // these comments triggered, because there is no editor
         // OR we didn't return on line 319, where we would have if the relative gaze is within the
-        // active visible area. In that case, check the AOI map in case they're looking somewhere else.
+        // active visible area. In that case, use the AOI found above in case they're looking somewhere else.
+        gaze.setAttribute("AOI", aoi != null ? aoi.id() : "OOB");
+        writeElement(gaze);
+    }
 
-        // CLG can't help herself, demonstrating some fun with Streams...
-        ideTracker.getAOIMap().entrySet().stream()
-                .filter(e -> inBounds(e.getValue(), gazePoint))
-                .findFirst()
-                .ifPresentOrElse(
-                        e -> gaze.setAttribute("AOI", e.getKey()),
-                        () -> gaze.setAttribute("AOI", "OOB")
-                );
+    /**
+     * This method maps a batch of gazes in the editor to the source code elements, and then writes them. The entries
+     * of the batch are mapped in as few read actions as possible, but a read action is ended between two entries as
+     * soon as a write action is pending, and is not started while a write action is pending or running, so that the
+     * mapping never holds up typing in the editor. Consecutive gazes on the same point share the mapping, and only the
+     * first of them gets the full AST structure. The published events always get the full AST structure.
+     *
+     * @param batch The batch of gazes.
+     */
+    private void mapGazes(List<GazeMappingPipeline.Entry<GazeTarget>> batch) {
+        boolean isPublishing = EventBus.getInstance().hasSubscriptions();
+        Map<GazeMappingPipeline.Entry<GazeTarget>, List<CodeLocation.Level>> entryLevels = new IdentityHashMap<>();
+        ApplicationEx application = ApplicationManagerEx.getApplicationEx();
+        int[] nextIndex = {0};
+        try {
+            while (nextIndex[0] < batch.size()) {
+                boolean isRead = application.tryRunReadAction(() -> {
+                    do {
+                        mapEntry(batch.get(nextIndex[0]++), isPublishing, entryLevels);
+                    } while (nextIndex[0] < batch.size() && !application.isWriteActionPending());
+                });
+                if (!isRead) {
+                    // let the write action finish before trying again
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            }
+        } finally {
+            // even if the mapping fails, the gazes are written, since the later gazes wait for them
+            for (GazeMappingPipeline.Entry<GazeTarget> entry : batch) {
+                for (Element gaze : entry.getGazes()) {
+                    if (gaze.getElementsByTagName("location").getLength() > 0) {
+                        handleElement(gaze, entryLevels.get(entry));
+                    }
+                    writeElement(gaze);
+                }
+            }
+        }
+    }
+
+    /**
+     * This method maps the gazes of an entry of the mapping pipeline to the source code element at their point. It must
+     * be called in a read action.
+     *
+     * @param entry        The entry of the mapping pipeline.
+     * @param isPublishing Whether the gazes are published, so that the AST ancestry is kept in the entry levels.
+     * @param entryLevels  The AST ancestry of each mapped entry, for the published events.
+     */
+    private void mapEntry(GazeMappingPipeline.Entry<GazeTarget> entry, boolean isPublishing,
+                          Map<GazeMappingPipeline.Entry<GazeTarget>, List<CodeLocation.Level>> entryLevels) {
+        GazeTarget target = entry.getTarget();
+        Editor targetEditor = target.editor();
+        if (targetEditor.isDisposed()) {
+            entry.getGazes().forEach(gaze -> gaze.setAttribute("remark", "Fail | No Editor"));
+            return;
+        }
+        PsiFile psiFile = psiDocumentManager.getPsiFile(targetEditor.getDocument());
+        if (psiFile == null) {
+            return;
+        }
+        LogicalPosition logicalPosition = targetEditor.xyToLogicalPosition(target.relativePoint());
+        int offset = targetEditor.logicalPositionToOffset(logicalPosition);
+        PsiElement psiElement = psiFile.findElementAt(offset);
+        String path = RelativePathGetter.getRelativePath(target.filePath(), projectPath);
+        if (isPublishing) {
+            entryLevels.put(entry, astAncestryCache.getAncestry(targetEditor, psiElement).stream()
+                    .map(level -> new CodeLocation.Level(level.tag(), level.start(), level.end())).toList());
+        }
+        for (Element gaze : entry.getGazes()) {
+            addToHeatmap(gaze, path, targetEditor, offset, psiElement);
+            Element location = eyeTracking.createElement("location");
+            location.setAttribute("x", String.valueOf(target.gazePoint().eyeX));
+            location.setAttribute("y", String.valueOf(target.gazePoint().eyeY));
+            location.setAttribute("line", String.valueOf(logicalPosition.line));
+            location.setAttribute("column", String.valueOf(logicalPosition.column));
+            location.setAttribute("path", path);
+            gaze.appendChild(location);
+            PsiElement lastElement = lastElements.get(gaze.getTagName());
+            gaze.appendChild(getASTStructureElement(targetEditor, psiElement, lastElement));
+            lastElements.put(gaze.getTagName(), psiElement);
+        }
+    }
+
+    /**
+     * This method adds the dwell time of a mapped gaze or fixation to the heatmaps. If fixations are detected, only the
+     * fixations are added with their duration, otherwise each gaze is added with the sample interval.
+     *
+     * @param gaze       The gaze or fixation element.
+     * @param path       The relative path of the file.
+     * @param editor     The editor of the file.
+     * @param offset     The offset the gaze is mapped to.
+     * @param psiElement The PSI element at the offset.
+     */
+    private void addToHeatmap(Element gaze, String path, Editor editor, int offset, PsiElement psiElement) {
+        long timestamp, dwell;
+        if (gaze.getTagName().equals("fixation")) {
+            timestamp = Long.parseLong(gaze.getAttribute("start"));
+            dwell = Long.parseLong(gaze.getAttribute("duration")) * 1000;
+        } else if (fixationDetector == null && sampleFrequency > 0) {
+            timestamp = (long) Double.parseDouble(gaze.getAttribute("timestamp"));
+            dwell = Math.round(1_000_000 / sampleFrequency);
+        } else {
+            return;
+        }
+        int elementStart = -1, elementEnd = -1;
+        String token = null, type = null;
+        if (psiElement != null && psiElement.getTextLength() > 0) {
+            elementStart = psiElement.getTextRange().getStartOffset();
+            elementEnd = psiElement.getTextRange().getEndOffset();
+            token = psiElement.getText();
+            type = psiElement.getNode().getElementType().toString();
+        }
+        heatmapAggregator.add(path, editor.getDocument(), offset, elementStart, elementEnd, token, type, timestamp,
+                dwell);
+    }
+
+    /**
+     * This method writes the gazes dropped by the mapping pipeline under backpressure without mapping them.
+     *
+     * @param entry The dropped gazes.
+     */
+    private void dropGazes(GazeMappingPipeline.Entry<GazeTarget> entry) {
+        for (Element gaze : entry.getGazes()) {
+            gaze.setAttribute("remark", "Fail | Dropped");
+            writeElement(gaze);
+        }
+    }
+
+    /**
+     * This method issues the sequence number of a new gaze or fixation element, so that it is written in the order it
+     * was created.
+     *
+     * @param element The gaze or fixation element.
+     */
+    private void issueSequence(Element element) {
+        ReorderBuffer<Element> order = element.getTagName().equals("fixation") ? fixationOrder : gazeOrder;
+        element.setUserData(SEQUENCE_KEY, order.issue(), null);
+    }
+
+    /**
+     * This method writes the complete gaze or fixation element once all the elements created before it are written,
+     * whichever thread completes them.
+     *
+     * @param element The gaze or fixation element.
+     */
+    private void writeElement(Element element) {
+        Long sequence = (Long) element.getUserData(SEQUENCE_KEY);
+        if (sequence == null) {
+            appendElement(element);
+        } else if (element.getTagName().equals("fixation")) {
+            fixationOrder.put(sequence, element);
+        } else {
+            gazeOrder.put(sequence, element);
+        }
+    }
+
+    /**
+     * This method appends the complete gaze element to the {@code eye_tracking.xml} file, or the complete fixation
+     * element to the spilled fixations. In the columnar format, both are appended to their sections of the
+     * {@code eye_tracking} directory.
+     *
+     * @param element The gaze or fixation element.
+     */
+    private void appendElement(Element element) {
+        try {
+            boolean isFixation = element.getTagName().equals("fixation");
+            if (eventJournal != null) {
+                eventJournal.append(journalFileId, isFixation ? "fixations" : "gazes", element);
+            }
+            if (columnarWriter != null) {
+                columnarWriter.writeElement(isFixation ? "fixations" : "gazes", element);
+            } else if (isFixation) {
+                fixationWriter.writeElement("fixations", element);
+            } else {
+                eyeTrackingWriter.writeElement(element);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to write the " + element.getTagName() + " to eye_tracking.xml", e);
+        }
     }
 
     /**
      * This method builds the Python process and redirects the output to the {@code pythonOutputThread} to process.
+     * In the binary format, the error stream is not merged into the output, so that it cannot corrupt the frames.
      */
     public void track() {
         try {
@@ -326,16 +709,19 @@ public class EyeTracker implements Disposable {
             } else {
                 processBuilder = new ProcessBuilder(pythonInterpreter, "-c", pythonScriptTobii);
             }
-            processBuilder.redirectErrorStream(true);
+            if (gazeFormat == GazeFormatEnum.BINARY) {
+                processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+            } else {
+                processBuilder.redirectErrorStream(true);
+            }
             pythonProcess = processBuilder.start();
 
             pythonOutputThread = new Thread(() -> {
-                try (InputStream inputStream = pythonProcess.getInputStream();
-                     InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-                     BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-                    String line;
-                    while ((line = bufferedReader.readLine()) != null) {
-                        processRawData(line);
+                try {
+                    if (gazeFormat == GazeFormatEnum.BINARY) {
+                        readBinaryGazeData(pythonProcess.getInputStream());
+                    } else {
+                        readTextGazeData(pythonProcess.getInputStream());
                     }
                 } catch (IOException e) {
                     e.printStackTrace();
@@ -348,6 +734,62 @@ public class EyeTracker implements Disposable {
         }
     }
 
+    /**
+     * This method reads the gaze data lines of the text format until the Python process ends.
+     *
+     * @param inputStream The output stream of the Python process.
+     */
+    private void readTextGazeData(InputStream inputStream) throws IOException {
+        try (InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
+             BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                processRawData(line);
+            }
+        }
+    }
+
+    /**
+     * This method reads the gaze data frames of the binary format until the Python process ends. The stream starts with
+     * a header of the magic number, the version and the frame size, followed by fixed-width little-endian frames as
+     * described in {@link RawGazeSample}.
+     *
+     * @param inputStream The output stream of the Python process.
+     */
+    private void readBinaryGazeData(InputStream inputStream) throws IOException {
+        try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(inputStream))) {
+            ByteBuffer header = ByteBuffer.allocate(RawGazeSample.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            dataInputStream.readFully(header.array());
+            int magic = header.getInt();
+            int version = Short.toUnsignedInt(header.getShort());
+            int frameSize = Short.toUnsignedInt(header.getShort());
+            if (magic != RawGazeSample.FRAME_MAGIC || frameSize != RawGazeSample.FRAME_SIZE
+                    || (version != RawGazeSample.FRAME_VERSION && version != RawGazeSample.MOUSE_FRAME_VERSION)) {
+                throw new IOException("Unsupported binary gaze stream (version " + version + ", frame size " + frameSize + ")");
+            }
+            ByteBuffer frame = ByteBuffer.allocate(RawGazeSample.FRAME_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (true) {
+                try {
+                    dataInputStream.readFully(frame.array());
+                } catch (EOFException e) {
+                    return;
+                }
+                frame.clear();
+                sample.decode(frame, version);
+                processSample(sample);
+            }
+        }
+    }
+
+    /**
+     * This method gets the cache of the AST ancestry, e.g., for its hit rate.
+     *
+     * @return The AST ancestry cache.
+     */
+    public ASTAncestryCache getASTAncestryCache() {
+        return astAncestryCache;
+    }
+
     /**
      * This method sets the project path.
      *
@@ -357,35 +799,31 @@ public class EyeTracker implements Disposable {
         this.projectPath = projectPath;
     }
 
+    /**
+     * This method gets the gaze mapping pipeline of the current tracking, e.g., for its queued, coalesced and dropped
+     * sample counters.
+     *
+     * @return The gaze mapping pipeline, or {@code null} if the tracking has not started.
+     */
+    public GazeMappingPipeline<?> getMappingPipeline() {
+        return mappingPipeline;
+    }
+
     @Override
     public void dispose() {
+        if (eyeTrackerDataSubscription != null) {
+            eyeTrackerDataSubscription.close();
+        }
     }
 
     /**
-     * This method gets the raw gaze xml element from the raw gaze data.
+     * This method gets the raw gaze xml element from the decoded raw gaze data. The attributes keep the original text
+     * of the fields. The {@code gaze_point_z} attributes are omitted if the device does not report them (e.g., mouse).
      *
-     * @param message The raw gaze data.
+     * @param sample The decoded raw gaze data.
      * @return The raw gaze element.
      */
-    public Element getRawGazeElement(String message) {
-        String timestamp = message.split("; ")[0];
-
-        String leftInfo = message.split("; ")[1];
-        String leftGazePointX = leftInfo.split(", ")[0];
-        String leftGazePointY = leftInfo.split(", ")[1];
-        String leftGazeValidity = leftInfo.split(", ")[2];
-        String leftPupilDiameter = leftInfo.split(", ")[3];
-        String leftPupilValidity = leftInfo.split(", ")[4];
-
-        String rightInfo = message.split("; ")[2];
-        String rightGazePointX = rightInfo.split(", ")[0];
-        String rightGazePointY = rightInfo.split(", ")[1];
-        String rightGazeValidity = rightInfo.split(", ")[2];
-        String rightPupilDiameter = rightInfo.split(", ")[3];
-        String rightPupilValidity = rightInfo.split(", ")[4];
-        String leftTrackbox = rightInfo.split(", ")[5];
-        String rightTrackbox = rightInfo.split(", ")[6];
-
+    public Element getRawGazeElement(RawGazeSample sample) {
         Element rawGaze = eyeTracking.createElement("gaze");
         Element leftEye = eyeTracking.createElement("left_eye");
         Element rightEye = eyeTracking.createElement("right_eye");
@@ -393,21 +831,25 @@ public class EyeTracker implements Disposable {
         rawGaze.appendChild(leftEye);
         rawGaze.appendChild(rightEye);
 
-        rawGaze.setAttribute("timestamp", timestamp);
+        rawGaze.setAttribute("timestamp", sample.getText(RawGazeSample.TIMESTAMP));
 
-        leftEye.setAttribute("gaze_point_x", leftGazePointX);
-        leftEye.setAttribute("gaze_point_y", leftGazePointY);
-        leftEye.setAttribute("gaze_validity", leftGazeValidity);
-        leftEye.setAttribute("pupil_diameter", leftPupilDiameter);
-        leftEye.setAttribute("pupil_validity", leftPupilValidity);
-        leftEye.setAttribute("gaze_point_z", leftTrackbox);
+        leftEye.setAttribute("gaze_point_x", sample.getText(RawGazeSample.LEFT_GAZE_POINT_X));
+        leftEye.setAttribute("gaze_point_y", sample.getText(RawGazeSample.LEFT_GAZE_POINT_Y));
+        leftEye.setAttribute("gaze_validity", sample.getText(RawGazeSample.LEFT_GAZE_VALIDITY));
+        leftEye.setAttribute("pupil_diameter", sample.getText(RawGazeSample.LEFT_PUPIL_DIAMETER));
+        leftEye.setAttribute("pupil_validity", sample.getText(RawGazeSample.LEFT_PUPIL_VALIDITY));
+        if (sample.hasField(RawGazeSample.LEFT_GAZE_POINT_Z)) {
+            leftEye.setAttribute("gaze_point_z", sample.getText(RawGazeSample.LEFT_GAZE_POINT_Z));
+        }
 
-        rightEye.setAttribute("gaze_point_x", rightGazePointX);
-        rightEye.setAttribute("gaze_point_y", rightGazePointY);
-        rightEye.setAttribute("gaze_validity", rightGazeValidity);
-        rightEye.setAttribute("pupil_diameter", rightPupilDiameter);
-        rightEye.setAttribute("pupil_validity", rightPupilValidity);
-        rightEye.setAttribute("gaze_point_z", rightTrackbox);
+        rightEye.setAttribute("gaze_point_x", sample.getText(RawGazeSample.RIGHT_GAZE_POINT_X));
+        rightEye.setAttribute("gaze_point_y", sample.getText(RawGazeSample.RIGHT_GAZE_POINT_Y));
+        rightEye.setAttribute("gaze_validity", sample.getText(RawGazeSample.RIGHT_GAZE_VALIDITY));
+        rightEye.setAttribute("pupil_diameter", sample.getText(RawGazeSample.RIGHT_PUPIL_DIAMETER));
+        rightEye.setAttribute("pupil_validity", sample.getText(RawGazeSample.RIGHT_PUPIL_VALIDITY));
+        if (sample.hasField(RawGazeSample.RIGHT_GAZE_POINT_Z)) {
+            rightEye.setAttribute("gaze_point_z", sample.getText(RawGazeSample.RIGHT_GAZE_POINT_Z));
+        }
 
         return rawGaze;
     }
@@ -419,6 +861,20 @@ public class EyeTracker implements Disposable {
      * @return The AST structure element.
      */
     public Element getASTStructureElement(PsiElement psiElement) {
+        return getASTStructureElement(editor, psiElement, lastElements.get("gaze"));
+    }
+
+    /**
+     * This method gets the AST structure element from the PSI element, with the positions of the levels in the given
+     * editor. The levels are left out if the PSI element is the same as the last one mapped for the same kind of
+     * element.
+     *
+     * @param editor      The editor of the PSI element.
+     * @param psiElement  The PSI element.
+     * @param lastElement The last PSI element mapped for the same kind of element.
+     * @return The AST structure element.
+     */
+    private Element getASTStructureElement(Editor editor, PsiElement psiElement, PsiElement lastElement) {
         String token = "", type = "";
         Element aSTStructure = eyeTracking.createElement("ast_structure");
         if (psiElement != null && psiElement.getTextLength() > 0) {
@@ -431,42 +887,56 @@ public class EyeTracker implements Disposable {
             aSTStructure.setAttribute("remark", "Same (Last Successful AST)");
             return aSTStructure;
         }
-        PsiElement parent = psiElement;
-        while (parent != null) {
-            if (parent instanceof PsiFile) {
-                break;
-            }
+        for (ASTAncestryCache.Level ancestor : astAncestryCache.getAncestry(editor, psiElement)) {
             Element level = eyeTracking.createElement("level");
             aSTStructure.appendChild(level);
-            level.setAttribute("tag", String.valueOf(parent));
-            LogicalPosition startLogicalPosition = editor.offsetToLogicalPosition(parent.getTextRange().getStartOffset());
-            LogicalPosition endLogicalPosition = editor.offsetToLogicalPosition(parent.getTextRange().getEndOffset());
-            level.setAttribute("start", startLogicalPosition.line + ":" + startLogicalPosition.column);
-            level.setAttribute("end", endLogicalPosition.line + ":" + endLogicalPosition.column);
-            parent = parent.getParent();
+            level.setAttribute("tag", ancestor.tag());
+            level.setAttribute("start", ancestor.start());
+            level.setAttribute("end", ancestor.end());
         }
         return aSTStructure;
     }
 
     /**
-     * This method handles the element.
+     * This method publishes the mapped gaze or fixation element to the {@link EventBus} as a {@link GazeSample} or
+     * {@link Fixation}. The event is not created if nothing is subscribed.
      *
-     * @param element The element.
+     * @param element The gaze or fixation element.
+     * @param levels  The full AST ancestry of the location, or {@code null} to read it from the element.
      */
-    private void handleElement(Element element) {
-        if (eyeTrackerDataHandler != null && isRealTimeDataTransmitting) {
-            eyeTrackerDataHandler.accept(element);
-        } else if (eyeTrackerDataHandler == null) {
-//            throw new RuntimeException("eyeTrackerDataHandler is null");
-        }
+    private void handleElement(Element element, List<CodeLocation.Level> levels) {
+        EventBus eventBus = EventBus.getInstance();
+        if (!eventBus.hasSubscriptions()) return;
+        eventBus.publish(element.getTagName().equals("fixation") ? Fixation.fromElement(element, levels)
+                : GazeSample.fromElement(element, levels));
     }
 
     public static void setIsRealTimeDataTransmitting(boolean isRealTimeDataTransmitting) {
         EyeTracker.isRealTimeDataTransmitting = isRealTimeDataTransmitting;
     }
 
+    /**
+     * This method sets the handler for the eye tracker data for real-time data transmission. The handler is subscribed
+     * to the {@link EventBus} with {@link OverflowPolicy#DROP_OLDEST}, so it runs on the thread of the subscription
+     * rather than on the thread of the gaze mapping, and receives a copy of each mapped gaze or fixation element while
+     * {@code isRealTimeDataTransmitting} is {@code true}.
+     *
+     * @param eyeTrackerDataHandler The handler for the eye tracker data, or {@code null} to remove the handler.
+     * @deprecated Subscribe to the {@link EventBus} for the immutable {@link GazeSample}s and {@link Fixation}s instead.
+     */
+    @Deprecated
     public void setEyeTrackerDataHandler(Consumer<Element> eyeTrackerDataHandler) {
-        this.eyeTrackerDataHandler = eyeTrackerDataHandler;
+        if (eyeTrackerDataSubscription != null) {
+            eyeTrackerDataSubscription.close();
+            eyeTrackerDataSubscription = null;
+        }
+        if (eyeTrackerDataHandler == null) return;
+        eyeTrackerDataSubscription = EventBus.getInstance().subscribe("Eye Tracker Data Handler",
+                EnumSet.of(EventFamily.GAZE, EventFamily.FIXATION), OverflowPolicy.DROP_OLDEST, event -> {
+                    if (isRealTimeDataTransmitting) {
+                        eyeTrackerDataHandler.accept(event.toElement(handlerDocument));
+                    }
+                });
     }
 
     public void setPythonInterpreter(String pythonInterpreter) {
@@ -482,11 +952,80 @@ public class EyeTracker implements Disposable {
     }
     public void setDominantEye(EyeEnum dominantEye) {this.dominantEye = dominantEye;}
 
+    /**
+     * This method sets the format of the gaze data sent from the Python process. It must be set before the Python
+     * scripts are built.
+     *
+     * @param gazeFormat The gaze data format.
+     */
+    public void setGazeFormat(GazeFormatEnum gazeFormat) {
+        this.gazeFormat = gazeFormat;
+    }
+
+    /**
+     * This method sets the algorithm of the online fixation detection.
+     *
+     * @param fixationAlgorithm The fixation detection algorithm, or {@code NONE} to not detect fixations.
+     */
+    public void setFixationAlgorithm(FixationAlgorithmEnum fixationAlgorithm) {
+        this.fixationAlgorithm = fixationAlgorithm;
+    }
+
+    /**
+     * This method sets whether the raw gazes are recorded. The raw gazes are always recorded if fixations are not
+     * detected.
+     *
+     * @param isRawGazeOutput Whether the raw gazes are recorded.
+     */
+    public void setRawGazeOutput(boolean isRawGazeOutput) {
+        this.isRawGazeOutput = isRawGazeOutput;
+    }
+
+    /**
+     * This method sets the format of the eye tracking data files.
+     *
+     * @param outputFormat The output format.
+     */
+    public void setOutputFormat(OutputFormatEnum outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * This method sets the journal the gazes and fixations are also appended to.
+     *
+     * @param eventJournal The event journal.
+     */
+    public void setEventJournal(EventJournal eventJournal) {
+        this.eventJournal = eventJournal;
+    }
+
+    /**
+     * This method gets the Python statements that set up the output of the selected gaze data format. The binary
+     * format writes the stream header and defines the frame layout of {@link RawGazeSample}.
+     *
+     * @param frameVersion The version of the frame layout written in the stream header.
+     * @return The Python statements.
+     */
+    private String getPythonOutputSetup(int frameVersion) {
+        if (gazeFormat != GazeFormatEnum.BINARY) {
+            return "binary = False\n";
+        }
+        return """
+                binary = True
+                import struct
+                import sys
+                frame = struct.Struct('<qddididdididd')
+                sys.stdout.buffer.write(struct.pack('<IHH', %d, %d, frame.size))
+                sys.stdout.buffer.flush()
+                """.formatted(RawGazeSample.FRAME_MAGIC, frameVersion);
+    }
+
     /**
      * This method sets the Python script for the Tobii eye tracker.
      */
     public void setPythonScriptTobii() {
-        pythonScriptTobii = "freq = " + sampleFrequency + "\n" + """
+        pythonScriptTobii = "freq = " + sampleFrequency + "\n" + getPythonOutputSetup(RawGazeSample.FRAME_VERSION)
+                + """
                 import tobii_research as tr
                 import time
                 import sys
@@ -494,6 +1033,24 @@ public class EyeTracker implements Disposable {
                             
                             
                 def gaze_data_callback(gaze_data):
+                    if binary:
+                        sys.stdout.buffer.write(frame.pack(
+                            round(time.time() * 1000),
+                            gaze_data['left_gaze_point_on_display_area'][0],
+                            gaze_data['left_gaze_point_on_display_area'][1],
+                            gaze_data['left_gaze_point_validity'],
+                            gaze_data['left_pupil_diameter'],
+                            gaze_data['left_pupil_validity'],
+                            gaze_data['right_gaze_point_on_display_area'][0],
+                            gaze_data['right_gaze_point_on_display_area'][1],
+                            gaze_data['right_gaze_point_validity'],
+                            gaze_data['right_pupil_diameter'],
+                            gaze_data['right_pupil_validity'],
+                            gaze_data['left_gaze_origin_in_trackbox_coordinate_system'][2],
+                            gaze_data['right_gaze_origin_in_trackbox_coordinate_system'][2]
+                        ))
+                        sys.stdout.buffer.flush()
+                        return
                     message = '{}; {}, {}, {}, {}, {}; {}, {}, {}, {}, {}, {}, {}'.format(
                         round(time.time() * 1000),
                         gaze_data['left_gaze_point_on_display_area'][0],
@@ -526,7 +1083,8 @@ public class EyeTracker implements Disposable {
      * This method sets the Python script for the mouse eye tracker.
      */
     public void setPythonScriptMouse() {
-        pythonScriptMouse = "freq = " + sampleFrequency + "\n" + """
+        pythonScriptMouse = "freq = " + sampleFrequency + "\n"
+                + getPythonOutputSetup(RawGazeSample.MOUSE_FRAME_VERSION) + """
                 import pyautogui
                 from screeninfo import get_monitors
                 import time
@@ -540,6 +1098,15 @@ public class EyeTracker implements Disposable {
                 while time.time() - start_time <= math.inf:
                     current_time = time.time()
                     if current_time - last_time > 1 / freq:
+                        if binary:
+                            x, y = pyautogui.position()
+                            sys.stdout.buffer.write(frame.pack(round(current_time * 1000),
+                                                               x / width, y / height, 1, 0.0, 0,
+                                                               x / width, y / height, 1, 0.0, 0,
+                                                               math.nan, math.nan))
+                            sys.stdout.buffer.flush()
+                            last_time = current_time
+                            continue
                         message = f'{round(current_time * 1000)}; ' \\
                                   f'{pyautogui.position().x / width}, {pyautogui.position().y / height}, 1.0, 0, 0.0; ' \\
                                   f'{pyautogui.position().x / width}, {pyautogui.position().y / height}, 1.0, 0, 0.0'
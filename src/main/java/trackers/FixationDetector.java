@@ -0,0 +1,279 @@
+package trackers;
+
+import entity.FixationAlgorithmEnum;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * This class detects fixations online from the stream of gaze points, using either the velocity-threshold (I-VT) or the
+ * dispersion-threshold (I-DT) identification. A fixation is emitted as soon as it ends, i.e., when a saccade, an
+ * invalid gaze point, or a gap in the samples is seen, or when {@link #flush()} is called.
+ * <p>
+ * The gaze points are in screen pixels and the timestamps are in milliseconds.
+ */
+public final class FixationDetector {
+    /**
+     * The default velocity threshold of I-VT in pixels per second, about 30 degrees per second at a usual viewing
+     * distance.
+     */
+    public static final double DEFAULT_VELOCITY_THRESHOLD = 1200;
+    /**
+     * The default dispersion threshold of I-DT in pixels, i.e., the maximum of
+     * {@code (max x - min x) + (max y - min y)} within a fixation, about one degree of visual angle.
+     */
+    public static final double DEFAULT_DISPERSION_THRESHOLD = 50;
+    /**
+     * The default minimum duration of a fixation in milliseconds.
+     */
+    public static final long DEFAULT_MIN_DURATION = 100;
+    /**
+     * The default maximum time between two samples of a fixation in milliseconds. A longer gap (e.g., a blink) ends the
+     * fixation.
+     */
+    public static final long DEFAULT_MAX_GAP = 150;
+    /**
+     * The initial capacity of the sliding window of I-DT, which only holds the samples until they form a fixation.
+     */
+    private static final int INITIAL_WINDOW_CAPACITY = 64;
+
+    /**
+     * This record is a detected fixation.
+     *
+     * @param start       The timestamp of the first sample.
+     * @param end         The timestamp of the last sample.
+     * @param x           The x coordinate of the centroid.
+     * @param y           The y coordinate of the centroid.
+     * @param sampleCount The number of samples.
+     */
+    public record Fixation(long start, long end, double x, double y, int sampleCount) {
+        /**
+         * Get the duration of the fixation.
+         *
+         * @return The duration in milliseconds.
+         */
+        public long duration() {
+            return end - start;
+        }
+    }
+
+    private final FixationAlgorithmEnum algorithm;
+    private final double velocityThreshold;
+    private final double dispersionThreshold;
+    private final long minDuration;
+    private final long maxGap;
+    private final Consumer<Fixation> fixationHandler;
+
+    /**
+     * The samples of the window of I-DT that is not a fixation yet, from {@code windowStart} to {@code windowEnd}.
+     */
+    private long[] timestamps = new long[INITIAL_WINDOW_CAPACITY];
+    private int[] xs = new int[INITIAL_WINDOW_CAPACITY];
+    private int[] ys = new int[INITIAL_WINDOW_CAPACITY];
+    private int windowStart = 0;
+    private int windowEnd = 0;
+    /**
+     * The current candidate (I-VT) or fixation (I-DT), which only keeps the timestamps of its first and last sample,
+     * its number of samples, and the sums of their coordinates, so that a long fixation takes constant memory. For
+     * I-DT, whether the window has become a fixation, and its bounds once it has.
+     */
+    private long fixationStart, fixationEnd;
+    private int sampleCount = 0;
+    private long sumX, sumY;
+    private boolean isFixation = false;
+    private int minX, maxX, minY, maxY;
+    private boolean hasLast = false;
+    private long lastTimestamp;
+    private int lastX, lastY;
+
+    /**
+     * Create the detector with the default thresholds.
+     *
+     * @param algorithm       The algorithm, either {@code IVT} or {@code IDT}.
+     * @param fixationHandler The handler of the detected fixations.
+     */
+    public FixationDetector(FixationAlgorithmEnum algorithm, Consumer<Fixation> fixationHandler) {
+        this(algorithm, DEFAULT_VELOCITY_THRESHOLD, DEFAULT_DISPERSION_THRESHOLD, DEFAULT_MIN_DURATION,
+                DEFAULT_MAX_GAP, fixationHandler);
+    }
+
+    /**
+     * Create the detector.
+     *
+     * @param algorithm           The algorithm, either {@code IVT} or {@code IDT}.
+     * @param velocityThreshold   The velocity threshold of I-VT in pixels per second.
+     * @param dispersionThreshold The dispersion threshold of I-DT in pixels.
+     * @param minDuration         The minimum duration of a fixation in milliseconds.
+     * @param maxGap              The maximum time between two samples of a fixation in milliseconds.
+     * @param fixationHandler     The handler of the detected fixations.
+     */
+    public FixationDetector(FixationAlgorithmEnum algorithm, double velocityThreshold, double dispersionThreshold,
+                            long minDuration, long maxGap, Consumer<Fixation> fixationHandler) {
+        if (algorithm == FixationAlgorithmEnum.NONE) {
+            throw new IllegalArgumentException("No fixation detection algorithm");
+        }
+        this.algorithm = algorithm;
+        this.velocityThreshold = velocityThreshold;
+        this.dispersionThreshold = dispersionThreshold;
+        this.minDuration = minDuration;
+        this.maxGap = maxGap;
+        this.fixationHandler = fixationHandler;
+    }
+
+    /**
+     * Add a valid gaze point.
+     *
+     * @param timestamp The timestamp of the sample.
+     * @param x         The x coordinate of the gaze point on the screen.
+     * @param y         The y coordinate of the gaze point on the screen.
+     */
+    public synchronized void addSample(long timestamp, int x, int y) {
+        if (hasLast && (timestamp - lastTimestamp > maxGap || timestamp < lastTimestamp)) {
+            flush();
+        }
+        if (algorithm == FixationAlgorithmEnum.IVT) {
+            addSampleIVT(timestamp, x, y);
+        } else {
+            addSampleIDT(timestamp, x, y);
+        }
+        hasLast = true;
+        lastTimestamp = timestamp;
+        lastX = x;
+        lastY = y;
+    }
+
+    /**
+     * Add an invalid gaze point, which ends the current fixation.
+     */
+    public synchronized void addInvalidSample() {
+        flush();
+    }
+
+    /**
+     * End the current fixation, emitting it if it is long enough.
+     */
+    public synchronized void flush() {
+        if (algorithm == FixationAlgorithmEnum.IVT) {
+            emitIfLongEnough();
+        } else if (isFixation) {
+            emit();
+        }
+        clear();
+        hasLast = false;
+    }
+
+    private void addSampleIVT(long timestamp, int x, int y) {
+        if (hasLast) {
+            long interval = Math.max(1, timestamp - lastTimestamp);
+            double velocity = Math.hypot(x - lastX, y - lastY) * 1000 / interval;
+            if (velocity > velocityThreshold) {
+                // a saccade sample ends the current fixation and is not part of any fixation
+                emitIfLongEnough();
+                clear();
+                return;
+            }
+        }
+        accumulate(timestamp, x, y);
+    }
+
+    private void emitIfLongEnough() {
+        if (sampleCount > 0 && fixationEnd - fixationStart >= minDuration) {
+            emit();
+        }
+    }
+
+    private void addSampleIDT(long timestamp, int x, int y) {
+        if (isFixation) {
+            int newMinX = Math.min(minX, x), newMaxX = Math.max(maxX, x);
+            int newMinY = Math.min(minY, y), newMaxY = Math.max(maxY, y);
+            if ((newMaxX - newMinX) + (newMaxY - newMinY) <= dispersionThreshold) {
+                accumulate(timestamp, x, y);
+                minX = newMinX;
+                maxX = newMaxX;
+                minY = newMinY;
+                maxY = newMaxY;
+                return;
+            }
+            // the sample leaves the fixation, and starts a new window
+            emit();
+            clear();
+        }
+        append(timestamp, x, y);
+        // slide the window until it covers the minimum duration with a small enough dispersion
+        while (timestamps[windowEnd - 1] - timestamps[windowStart] >= minDuration) {
+            computeWindowBounds();
+            if ((maxX - minX) + (maxY - minY) <= dispersionThreshold) {
+                // the window becomes the fixation, and its samples are no longer needed
+                isFixation = true;
+                fixationStart = timestamps[windowStart];
+                fixationEnd = timestamps[windowEnd - 1];
+                sampleCount = windowEnd - windowStart;
+                windowStart = 0;
+                windowEnd = 0;
+                return;
+            }
+            windowStart++;
+        }
+    }
+
+    private void accumulate(long timestamp, int x, int y) {
+        if (sampleCount == 0) {
+            fixationStart = timestamp;
+        }
+        fixationEnd = timestamp;
+        sampleCount++;
+        sumX += x;
+        sumY += y;
+    }
+
+    private void computeWindowBounds() {
+        minX = maxX = xs[windowStart];
+        minY = maxY = ys[windowStart];
+        sumX = sumY = 0;
+        for (int i = windowStart; i < windowEnd; i++) {
+            minX = Math.min(minX, xs[i]);
+            maxX = Math.max(maxX, xs[i]);
+            minY = Math.min(minY, ys[i]);
+            maxY = Math.max(maxY, ys[i]);
+            sumX += xs[i];
+            sumY += ys[i];
+        }
+    }
+
+    private void append(long timestamp, int x, int y) {
+        if (windowEnd == timestamps.length) {
+            if (windowStart > 0) {
+                // compact the window instead of growing the arrays
+                int length = windowEnd - windowStart;
+                System.arraycopy(timestamps, windowStart, timestamps, 0, length);
+                System.arraycopy(xs, windowStart, xs, 0, length);
+                System.arraycopy(ys, windowStart, ys, 0, length);
+                windowStart = 0;
+                windowEnd = length;
+            }
+            if (windowEnd == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, timestamps.length * 2);
+                xs = Arrays.copyOf(xs, xs.length * 2);
+                ys = Arrays.copyOf(ys, ys.length * 2);
+            }
+        }
+        timestamps[windowEnd] = timestamp;
+        xs[windowEnd] = x;
+        ys[windowEnd] = y;
+        windowEnd++;
+    }
+
+    private void emit() {
+        fixationHandler.accept(new Fixation(fixationStart, fixationEnd, (double) sumX / sampleCount,
+                (double) sumY / sampleCount, sampleCount));
+    }
+
+    private void clear() {
+        windowStart = 0;
+        windowEnd = 0;
+        isFixation = false;
+        sampleCount = 0;
+        sumX = 0;
+        sumY = 0;
+    }
+}
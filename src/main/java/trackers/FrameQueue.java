@@ -0,0 +1,140 @@
+package trackers;
+
+import entity.FrameQueuePolicyEnum;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * This class is the bounded queue of captured frames between the capture thread and the encoder thread of the screen
+ * recorder. The frame buffers are pooled: the capture thread acquires a buffer, fills it and offers it, and the encoder
+ * thread takes it, encodes it and releases it back to the pool. At most the capacity plus two buffers exist, i.e., the
+ * queued ones, the one being filled and the one being encoded.
+ * <p>
+ * When the queue is full, the policy decides which frame is dropped, and the dropped buffer goes back to the pool.
+ *
+ * @param <T> The type of the frame buffers.
+ */
+public final class FrameQueue<T> {
+    /**
+     * The default capacity of the queue in frames.
+     */
+    public static final int DEFAULT_CAPACITY = 4;
+    /**
+     * The time the encoder thread waits for a frame before checking whether the queue is closed, in milliseconds.
+     */
+    private static final long TAKE_TIMEOUT = 50;
+
+    private final ArrayBlockingQueue<T> queue;
+    private final ArrayBlockingQueue<T> pool;
+    private final Supplier<T> bufferFactory;
+    private final FrameQueuePolicyEnum policy;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private volatile boolean isClosed = false;
+
+    /**
+     * Create the queue.
+     *
+     * @param capacity      The capacity in frames.
+     * @param policy        The policy when the queue is full.
+     * @param bufferFactory The factory of the frame buffers, which are created when the pool is empty.
+     */
+    public FrameQueue(int capacity, FrameQueuePolicyEnum policy, Supplier<T> bufferFactory) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        pool = new ArrayBlockingQueue<>(capacity + 2);
+        this.policy = policy;
+        this.bufferFactory = bufferFactory;
+    }
+
+    /**
+     * Get a free buffer to fill with the next frame.
+     *
+     * @return The buffer.
+     */
+    public T acquire() {
+        T buffer = pool.poll();
+        return buffer != null ? buffer : bufferFactory.get();
+    }
+
+    /**
+     * Return a buffer to the pool after its frame is encoded or dropped.
+     *
+     * @param buffer The buffer.
+     */
+    public void release(T buffer) {
+        pool.offer(buffer);
+    }
+
+    /**
+     * Queue a filled buffer for the encoder. If the queue is full, a frame is dropped according to the policy.
+     *
+     * @param buffer The buffer.
+     * @return Whether a frame was dropped.
+     */
+    public boolean offer(T buffer) {
+        if (queue.offer(buffer)) return false;
+        if (policy == FrameQueuePolicyEnum.DROP_NEWEST) {
+            release(buffer);
+            droppedCount.incrementAndGet();
+            return true;
+        }
+        do {
+            T oldest = queue.poll();
+            if (oldest != null) {
+                release(oldest);
+                droppedCount.incrementAndGet();
+            }
+        } while (!queue.offer(buffer));
+        return true;
+    }
+
+    /**
+     * Wait for the next queued buffer. After the queue is closed, the remaining buffers are still returned.
+     *
+     * @return The buffer, or {@code null} if the queue is closed and empty.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+    public T take() throws InterruptedException {
+        while (true) {
+            T buffer = queue.poll(TAKE_TIMEOUT, TimeUnit.MILLISECONDS);
+            if (buffer != null) return buffer;
+            if (isClosed && queue.isEmpty()) return null;
+        }
+    }
+
+    /**
+     * Close the queue. No more frames are offered, and {@link #take()} returns {@code null} once the queue is drained.
+     */
+    public void close() {
+        isClosed = true;
+    }
+
+    /**
+     * Check whether the queue is closed, e.g., because the encoder gave up.
+     *
+     * @return Whether the queue is closed.
+     */
+    public boolean isClosed() {
+        return isClosed;
+    }
+
+    /**
+     * Get the number of frames dropped because the queue was full.
+     *
+     * @return The number of frames.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Get the number of frames in the queue.
+     *
+     * @return The number of frames.
+     */
+    public int size() {
+        return queue.size();
+    }
+}
@@ -0,0 +1,226 @@
+package trackers;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.w3c.dom.Element;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * This class batches the gaze samples that have to be mapped to source code elements. Samples are queued by the
+ * producer (e.g., the thread reading the eye tracker output) and handed to the batch mapper on a dedicated thread, at
+ * most once per batch interval, so that the batch can be resolved in a few read actions instead of one EDT event per
+ * sample. A batch holds at most the maximum batch size of entries; a longer queue is mapped in several consecutive
+ * batches, so that a backlog never makes one batch block write actions for long.
+ * <p>
+ * Consecutive samples with the same target are coalesced into one entry and mapped only once. When the queue is full,
+ * the oldest entry is dropped and handed to the drop handler. The numbers of queued, coalesced and dropped samples are
+ * counted.
+ *
+ * @param <T> The type of the mapping target, e.g., the editor and the point in it.
+ */
+public final class GazeMappingPipeline<T> {
+    /**
+     * The default interval between two batches in milliseconds, about one frame at 60 Hz.
+     */
+    public static final long DEFAULT_BATCH_INTERVAL = 16;
+    /**
+     * The default maximum number of entries waiting to be mapped.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /**
+     * The default maximum number of entries mapped in one batch.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    private static final Logger LOG = Logger.getInstance(GazeMappingPipeline.class);
+
+    /**
+     * This class is an entry of the queue: a mapping target and all the gaze elements coalesced into it.
+     *
+     * @param <T> The type of the mapping target.
+     */
+    public static final class Entry<T> {
+        private final T target;
+        private final List<Element> gazes = new ArrayList<>(1);
+
+        private Entry(T target, Element gaze) {
+            this.target = target;
+            gazes.add(gaze);
+        }
+
+        public T getTarget() {
+            return target;
+        }
+
+        /**
+         * Get the gaze elements of the entry, in the order they were submitted.
+         *
+         * @return The gaze elements.
+         */
+        public List<Element> getGazes() {
+            return gazes;
+        }
+    }
+
+    private final int capacity;
+    private final int maxBatchSize;
+    private final long batchInterval;
+    private final BiPredicate<T, T> isSameTarget;
+    private final Consumer<List<Entry<T>>> batchMapper;
+    private final Consumer<Entry<T>> dropHandler;
+    private final ScheduledExecutorService executor;
+    private final Object drainLock = new Object();
+    private ArrayDeque<Entry<T>> queue = new ArrayDeque<>();
+    private boolean isDrainScheduled = false;
+    private boolean isClosed = false;
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * Create the pipeline and its mapping thread.
+     *
+     * @param name          The name of the mapping thread.
+     * @param capacity      The maximum number of entries waiting to be mapped.
+     * @param maxBatchSize  The maximum number of entries mapped in one batch.
+     * @param batchInterval The interval between two batches in milliseconds.
+     * @param isSameTarget  Whether two targets map to the same source code element, so that they can be coalesced.
+     * @param batchMapper   The mapper of a batch of entries, called on the mapping thread.
+     * @param dropHandler   The handler of an entry dropped because the queue is full, called on the producer thread.
+     */
+    public GazeMappingPipeline(String name, int capacity, int maxBatchSize, long batchInterval,
+                               BiPredicate<T, T> isSameTarget, Consumer<List<Entry<T>>> batchMapper,
+                               Consumer<Entry<T>> dropHandler) {
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.batchInterval = batchInterval;
+        this.isSameTarget = isSameTarget;
+        this.batchMapper = batchMapper;
+        this.dropHandler = dropHandler;
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue a gaze element to be mapped to the target. If the target is the same as the one of the last queued entry,
+     * the gaze element is coalesced into that entry.
+     *
+     * @param target The mapping target.
+     * @param gaze   The gaze element.
+     */
+    public void submit(T target, Element gaze) {
+        Entry<T> dropped = null;
+        synchronized (this) {
+            if (isClosed) {
+                dropped = new Entry<>(target, gaze);
+            } else {
+                queuedCount.incrementAndGet();
+                Entry<T> last = queue.peekLast();
+                if (last != null && isSameTarget.test(last.target, target)) {
+                    last.gazes.add(gaze);
+                    coalescedCount.incrementAndGet();
+                } else {
+                    if (queue.size() >= capacity) {
+                        dropped = queue.pollFirst();
+                        droppedCount.addAndGet(dropped.gazes.size());
+                    }
+                    queue.addLast(new Entry<>(target, gaze));
+                }
+                if (!isDrainScheduled) {
+                    isDrainScheduled = true;
+                    executor.schedule(this::drain, batchInterval, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (dropped != null) {
+            dropHandler.accept(dropped);
+        }
+    }
+
+    /**
+     * Map the oldest queued entries, at most the maximum batch size of them, as one batch. If entries remain in the
+     * queue, the next batch is scheduled right away.
+     *
+     * @return Whether entries remain in the queue.
+     */
+    private boolean drain() {
+        synchronized (drainLock) {
+            List<Entry<T>> batch = new ArrayList<>(Math.min(maxBatchSize, capacity));
+            boolean hasRemaining;
+            synchronized (this) {
+                while (batch.size() < maxBatchSize && !queue.isEmpty()) {
+                    batch.add(queue.pollFirst());
+                }
+                hasRemaining = !queue.isEmpty();
+                isDrainScheduled = hasRemaining && !isClosed;
+                if (isDrainScheduled) {
+                    executor.execute(this::drain);
+                }
+            }
+            if (batch.isEmpty()) return false;
+            try {
+                batchMapper.accept(batch);
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to map a batch of " + batch.size() + " gaze samples", e);
+            }
+            return hasRemaining;
+        }
+    }
+
+    /**
+     * Stop the mapping thread and map the remaining entries on the calling thread. Gaze elements submitted afterwards
+     * are handed to the drop handler directly.
+     */
+    public void close() {
+        synchronized (this) {
+            isClosed = true;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        boolean hasRemaining;
+        do {
+            hasRemaining = drain();
+        } while (hasRemaining);
+    }
+
+    /**
+     * Get the number of gaze samples submitted to the pipeline, including the coalesced and dropped ones.
+     *
+     * @return The number of queued samples.
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * Get the number of gaze samples coalesced into the entry of a previous sample.
+     *
+     * @return The number of coalesced samples.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Get the number of gaze samples dropped because the queue was full.
+     *
+     * @return The number of dropped samples.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
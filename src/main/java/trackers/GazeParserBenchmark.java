@@ -0,0 +1,207 @@
+package trackers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * This class benchmarks the decoding of the raw gaze samples offline. At each sample frequency, the same synthetic
+ * recording, i.e., gazes wandering over the screen with blinks and lost samples from time to time, is decoded by
+ * splitting the lines like the former parser, by the single-pass {@link RawGazeSample#parse(String)}, and by
+ * {@link RawGazeSample#decode(ByteBuffer, int)} from binary frames. Every decoder reads the gaze point and the text of
+ * every attribute of the raw gaze element. For each decoder, it reports the time and the allocated bytes per sample,
+ * and the share of one CPU core it takes to keep up with the sample frequency.
+ * <p>
+ * It runs from the command line with {@code java trackers.GazeParserBenchmark [seconds] [rounds]}, which defaults to
+ * ten minutes of samples decoded in 5 rounds, of which the fastest is reported.
+ */
+public final class GazeParserBenchmark {
+    private static final int[] SAMPLE_FREQUENCIES = {120, 250, 600};
+    private static final double BLINK_PROBABILITY = 0.002;
+    private static final int BLINK_SAMPLES = 30;
+
+    private final String[] lines;
+    private final ByteBuffer frames;
+    private double checksum = 0;
+
+    GazeParserBenchmark(int sampleFrequency, int seconds) {
+        int sampleCount = sampleFrequency * seconds;
+        lines = new String[sampleCount];
+        frames = ByteBuffer.allocate(sampleCount * RawGazeSample.FRAME_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(42);
+        long timestamp = 1_700_000_000_000L;
+        double x = 0.5, y = 0.5;
+        int blinkLeft = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            if (blinkLeft == 0 && random.nextDouble() < BLINK_PROBABILITY) {
+                blinkLeft = BLINK_SAMPLES;
+            }
+            boolean isValid = blinkLeft == 0;
+            if (blinkLeft > 0) {
+                blinkLeft--;
+            }
+            if (random.nextInt(sampleFrequency / 4) == 0) {
+                // a saccade
+                x = random.nextDouble();
+                y = random.nextDouble();
+            } else {
+                x = Math.min(1, Math.max(0, x + random.nextGaussian() * 0.002));
+                y = Math.min(1, Math.max(0, y + random.nextGaussian() * 0.002));
+            }
+            double[] values = {
+                    timestamp + i * 1000L / sampleFrequency,
+                    isValid ? x : Double.NaN, isValid ? y : Double.NaN, isValid ? 1 : 0,
+                    isValid ? 3 + random.nextDouble() : Double.NaN, isValid ? 1 : 0,
+                    isValid ? x + 0.01 : Double.NaN, isValid ? y - 0.01 : Double.NaN, isValid ? 1 : 0,
+                    isValid ? 3 + random.nextDouble() : Double.NaN, isValid ? 1 : 0,
+                    isValid ? 0.4 + random.nextDouble() * 0.1 : Double.NaN,
+                    isValid ? 0.4 + random.nextDouble() * 0.1 : Double.NaN,
+            };
+            lines[i] = format(values);
+            frames.putLong((long) values[RawGazeSample.TIMESTAMP]);
+            for (int field = RawGazeSample.LEFT_GAZE_POINT_X; field < RawGazeSample.FIELD_COUNT; field++) {
+                if (RawGazeSample.isValidityField(field)) {
+                    frames.putInt((int) values[field]);
+                } else {
+                    frames.putDouble(values[field]);
+                }
+            }
+        }
+        frames.flip();
+    }
+
+    /**
+     * Decode the synthetic samples at each sample frequency and print the results.
+     *
+     * @param args The length of the recording in seconds and the number of rounds, both optional.
+     */
+    public static void main(String[] args) {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        System.out.printf("%d s of samples, best of %d rounds%n", seconds, rounds);
+        System.out.printf("%-6s %-12s %10s %14s %12s%n", "Hz", "decoder", "ns/sample", "bytes/sample", "cpu_%");
+        for (int sampleFrequency : SAMPLE_FREQUENCIES) {
+            GazeParserBenchmark benchmark = new GazeParserBenchmark(sampleFrequency, seconds);
+            benchmark.run(sampleFrequency, "split", rounds, benchmark::split);
+            benchmark.run(sampleFrequency, "single-pass", rounds, benchmark::parse);
+            benchmark.run(sampleFrequency, "binary", rounds, benchmark::decode);
+        }
+    }
+
+    private void run(int sampleFrequency, String decoder, int rounds, Runnable decodeAll) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean sunThreads = threads instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threads : null;
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = Long.MAX_VALUE;
+        // the first round warms up the JIT compiler
+        for (int round = 0; round <= rounds; round++) {
+            long bytesStart = sunThreads != null ? sunThreads.getCurrentThreadAllocatedBytes() : 0;
+            long start = System.nanoTime();
+            decodeAll.run();
+            long nanos = System.nanoTime() - start;
+            long bytes = sunThreads != null ? sunThreads.getCurrentThreadAllocatedBytes() - bytesStart : 0;
+            if (round > 0) {
+                bestNanos = Math.min(bestNanos, nanos);
+                bestBytes = Math.min(bestBytes, bytes);
+            }
+        }
+        double nanosPerSample = bestNanos / (double) lines.length;
+        System.out.printf("%-6d %-12s %10.1f %14s %12.4f%n", sampleFrequency, decoder, nanosPerSample,
+                sunThreads != null ? String.format(Locale.ROOT, "%.1f", bestBytes / (double) lines.length) : "n/a",
+                nanosPerSample * sampleFrequency / 1e9 * 100);
+        if (Double.isInfinite(checksum)) {
+            // keeps the decoded values from being optimized away
+            System.out.println(checksum);
+        }
+    }
+
+    /**
+     * Decode the lines like the former parser, which split the line again for every field it read: once for the gaze
+     * point, and once for the attributes of the raw gaze element.
+     */
+    private void split() {
+        for (String line : lines) {
+            // the gaze point
+            String leftGazePointX = line.split("; ")[1].split(", ")[0];
+            String leftGazePointY = line.split("; ")[1].split(", ")[1];
+            String rightGazePointX = line.split("; ")[2].split(", ")[0];
+            String rightGazePointY = line.split("; ")[2].split(", ")[1];
+            if (!leftGazePointX.equals("nan") && !leftGazePointY.equals("nan") && !rightGazePointX.equals("nan")
+                    && !rightGazePointY.equals("nan")) {
+                checksum += Double.parseDouble(leftGazePointX)
+                        + (Double.parseDouble(leftGazePointY) + Double.parseDouble(rightGazePointY)) / 2;
+            }
+            // the attributes of the raw gaze element
+            String timestamp = line.split("; ")[0];
+            String leftInfo = line.split("; ")[1];
+            String rightInfo = line.split("; ")[2];
+            int length = timestamp.length();
+            for (int i = 0; i < 5; i++) {
+                length += leftInfo.split(", ")[i].length();
+            }
+            for (int i = 0; i < 7; i++) {
+                length += rightInfo.split(", ")[i].length();
+            }
+            checksum += length;
+        }
+    }
+
+    private void parse() {
+        RawGazeSample sample = new RawGazeSample();
+        for (String line : lines) {
+            sample.parse(line);
+            consume(sample);
+        }
+    }
+
+    private void decode() {
+        RawGazeSample sample = new RawGazeSample();
+        ByteBuffer buffer = frames.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.remaining() >= RawGazeSample.FRAME_SIZE) {
+            sample.decode(buffer, RawGazeSample.FRAME_VERSION);
+            consume(sample);
+        }
+    }
+
+    /**
+     * Read a decoded sample like {@link EyeTracker}: the values of the gaze point, and the text of every field written
+     * to the raw gaze element, so that all the decoders do the same work as {@link #split()}.
+     */
+    private void consume(RawGazeSample sample) {
+        double leftGazePointX = sample.getValue(RawGazeSample.LEFT_GAZE_POINT_X);
+        double leftGazePointY = sample.getValue(RawGazeSample.LEFT_GAZE_POINT_Y);
+        double rightGazePointY = sample.getValue(RawGazeSample.RIGHT_GAZE_POINT_Y);
+        if (!Double.isNaN(leftGazePointX) && !Double.isNaN(leftGazePointY) && !Double.isNaN(rightGazePointY)
+                && !Double.isNaN(sample.getValue(RawGazeSample.RIGHT_GAZE_POINT_X))) {
+            checksum += leftGazePointX + (leftGazePointY + rightGazePointY) / 2;
+        }
+        int length = 0;
+        for (int field = RawGazeSample.TIMESTAMP; field < RawGazeSample.FIELD_COUNT; field++) {
+            if (sample.hasField(field)) {
+                length += sample.getText(field).length();
+            }
+        }
+        checksum += length;
+    }
+
+    /**
+     * Format the values like the text output of the Python process, e.g., {@code 0.5338541666666666} and {@code nan}.
+     */
+    private static String format(double[] values) {
+        StringBuilder line = new StringBuilder().append((long) values[RawGazeSample.TIMESTAMP]);
+        for (int field = RawGazeSample.LEFT_GAZE_POINT_X; field < RawGazeSample.FIELD_COUNT; field++) {
+            line.append(field == RawGazeSample.LEFT_GAZE_POINT_X || field == RawGazeSample.RIGHT_GAZE_POINT_X
+                    ? "; " : ", ");
+            if (RawGazeSample.isValidityField(field)) {
+                line.append((int) values[field]);
+            } else {
+                line.append(RawGazeSample.formatDouble(values[field]));
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,463 @@
+package trackers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.RangeMarker;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class aggregates the gazes or fixations mapped to the source code into attention heatmaps, i.e., the dwell time
+ * and the number of visits of each file, line and PSI element looked at. It is updated incrementally as the gazes are
+ * mapped, so that the heatmaps do not have to be rebuilt from {@code eye_tracking.xml} after the session.
+ * <p>
+ * The lines and elements are tracked with {@link RangeMarker}s, so their statistics follow the code when the document is
+ * edited. The markers are only read again after the document has changed; lines that end up on the same line are
+ * merged, and elements whose code is deleted are removed from the heatmap (but still count for their file). The
+ * {@link #TOP_CAPACITY} lines and elements with the longest dwell time of each file are kept sorted, so the top queries
+ * do not depend on the number of lines and elements looked at.
+ * <p>
+ * A visit starts when the gaze moves to another file, line or element, or returns after more than {@link #VISIT_GAP}
+ * milliseconds. The heatmaps are written to a JSON file periodically and when the aggregator is closed. All the methods
+ * that read the documents must be called in a read action.
+ */
+public final class HeatmapAggregator {
+    private static final Logger LOG = Logger.getInstance(HeatmapAggregator.class);
+
+    /**
+     * The maximum number of lines and elements a top query of a file returns.
+     */
+    public static final int TOP_CAPACITY = 32;
+    /**
+     * The default interval of the snapshots in milliseconds.
+     */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 30_000;
+    /**
+     * The time in milliseconds after the end of the last gaze or fixation after which a gaze on the same line or
+     * element is a new visit.
+     */
+    public static final long VISIT_GAP = 250;
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    /**
+     * This record is a line or element of a heatmap.
+     *
+     * @param line        The current line of the start of the line or element.
+     * @param startOffset The current start offset in the document.
+     * @param endOffset   The current end offset in the document.
+     * @param token       The text of the element, or {@code null} for a line.
+     * @param type        The type of the element, or {@code null} for a line.
+     * @param dwell       The dwell time in milliseconds.
+     * @param visits      The number of visits.
+     */
+    public record Entry(int line, int startOffset, int endOffset, String token, String type, double dwell, int visits) {
+    }
+
+    /**
+     * This class is the lines or the elements of a file. The statistics are in parallel arrays indexed by the id of the
+     * line or element, and a removed id has no marker.
+     */
+    private static final class Regions {
+        private final boolean isLines;
+        private final Long2IntOpenHashMap index = new Long2IntOpenHashMap();
+        private RangeMarker[] markers = new RangeMarker[64];
+        private long[] dwells = new long[64];
+        private int[] visits = new int[64];
+        private String[] tokens;
+        private String[] types;
+        private int size = 0;
+        private final int[] top = new int[TOP_CAPACITY];
+        private int topSize = 0;
+        private int lastId = -1;
+
+        private Regions(boolean isLines) {
+            this.isLines = isLines;
+            index.defaultReturnValue(-1);
+            if (!isLines) {
+                tokens = new String[64];
+                types = new String[64];
+            }
+        }
+
+        private int add(RangeMarker marker, String token, String type) {
+            if (size == markers.length) {
+                markers = Arrays.copyOf(markers, size * 2);
+                dwells = Arrays.copyOf(dwells, size * 2);
+                visits = Arrays.copyOf(visits, size * 2);
+                if (!isLines) {
+                    tokens = Arrays.copyOf(tokens, size * 2);
+                    types = Arrays.copyOf(types, size * 2);
+                }
+            }
+            markers[size] = marker;
+            if (!isLines) {
+                tokens[size] = token;
+                types[size] = type;
+            }
+            return size++;
+        }
+
+        private long keyOf(Document document, int id) {
+            RangeMarker marker = markers[id];
+            return isLines ? document.getLineNumber(marker.getStartOffset())
+                    : (long) marker.getStartOffset() << 32 | marker.getEndOffset();
+        }
+
+        /**
+         * Move the id up in the top list after its dwell time increased, or insert it if it is now long enough.
+         */
+        private void updateTop(int id) {
+            int position = -1;
+            for (int i = 0; i < topSize; i++) {
+                if (top[i] == id) {
+                    position = i;
+                    break;
+                }
+            }
+            if (position < 0) {
+                if (topSize < TOP_CAPACITY) {
+                    position = topSize++;
+                } else if (dwells[id] > dwells[top[TOP_CAPACITY - 1]]) {
+                    position = TOP_CAPACITY - 1;
+                } else {
+                    return;
+                }
+                top[position] = id;
+            }
+            while (position > 0 && dwells[top[position - 1]] < dwells[id]) {
+                top[position] = top[position - 1];
+                top[--position] = id;
+            }
+        }
+
+        /**
+         * Read the markers again after the document changed, merging the lines or elements that now have the same key
+         * and removing the elements whose code is deleted.
+         */
+        private void reindex(Document document) {
+            index.clear();
+            for (int id = 0; id < size; id++) {
+                RangeMarker marker = markers[id];
+                if (marker == null) continue;
+                if (!marker.isValid()) {
+                    markers[id] = null;
+                    if (lastId == id) lastId = -1;
+                    continue;
+                }
+                long key = keyOf(document, id);
+                int existing = index.putIfAbsent(key, id);
+                if (existing >= 0) {
+                    dwells[existing] += dwells[id];
+                    visits[existing] += visits[id];
+                    marker.dispose();
+                    markers[id] = null;
+                    if (lastId == id) lastId = existing;
+                }
+            }
+            topSize = 0;
+            for (int id = 0; id < size; id++) {
+                if (markers[id] != null) {
+                    updateTop(id);
+                }
+            }
+        }
+
+        private void dispose() {
+            for (int id = 0; id < size; id++) {
+                if (markers[id] != null) {
+                    markers[id].dispose();
+                }
+            }
+        }
+    }
+
+    /**
+     * This class is the heatmap of a file.
+     */
+    private static final class FileHeatmap {
+        private final Document document;
+        private long modificationStamp;
+        private long dwell = 0;
+        private int visits = 0;
+        private final Regions lines = new Regions(true);
+        private final Regions elements = new Regions(false);
+
+        private FileHeatmap(Document document) {
+            this.document = document;
+            modificationStamp = document.getModificationStamp();
+        }
+
+        private void reindexIfModified() {
+            long stamp = document.getModificationStamp();
+            if (stamp == modificationStamp) return;
+            modificationStamp = stamp;
+            lines.reindex(document);
+            elements.reindex(document);
+        }
+    }
+
+    private final Map<String, FileHeatmap> files = new LinkedHashMap<>();
+    private final Path snapshotFile;
+    private final Consumer<Runnable> readActionRunner;
+    private final ScheduledThreadPoolExecutor executor;
+    private String lastPath;
+    private long lastEnd = Long.MIN_VALUE;
+
+    /**
+     * Create the aggregator, which writes a snapshot every {@link #DEFAULT_SNAPSHOT_INTERVAL} milliseconds.
+     *
+     * @param snapshotFile     The JSON file of the snapshots.
+     * @param readActionRunner The runner of the read actions the snapshots are taken in.
+     */
+    public HeatmapAggregator(Path snapshotFile, Consumer<Runnable> readActionRunner) {
+        this(snapshotFile, DEFAULT_SNAPSHOT_INTERVAL, readActionRunner);
+    }
+
+    /**
+     * Create the aggregator.
+     *
+     * @param snapshotFile     The JSON file of the snapshots.
+     * @param snapshotInterval The interval of the snapshots in milliseconds.
+     * @param readActionRunner The runner of the read actions the snapshots are taken in.
+     */
+    public HeatmapAggregator(Path snapshotFile, long snapshotInterval, Consumer<Runnable> readActionRunner) {
+        this.snapshotFile = snapshotFile;
+        this.readActionRunner = readActionRunner;
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "CodeGRITS Heatmap Snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                writeSnapshot();
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Failed to write the heatmap snapshot", e);
+            }
+        }, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add the dwell time of a gaze or fixation mapped to the source code. It must be called in a read action.
+     *
+     * @param path         The relative path of the file.
+     * @param document     The document of the file.
+     * @param offset       The offset the gaze is mapped to.
+     * @param elementStart The start offset of the PSI element at the offset, or -1 if there is none.
+     * @param elementEnd   The end offset of the PSI element.
+     * @param token        The text of the PSI element.
+     * @param type         The type of the PSI element.
+     * @param timestamp    The timestamp of the gaze, or the start of the fixation.
+     * @param dwell        The dwell time in microseconds, e.g., the sample interval or the duration of the fixation.
+     */
+    public synchronized void add(String path, Document document, int offset, int elementStart, int elementEnd,
+                                 String token, String type, long timestamp, long dwell) {
+        FileHeatmap file = files.get(path);
+        if (file == null || file.document != document) {
+            if (file != null) {
+                file.lines.dispose();
+                file.elements.dispose();
+            }
+            file = new FileHeatmap(document);
+            files.put(path, file);
+        } else {
+            file.reindexIfModified();
+        }
+        boolean isNewVisit = !path.equals(lastPath) || timestamp - lastEnd > VISIT_GAP;
+        lastPath = path;
+        lastEnd = timestamp + dwell / 1000;
+        file.dwell += dwell;
+        if (isNewVisit) {
+            file.visits++;
+        }
+
+        int line = document.getLineNumber(offset);
+        int lineId = file.lines.index.get(line);
+        if (lineId < 0) {
+            lineId = file.lines.add(document.createRangeMarker(document.getLineStartOffset(line),
+                    document.getLineEndOffset(line)), null, null);
+            file.lines.index.put(line, lineId);
+        }
+        record(file.lines, lineId, dwell, isNewVisit);
+
+        if (elementStart < 0 || elementEnd <= elementStart) return;
+        long key = (long) elementStart << 32 | elementEnd;
+        int elementId = file.elements.index.get(key);
+        if (elementId < 0) {
+            elementId = file.elements.add(document.createRangeMarker(elementStart, elementEnd), token, type);
+            file.elements.index.put(key, elementId);
+        }
+        record(file.elements, elementId, dwell, isNewVisit);
+    }
+
+    private static void record(Regions regions, int id, long dwell, boolean isNewVisit) {
+        regions.dwells[id] += dwell;
+        if (isNewVisit || regions.lastId != id) {
+            regions.visits[id]++;
+        }
+        regions.lastId = id;
+        regions.updateTop(id);
+    }
+
+    /**
+     * Get the lines of the file with the longest dwell time. It must be called in a read action.
+     *
+     * @param path  The relative path of the file.
+     * @param count The maximum number of lines, up to {@link #TOP_CAPACITY}.
+     * @return The lines in descending order of dwell time.
+     */
+    public synchronized List<Entry> getTopLines(String path, int count) {
+        FileHeatmap file = files.get(path);
+        return file == null ? Collections.emptyList() : getTop(file, file.lines, count);
+    }
+
+    /**
+     * Get the PSI elements of the file with the longest dwell time. It must be called in a read action.
+     *
+     * @param path  The relative path of the file.
+     * @param count The maximum number of elements, up to {@link #TOP_CAPACITY}.
+     * @return The elements in descending order of dwell time.
+     */
+    public synchronized List<Entry> getTopElements(String path, int count) {
+        FileHeatmap file = files.get(path);
+        return file == null ? Collections.emptyList() : getTop(file, file.elements, count);
+    }
+
+    private static List<Entry> getTop(FileHeatmap file, Regions regions, int count) {
+        file.reindexIfModified();
+        int size = Math.min(count, regions.topSize);
+        List<Entry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(getEntry(file.document, regions, regions.top[i]));
+        }
+        return entries;
+    }
+
+    private static Entry getEntry(Document document, Regions regions, int id) {
+        RangeMarker marker = regions.markers[id];
+        return new Entry(document.getLineNumber(marker.getStartOffset()), marker.getStartOffset(),
+                marker.getEndOffset(), regions.isLines ? null : regions.tokens[id],
+                regions.isLines ? null : regions.types[id], regions.dwells[id] / 1000.0, regions.visits[id]);
+    }
+
+    /**
+     * Get the total dwell time on the file.
+     *
+     * @param path The relative path of the file.
+     * @return The dwell time in milliseconds.
+     */
+    public synchronized double getFileDwell(String path) {
+        FileHeatmap file = files.get(path);
+        return file == null ? 0 : file.dwell / 1000.0;
+    }
+
+    /**
+     * Get the number of visits to the file.
+     *
+     * @param path The relative path of the file.
+     * @return The number of visits.
+     */
+    public synchronized int getFileVisits(String path) {
+        FileHeatmap file = files.get(path);
+        return file == null ? 0 : file.visits;
+    }
+
+    /**
+     * Take a snapshot of all the heatmaps in a read action and write it to the snapshot file. The file is replaced
+     * atomically, so it is always complete.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void writeSnapshot() throws IOException {
+        JsonObject[] snapshot = new JsonObject[1];
+        readActionRunner.accept(() -> snapshot[0] = takeSnapshot());
+        Path temporaryFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+            gson.toJson(snapshot[0], writer);
+        }
+        Files.move(temporaryFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private synchronized JsonObject takeSnapshot() {
+        JsonArray fileArray = new JsonArray();
+        files.forEach((path, file) -> {
+            file.reindexIfModified();
+            JsonObject fileObject = new JsonObject();
+            fileObject.addProperty("path", path);
+            fileObject.addProperty("dwell", file.dwell / 1000.0);
+            fileObject.addProperty("visits", file.visits);
+            fileObject.add("lines", toJson(file.document, file.lines));
+            fileObject.add("elements", toJson(file.document, file.elements));
+            fileArray.add(fileObject);
+        });
+        JsonObject snapshot = new JsonObject();
+        snapshot.addProperty("timestamp", System.currentTimeMillis());
+        snapshot.add("files", fileArray);
+        return snapshot;
+    }
+
+    private static JsonArray toJson(Document document, Regions regions) {
+        JsonArray array = new JsonArray();
+        for (int id = 0; id < regions.size; id++) {
+            if (regions.markers[id] == null) continue;
+            Entry entry = getEntry(document, regions, id);
+            JsonObject object = new JsonObject();
+            if (regions.isLines) {
+                object.addProperty("line", entry.line());
+            } else {
+                object.addProperty("start", getPosition(document, entry.startOffset()));
+                object.addProperty("end", getPosition(document, entry.endOffset()));
+                object.addProperty("token", entry.token());
+                object.addProperty("type", entry.type());
+            }
+            object.addProperty("dwell", entry.dwell());
+            object.addProperty("visits", entry.visits());
+            array.add(object);
+        }
+        return array;
+    }
+
+    private static String getPosition(Document document, int offset) {
+        int line = document.getLineNumber(offset);
+        return line + ":" + (offset - document.getLineStartOffset(line));
+    }
+
+    /**
+     * Stop the snapshots, write the last one, and release the markers.
+     *
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void close() throws IOException {
+        executor.shutdownNow();
+        try {
+            writeSnapshot();
+        } finally {
+            synchronized (this) {
+                for (FileHeatmap file : files.values()) {
+                    file.lines.dispose();
+                    file.elements.dispose();
+                }
+            }
+        }
+    }
+}
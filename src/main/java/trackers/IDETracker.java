@@ -2,7 +2,6 @@ package trackers;
 
 import javax.swing.*;
 import javax.xml.parsers.*;
-import javax.xml.transform.TransformerException;
 
 import com.intellij.ide.actions.BigPopupUI;
 import com.intellij.ide.actions.searcheverywhere.SearchEverywhereManager;
@@ -27,6 +26,7 @@ import java.awt.event.*;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.List;
 
 import com.intellij.openapi.wm.WindowManager;
 import com.intellij.openapi.wm.ex.ToolWindowManagerEx;
@@ -36,16 +36,31 @@ import org.w3c.dom.Element;
 
 import java.awt.*;
 import java.io.*;
-import java.util.Timer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.actionSystem.ex.AnActionListener;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import api.EventBus;
+import api.EventFamily;
+import api.IdeEvent;
+import api.OverflowPolicy;
+import entity.MouseCoalescingEnum;
+import entity.OutputFormatEnum;
 import org.jetbrains.annotations.NotNull;
+import utils.ArchiveStore;
+import utils.ColumnarWriter;
+import utils.Debouncer;
+import utils.EventJournal;
 import utils.RelativePathGetter;
-import utils.XMLWriter;
+import utils.SpillingXMLWriter;
 
 import javax.xml.parsers.DocumentBuilderFactory;
 
@@ -60,23 +75,53 @@ import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
 public final class IDETracker implements Disposable {
     boolean isTracking = false;
     /**
-     * This variable is the XML document for storing the tracking data.
+     * This variable is the XML document for creating the tracking elements. The elements are not appended to it, but
+     * written to the {@code iDETrackingWriter} as soon as they are complete.
      */
     Document iDETracking = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-    Element root = iDETracking.createElement("ide_tracking");
     Element environment = iDETracking.createElement("environment");
-    Element actions = iDETracking.createElement("actions");
-    Element archives = iDETracking.createElement("archives");
-    Element typings = iDETracking.createElement("typings");
-    Element files = iDETracking.createElement("files");
-    Element mouses = iDETracking.createElement("mouses");
-    Element carets = iDETracking.createElement("carets");
-    Element selections = iDETracking.createElement("selections");
-    Element visibleAreas = iDETracking.createElement("visible_areas");
-    // Added to track bounds of tool windows opening, resizing, and closing.
-    Element toolWindows = iDETracking.createElement("tool_windows");
-    // Added to track bounds of popups opening, resizing, and closing.
-    Element popups = iDETracking.createElement("popups");
+    /**
+     * This variable is the list of the sections of the {@code ide_tracking.xml} file, in the order they are written.
+     * The {@code tool_windows} and {@code popups} sections track the bounds of tool windows and popups opening,
+     * resizing, and closing.
+     */
+    static final List<String> SECTIONS = List.of("archives", "actions", "typings", "files", "mouses", "carets",
+            "selections", "visible_areas", "tool_windows", "popups");
+    /**
+     * This variable is the writer spilling the elements of each section to the disk while tracking.
+     */
+    SpillingXMLWriter iDETrackingWriter;
+    /**
+     * This variable is the format of the tracking data files.
+     */
+    OutputFormatEnum outputFormat = OutputFormatEnum.XML;
+    /**
+     * This variable is the writer of the {@code ide_tracking} directory in the columnar format, used instead of the
+     * {@code iDETrackingWriter}.
+     */
+    ColumnarWriter columnarWriter;
+    /**
+     * This variable is the journal the elements are also appended to, so that they can be recovered after a crash.
+     */
+    EventJournal eventJournal;
+    private int journalFileId = -1;
+    /**
+     * This variable is the policy of coalescing the mouse motion events into {@code <mouse_path>} elements.
+     */
+    MouseCoalescingEnum mouseCoalescing = MouseCoalescingEnum.NONE;
+    /**
+     * This variable is the coalescer of the mouse motion events, or {@code null} if every event is recorded.
+     */
+    private MouseMotionCoalescer mouseMotionCoalescer;
+    /**
+     * This variable indicates whether the keystrokes are folded into {@code <typing_burst>} elements instead of one
+     * {@code <typing>} element per character.
+     */
+    boolean isTypingBurst = false;
+    /**
+     * This variable is the aggregator of the typing bursts, or {@code null} if every keystroke is recorded.
+     */
+    private TypingBurstAggregator typingBurstAggregator;
     String projectPath = "";
     String dataOutputPath = "";
     String lastSelectionInfo = "";
@@ -89,29 +134,60 @@ public final class IDETracker implements Disposable {
      */
     private static boolean isRealTimeDataTransmitting = false;
     /**
-     * This variable is the handler for the IDE tracker data.
+     * This variable is the subscription of the handler set by {@link #setIdeTrackerDataHandler(Consumer)}.
      */
-    private Consumer<Element> ideTrackerDataHandler;
-    // Class for the Map below.
-    public class AOIBounds {
-        public int x;
-        public int y;
-        public int width;
-        public int height;
-        public String id;
-        public AOIBounds(int x, int y, int width, int height, String id) {
-            this.x = x;
-            this.y = y;
-            this.width = width;
-            this.height = height;
-        }
-    }
-    // Variable for keeping track of visible AOIs and their bounds throughout recording.
-    // The ToolWindowListener edits this, and the getAOIMap function allows the EyeTracker class to access it.
-    private Map<String, AOIBounds> AOIMap;
+    private EventBus.Subscription ideTrackerDataSubscription;
+    /**
+     * This variable is the XML document for creating the elements passed to the handler set by
+     * {@link #setIdeTrackerDataHandler(Consumer)}. It is only used by the thread of the subscription.
+     */
+    private final Document handlerDocument = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+    /**
+     * This variable is the families of the events the IDE tracker publishes.
+     */
+    private static final Set<EventFamily> IDE_EVENT_FAMILIES = EnumSet.of(EventFamily.ACTION, EventFamily.TYPING,
+            EventFamily.FILE, EventFamily.MOUSE, EventFamily.CARET, EventFamily.SELECTION, EventFamily.VISIBLE_AREA);
+    /**
+     * This variable keeps track of the visible AOIs and their bounds throughout recording. The tool window and popup
+     * listeners update it on the EDT, and the EyeTracker reads its snapshots to find the AOI of a gaze point.
+     */
+    private final AOIRegistry aoiRegistry = new AOIRegistry();
 
     /**
-     * This variable is the document listener for the IDE tracker. When the document is changed, if the {@code EditorKind} is {@code CONSOLE}, the console output is archived. Otherwise, the {@code changedFilepath} and {@code changedFileText} are updated.
+     * This variable is the default quiet period of a changed file before it is archived, in milliseconds.
+     */
+    public static final long DEFAULT_ARCHIVE_QUIET_PERIOD = 500;
+    /**
+     * This variable is the default max latency from the first change of a file to its archive, in milliseconds.
+     */
+    public static final long DEFAULT_ARCHIVE_MAX_LATENCY = 5000;
+    long archiveQuietPeriod = DEFAULT_ARCHIVE_QUIET_PERIOD;
+    long archiveMaxLatency = DEFAULT_ARCHIVE_MAX_LATENCY;
+    /**
+     * This variable is the debouncer archiving the changed files. It is keyed by the file, so that a burst of changes
+     * to a file is archived once.
+     */
+    Debouncer<VirtualFile> archiveDebouncer;
+    /**
+     * This variable is the store of the archived files in the {@code archives} directory.
+     */
+    ArchiveStore archiveStore;
+    /**
+     * This variable is the maximum number of archives waiting to be written. When the queue is full, the archive is
+     * written on the calling thread.
+     */
+    static final int ARCHIVE_QUEUE_CAPACITY = 256;
+    /**
+     * This variable is the maximum time in milliseconds to wait for the queued archives when the tracking stops.
+     */
+    static final long ARCHIVE_TIMEOUT = 60_000;
+    /**
+     * This variable is the executor writing the archives in order, so that no file I/O happens on the UI thread.
+     */
+    ThreadPoolExecutor archiveExecutor;
+
+    /**
+     * This variable is the document listener for the IDE tracker. When the document is changed, if the {@code EditorKind} is {@code CONSOLE}, the console output is archived. Otherwise, the file is archived by the {@code archiveDebouncer} once the changes settle.
      */
     DocumentListener documentListener = new DocumentListener() {
         @Override
@@ -122,13 +198,19 @@ public final class IDETracker implements Disposable {
             Editor currentEditor = EditorFactory.getInstance().getEditors(event.getDocument())[0];
             if (currentEditor != null && currentEditor.getEditorKind() == EditorKind.CONSOLE) {
                 archiveFile("unknown", String.valueOf(System.currentTimeMillis()),
-                        "", event.getDocument().getText());
+                        "", event.getDocument().getImmutableCharSequence());
                 return;
             }
             VirtualFile changedFile = FileDocumentManager.getInstance().getFile(event.getDocument());
             if (changedFile != null) {
-                changedFilepath = changedFile.getPath();
-                changedFileText = event.getDocument().getText();
+                String changedFilepath = changedFile.getPath();
+                // The immutable snapshot is cheap to take and safe to read on the debouncer thread.
+                CharSequence changedFileText = event.getDocument().getImmutableCharSequence();
+                archiveDebouncer.call(changedFile, () -> {
+                    if (!isTracking) return;
+                    archiveFile(changedFilepath, String.valueOf(System.currentTimeMillis()),
+                            "contentChanged", changedFileText);
+                });
             }
         }
     };
@@ -141,15 +223,17 @@ public final class IDETracker implements Disposable {
         @Override
         public void mousePressed(@NotNull EditorMouseEvent e) {
             if (!isTracking) return;
+            flushMouseMotion();
             Element mouseElement = getMouseElement(e, "mousePressed");
-            mouses.appendChild(mouseElement);
+            recordElement("mouses", mouseElement);
         }
 
         @Override
         public void mouseClicked(@NotNull EditorMouseEvent e) {
             if (!isTracking) return;
+            flushMouseMotion();
             Element mouseElement = getMouseElement(e, "mouseClicked");
-            mouses.appendChild(mouseElement);
+            recordElement("mouses", mouseElement);
             handleElement(mouseElement);
 
         }
@@ -157,8 +241,9 @@ public final class IDETracker implements Disposable {
         @Override
         public void mouseReleased(@NotNull EditorMouseEvent e) {
             if (!isTracking) return;
+            flushMouseMotion();
             Element mouseElement = getMouseElement(e, "mouseReleased");
-            mouses.appendChild(mouseElement);
+            recordElement("mouses", mouseElement);
             handleElement(mouseElement);
 
         }
@@ -166,22 +251,30 @@ public final class IDETracker implements Disposable {
 
     /**
      * This variable is the mouse motion listener for the IDE tracker.
-     * When the mouse is moved or dragged, the mouse event is tracked.
+     * When the mouse is moved or dragged, the mouse event is tracked, or coalesced into a mouse path.
      */
     EditorMouseMotionListener editorMouseMotionListener = new EditorMouseMotionListener() {
         @Override
         public void mouseMoved(@NotNull EditorMouseEvent e) {
             if (!isTracking) return;
+            if (mouseMotionCoalescer != null) {
+                coalesceMouseMotion(e, "mouseMoved");
+                return;
+            }
             Element mouseElement = getMouseElement(e, "mouseMoved");
-            mouses.appendChild(mouseElement);
+            recordElement("mouses", mouseElement);
             handleElement(mouseElement);
         }
 
         @Override
         public void mouseDragged(@NotNull EditorMouseEvent e) {
             if (!isTracking) return;
+            if (mouseMotionCoalescer != null) {
+                coalesceMouseMotion(e, "mouseDragged");
+                return;
+            }
             Element mouseElement = getMouseElement(e, "mouseDragged");
-            mouses.appendChild(mouseElement);
+            recordElement("mouses", mouseElement);
             handleElement(mouseElement);
         }
     };
@@ -195,7 +288,6 @@ public final class IDETracker implements Disposable {
         public void caretPositionChanged(@NotNull CaretEvent e) {
             if (!isTracking) return;
             Element caretElement = iDETracking.createElement("caret");
-            carets.appendChild(caretElement);
             caretElement.setAttribute("id", "caretPositionChanged");
             caretElement.setAttribute("timestamp", String.valueOf(System.currentTimeMillis()));
             VirtualFile virtualFile = FileDocumentManager.getInstance().getFile(e.getEditor().getDocument());
@@ -203,6 +295,7 @@ public final class IDETracker implements Disposable {
                     RelativePathGetter.getRelativePath(virtualFile.getPath(), projectPath) : null);
             caretElement.setAttribute("line", String.valueOf(e.getNewPosition().line));
             caretElement.setAttribute("column", String.valueOf(e.getNewPosition().column));
+            recordElement("carets", caretElement);
             handleElement(caretElement);
         }
     };
@@ -235,7 +328,7 @@ public final class IDETracker implements Disposable {
                     selectionElement.getAttribute("end_position") + "-" +
                     selectionElement.getAttribute("selected_text");
             if (currentSelectionInfo.equals(lastSelectionInfo)) return;
-            selections.appendChild(selectionElement);
+            recordElement("selections", selectionElement);
             lastSelectionInfo = currentSelectionInfo;
             handleElement(selectionElement);
         }
@@ -250,7 +343,6 @@ public final class IDETracker implements Disposable {
         if (e.getEditor().getEditorKind() == EditorKind.MAIN_EDITOR) {
             VirtualFile virtualFile = FileDocumentManager.getInstance().getFile(e.getEditor().getDocument());
             Element visibleAreaElement = iDETracking.createElement("visible_area");
-            visibleAreas.appendChild(visibleAreaElement);
             visibleAreaElement.setAttribute("id", "visibleAreaChanged");
             visibleAreaElement.setAttribute("timestamp", String.valueOf(System.currentTimeMillis()));
             visibleAreaElement.setAttribute("path", virtualFile != null ?
@@ -259,6 +351,7 @@ public final class IDETracker implements Disposable {
             visibleAreaElement.setAttribute("y", String.valueOf(e.getEditor().getScrollingModel().getVerticalScrollOffset()));
             visibleAreaElement.setAttribute("width", String.valueOf(e.getEditor().getScrollingModel().getVisibleArea().width));
             visibleAreaElement.setAttribute("height", String.valueOf(e.getEditor().getScrollingModel().getVisibleArea().height));
+            recordElement("visible_areas", visibleAreaElement);
             handleElement(visibleAreaElement);
         }
 
@@ -275,8 +368,8 @@ public final class IDETracker implements Disposable {
         toolWindowElement.setAttribute("height", String.valueOf(bounds.height));
 
         // add to map
-        AOIBounds loc = new AOIBounds(location.x, location.y, bounds.width, bounds.height, toolWindow.getId());
-        AOIMap.put(toolWindow.getId(), loc);
+        aoiRegistry.put(toolWindow.getId(), location.x, location.y, bounds.width, bounds.height,
+                AOIIndex.Layer.TOOL_WINDOW);
     }
 
     // Listener for when the state of tool windows changes to record AOI bounds dynamically.
@@ -301,19 +394,19 @@ public final class IDETracker implements Disposable {
                     if (changeType == ToolWindowManagerEventType.HideToolWindow) {
                         toolWindowElement.setAttribute("event", "WindowHidden");
                         // Remove AOI from map (no longer visible).
-                        AOIMap.remove(toolWindow.getId());
-                        toolWindows.appendChild(toolWindowElement);
+                        aoiRegistry.remove(toolWindow.getId());
+                        recordElement("tool_windows", toolWindowElement);
                     }
                     else if (changeType == ToolWindowManagerEventType.MovedOrResized) {
                         toolWindowElement.setAttribute("event", "WindowChanged");
                         registerBoundsToElement(toolWindow, toolWindowElement);
-                        toolWindows.appendChild(toolWindowElement);
+                        recordElement("tool_windows", toolWindowElement);
                     }
                     else if (changeType == ToolWindowManagerEventType.ActivateToolWindow) {
                         // Tool window was just shown.
                         toolWindowElement.setAttribute("event", "WindowShown");
                         registerBoundsToElement(toolWindow, toolWindowElement);
-                        toolWindows.appendChild(toolWindowElement);
+                        recordElement("tool_windows", toolWindowElement);
                     }
                 }
                 previousVisibilityState.put(windowId, isCurrentlyVisible);
@@ -332,13 +425,12 @@ public final class IDETracker implements Disposable {
         popupElement.setAttribute("y", String.valueOf(loc.y));
         popupElement.setAttribute("width", String.valueOf(size.width));
         popupElement.setAttribute("height", String.valueOf(size.height));
-        // make AOIBounds and add to stack
+        // add the bounds to the map
 
         LOG.info("we are recording popup bounds in the map");
         LOG.info(popupId);
-        AOIBounds bounds = new AOIBounds(loc.x, loc.y, size.width, size.height, popupId);
-        AOIMap.put(popupId, bounds);
-        popups.appendChild(popupElement);
+        aoiRegistry.put(popupId, loc.x, loc.y, size.width, size.height, AOIIndex.Layer.POPUP);
+        recordElement("popups", popupElement);
     }
 
     // Listener for the "Search Everywhere" window
@@ -348,12 +440,12 @@ public final class IDETracker implements Disposable {
             if (!isTracking) return;
             if (!SEOpen) return; // if the search everywhere popup isn't open, don't record closing it
             String popupId = "SearchEverywhere";
-            AOIMap.remove(popupId);
+            aoiRegistry.remove(popupId);
             Element popupElement = iDETracking.createElement("popup");
             popupElement.setAttribute("timestamp", String.valueOf(System.currentTimeMillis()));
             popupElement.setAttribute("event", "PopupClosed");
             popupElement.setAttribute("AOI", popupId);
-            popups.appendChild(popupElement);
+            recordElement("popups", popupElement);
             SEOpen = false;
         }
     };
@@ -362,35 +454,11 @@ public final class IDETracker implements Disposable {
      * It is used to add and remove all the listeners.
      */
     EditorEventMulticaster editorEventMulticaster = EditorFactory.getInstance().getEventMulticaster();
-    /**
-     * This variable is the timer for tracking the document changes.
-     */
-    Timer timer = new Timer();
-    String changedFilepath = "";
-    String changedFileText = "";
-    /**
-     * This variable is the timer task for tracking the document changes. If the {@code changedFilepath} is not empty, the file is archived.
-     */
-    TimerTask timerTask = new TimerTask() {
-        @Override
-        public void run() {
-            if (changedFilepath.length() > 0) {
-                if (!isTracking) return;
-                archiveFile(changedFilepath, String.valueOf(System.currentTimeMillis()),
-                        "contentChanged", changedFileText);
-                changedFilepath = "";
-            }
-        }
-    };
 
     /**
      * This constructor initializes the IDE tracker.
      */
     IDETracker() throws ParserConfigurationException {
-        AOIMap = new HashMap<>();
-        iDETracking.appendChild(root);
-        root.appendChild(environment);
-
         Dimension size = Toolkit.getDefaultToolkit().getScreenSize();
         environment.setAttribute("screen_size", "(" + size.width + "," + size.height + ")");
         GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment().
@@ -402,17 +470,6 @@ public final class IDETracker implements Disposable {
         environment.setAttribute("ide_version", ApplicationInfo.getInstance().getFullVersion());
         environment.setAttribute("ide_name", ApplicationInfo.getInstance().getVersionName());
 
-        root.appendChild(archives);
-        root.appendChild(actions);
-        root.appendChild(typings);
-        root.appendChild(files);
-        root.appendChild(mouses);
-        root.appendChild(carets);
-        root.appendChild(selections);
-        root.appendChild(visibleAreas);
-        root.appendChild(toolWindows);
-        root.appendChild(popups);
-
         ApplicationManager.getApplication().getMessageBus().connect(this).subscribe(
                 AnActionListener.TOPIC, new AnActionListener() {
 
@@ -425,7 +482,7 @@ public final class IDETracker implements Disposable {
                             VirtualFile virtualFile = event.getData(PlatformDataKeys.VIRTUAL_FILE);
                             actionElement.setAttribute("path", virtualFile != null ?
                                     RelativePathGetter.getRelativePath(virtualFile.getPath(), projectPath) : null);
-                            actions.appendChild(actionElement);
+                            recordElement("actions", actionElement);
                             handleElement(actionElement);
 
                             LOG.info("we're handling an action, Kaia");
@@ -489,8 +546,18 @@ public final class IDETracker implements Disposable {
                     @Override
                     public void beforeEditorTyping(char c, @NotNull DataContext dataContext) {
                         if (isTracking) {
+                            if (typingBurstAggregator != null) {
+                                Editor editor = dataContext.getData(CommonDataKeys.EDITOR);
+                                if (editor != null) {
+                                    VirtualFile virtualFile = FileDocumentManager.getInstance().getFile(editor.getDocument());
+                                    LogicalPosition logicalPos = editor.getCaretModel().getPrimaryCaret().getLogicalPosition();
+                                    typingBurstAggregator.addKey(virtualFile != null ?
+                                                    RelativePathGetter.getRelativePath(virtualFile.getPath(), projectPath) : null,
+                                            logicalPos.line, logicalPos.column, System.currentTimeMillis(), c);
+                                    return;
+                                }
+                            }
                             Element typingElement = iDETracking.createElement("typing");
-                            typings.appendChild(typingElement);
                             typingElement.setAttribute("character", String.valueOf(c));
                             typingElement.setAttribute("timestamp", String.valueOf(System.currentTimeMillis()));
                             VirtualFile virtualFile = dataContext.getData(PlatformDataKeys.VIRTUAL_FILE);
@@ -504,6 +571,7 @@ public final class IDETracker implements Disposable {
                                 typingElement.setAttribute("line", String.valueOf(logicalPos.line));
                                 typingElement.setAttribute("column", String.valueOf(logicalPos.column));
                             }
+                            recordElement("typings", typingElement);
                             handleElement(typingElement);
                         }
                     }
@@ -516,13 +584,13 @@ public final class IDETracker implements Disposable {
                     public void fileOpened(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
                         if (isTracking) {
                             Element fileElement = iDETracking.createElement("file");
-                            files.appendChild(fileElement);
                             fileElement.setAttribute("id", "fileOpened");
                             String timestamp = String.valueOf(System.currentTimeMillis());
                             fileElement.setAttribute("timestamp", timestamp);
                             fileElement.setAttribute("path",
                                     RelativePathGetter.getRelativePath(file.getPath(), projectPath));
-                            archiveFile(file.getPath(), timestamp, "fileOpened", null);
+                            recordElement("files", fileElement);
+                            archiveFile(file, timestamp, "fileOpened");
                             handleElement(fileElement);
                         }
                     }
@@ -531,13 +599,13 @@ public final class IDETracker implements Disposable {
                     public void fileClosed(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
                         if (isTracking) {
                             Element fileElement = iDETracking.createElement("file");
-                            files.appendChild(fileElement);
                             fileElement.setAttribute("id", "fileClosed");
                             String timestamp = String.valueOf(System.currentTimeMillis());
                             fileElement.setAttribute("timestamp", timestamp);
                             fileElement.setAttribute("path",
                                     RelativePathGetter.getRelativePath(file.getPath(), projectPath));
-                            archiveFile(file.getPath(), timestamp, "fileClosed", null);
+                            recordElement("files", fileElement);
+                            archiveFile(file, timestamp, "fileClosed");
                             handleElement(fileElement);
                         }
                     }
@@ -546,28 +614,29 @@ public final class IDETracker implements Disposable {
                     public void selectionChanged(@NotNull FileEditorManagerEvent event) {
                         if (isTracking) {
                             Element fileElement = iDETracking.createElement("file");
-                            files.appendChild(fileElement);
-
                             fileElement.setAttribute("id", "selectionChanged");
                             fileElement.setAttribute("timestamp", String.valueOf(System.currentTimeMillis()));
                             if (event.getOldFile() != null) {
                                 fileElement.setAttribute("old_path",
                                         RelativePathGetter.getRelativePath(event.getOldFile().getPath(), projectPath));
-                                archiveFile(event.getOldFile().getPath(), String.valueOf(System.currentTimeMillis()),
-                                        "selectionChanged | OldFile", null);
                             }
                             if (event.getNewFile() != null) {
                                 fileElement.setAttribute("new_path",
                                         RelativePathGetter.getRelativePath(event.getNewFile().getPath(), projectPath));
-                                archiveFile(event.getNewFile().getPath(), String.valueOf(System.currentTimeMillis()),
-                                        "selectionChanged | NewFile", null);
+                            }
+                            recordElement("files", fileElement);
+                            if (event.getOldFile() != null) {
+                                archiveFile(event.getOldFile(), String.valueOf(System.currentTimeMillis()),
+                                        "selectionChanged | OldFile");
+                            }
+                            if (event.getNewFile() != null) {
+                                archiveFile(event.getNewFile(), String.valueOf(System.currentTimeMillis()),
+                                        "selectionChanged | NewFile");
                             }
                             handleElement(fileElement);
                         }
                     }
                 });
-                // FIXME: is this timer what makes it so slow to open the config file?
-                timer.schedule(timerTask, 0, 1);
     }
 
     /**
@@ -583,12 +652,38 @@ public final class IDETracker implements Disposable {
      * This method starts tracking. All the listeners are added.
      *
      * @param project The project.
+     * @throws IOException If the spill files cannot be created.
      */
-    public void startTracking(Project project) {
+    public void startTracking(Project project) throws IOException {
+        if (outputFormat == OutputFormatEnum.COLUMNAR) {
+            columnarWriter = new ColumnarWriter(dataOutputPath + "/ide_tracking", "ide_tracking", SECTIONS);
+        } else {
+            iDETrackingWriter = new SpillingXMLWriter(dataOutputPath + "/spill", SECTIONS);
+        }
+        archiveStore = new ArchiveStore(dataOutputPath + "/archives");
+        archiveExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(ARCHIVE_QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "CodeGRITS Archive Writer");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        archiveDebouncer = new Debouncer<>("CodeGRITS Archive Debouncer", archiveQuietPeriod, archiveMaxLatency);
+        if (mouseCoalescing != MouseCoalescingEnum.NONE) {
+            mouseMotionCoalescer = new MouseMotionCoalescer(mouseCoalescing, this::recordMousePath);
+        }
+        if (isTypingBurst) {
+            // idle bursts are recorded on the EDT, like the keystrokes, since they go into the shared document
+            typingBurstAggregator = new TypingBurstAggregator(TypingBurstAggregator.DEFAULT_MAX_PAUSE,
+                    this::recordTypingBurst, ApplicationManager.getApplication()::invokeLater);
+        }
         isTracking = true;
         environment.setAttribute("project_path", projectPath);
         environment.setAttribute("project_name", projectPath.substring(
                 projectPath.lastIndexOf('/') + 1));
+        if (eventJournal != null) {
+            journalFileId = eventJournal.openFile("ide_tracking", SECTIONS);
+            eventJournal.append(journalFileId, null, environment);
+        }
         editorEventMulticaster.addDocumentListener(documentListener, () -> {
         });
         editorEventMulticaster.addEditorMouseListener(editorMouseListener, () -> {
@@ -612,39 +707,106 @@ public final class IDETracker implements Disposable {
                 initialToolWindowElement.setAttribute("event", "InitialWindow");
 
                 registerBoundsToElement(toolWindow, initialToolWindowElement);
-                toolWindows.appendChild(initialToolWindowElement);
+                recordElement("tool_windows", initialToolWindowElement);
             }
         }
         // Add listener for tool windows
         toolWindowManager.addToolWindowManagerListener(toolWindowManagerListener);
         FileEditorManager fileEditorManager = FileEditorManager.getInstance(project);
         for (VirtualFile file : fileEditorManager.getOpenFiles()) {
-            archiveFile(file.getPath(), String.valueOf(System.currentTimeMillis()), "fileOpened", null);
+            archiveFile(file, String.valueOf(System.currentTimeMillis()), "fileOpened");
         }
     }
 
     /**
-     * This method sets the handler for the IDE tracker data for real-time data transmission.
+     * This method sets the handler for the IDE tracker data for real-time data transmission. The handler is subscribed
+     * to the {@link EventBus} with {@link OverflowPolicy#DROP_OLDEST}, so it runs on the thread of the subscription
+     * rather than on the thread of the event, and receives a copy of each element while
+     * {@code isRealTimeDataTransmitting} is {@code true}.
      *
-     * @param ideTrackerDataHandler The handler for the IDE tracker data.
+     * @param ideTrackerDataHandler The handler for the IDE tracker data, or {@code null} to remove the handler.
+     * @deprecated Subscribe to the {@link EventBus} for the immutable {@link IdeEvent}s instead.
      */
+    @Deprecated
     public void setIdeTrackerDataHandler(Consumer<Element> ideTrackerDataHandler) {
-        this.ideTrackerDataHandler = ideTrackerDataHandler;
+        if (ideTrackerDataSubscription != null) {
+            ideTrackerDataSubscription.close();
+            ideTrackerDataSubscription = null;
+        }
+        if (ideTrackerDataHandler == null) return;
+        ideTrackerDataSubscription = EventBus.getInstance().subscribe("IDE Tracker Data Handler", IDE_EVENT_FAMILIES,
+                OverflowPolicy.DROP_OLDEST, event -> {
+                    if (isRealTimeDataTransmitting) {
+                        ideTrackerDataHandler.accept(event.toElement(handlerDocument));
+                    }
+                });
     }
 
     /**
-     * This method stops tracking. All the listeners are removed. The tracking data is written to the XML file.
+     * This method stops tracking. The pending archives of the changed files are written, and all the listeners are
+     * removed. The spilled tracking data is merged into the XML file once the queued archives are written. On the EDT,
+     * the queued archives are awaited under a modal progress dialog, which can be cancelled.
      */
-    public void stopTracking() throws TransformerException {
+    public void stopTracking() throws IOException {
+        flushMouseMotion();
+        if (typingBurstAggregator != null) {
+            typingBurstAggregator.close();
+        }
+        archiveDebouncer.flush();
+        archiveDebouncer.close();
         isTracking = false;
+        archiveExecutor.shutdown();
+        if (!archiveExecutor.isTerminated()) {
+            if (ApplicationManager.getApplication().isDispatchThread()) {
+                ProgressManager.getInstance().runProcessWithProgressSynchronously(this::awaitArchives,
+                        "Writing File Archives", true, null);
+            } else {
+                awaitArchives();
+            }
+        }
         editorEventMulticaster.removeDocumentListener(documentListener);
         editorEventMulticaster.removeEditorMouseListener(editorMouseListener);
         editorEventMulticaster.removeEditorMouseMotionListener(editorMouseMotionListener);
         editorEventMulticaster.removeCaretListener(caretListener);
         editorEventMulticaster.removeSelectionListener(selectionListener);
         editorEventMulticaster.removeVisibleAreaListener(visibleAreaListener);
-        String filePath = dataOutputPath + "/ide_tracking.xml";
-        XMLWriter.writeToXML(iDETracking, filePath);
+        if (columnarWriter != null) {
+            columnarWriter.close(List.of(environment));
+        } else {
+            String filePath = dataOutputPath + "/ide_tracking.xml";
+            iDETrackingWriter.merge(filePath, "ide_tracking", List.of(environment));
+        }
+    }
+
+    /**
+     * This method waits for the queued archives to be written, for at most {@link #ARCHIVE_TIMEOUT} milliseconds. If it
+     * runs under a progress indicator, the wait stops when the indicator is cancelled, and the remaining archives are
+     * not recorded.
+     */
+    private void awaitArchives() {
+        ProgressIndicator indicator = ProgressManager.getInstance().getProgressIndicator();
+        if (indicator != null) {
+            indicator.setIndeterminate(true);
+            indicator.setText(archiveExecutor.getQueue().size() + 1 + " file archives left");
+        }
+        long deadline = System.currentTimeMillis() + ARCHIVE_TIMEOUT;
+        try {
+            while (!archiveExecutor.awaitTermination(100, TimeUnit.MILLISECONDS)) {
+                if (indicator != null && indicator.isCanceled()) {
+                    LOG.warn("Cancelled writing " + archiveExecutor.getQueue().size() + " archives");
+                    return;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    LOG.warn("Timed out writing " + archiveExecutor.getQueue().size() + " archives");
+                    return;
+                }
+                if (indicator != null) {
+                    indicator.setText(archiveExecutor.getQueue().size() + 1 + " file archives left");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -652,6 +814,10 @@ public final class IDETracker implements Disposable {
      */
     public void pauseTracking() {
         isTracking = false;
+        flushMouseMotion();
+        if (typingBurstAggregator != null) {
+            typingBurstAggregator.flush();
+        }
     }
 
     /**
@@ -670,8 +836,20 @@ public final class IDETracker implements Disposable {
         IDETracker.isRealTimeDataTransmitting = isRealTimeDataTransmitting;
     }
 
+    /**
+     * This method disposes the IDE tracker. The pending archives of the changed files are cancelled.
+     */
     @Override
     public void dispose() {
+        if (ideTrackerDataSubscription != null) {
+            ideTrackerDataSubscription.close();
+        }
+        if (archiveDebouncer != null) {
+            archiveDebouncer.close();
+        }
+        if (archiveExecutor != null) {
+            archiveExecutor.shutdownNow();
+        }
     }
 
     public void setProjectPath(String projectPath) {
@@ -679,26 +857,83 @@ public final class IDETracker implements Disposable {
     }
 
     /**
-     * This method archives the file. If the file is a code file, the file is copied to the archive folder.
+     * This method sets the quiet period of a changed file before it is archived. It must be set before the tracking
+     * starts.
+     *
+     * @param archiveQuietPeriod The quiet period in milliseconds.
+     */
+    public void setArchiveQuietPeriod(long archiveQuietPeriod) {
+        this.archiveQuietPeriod = archiveQuietPeriod;
+    }
+
+    /**
+     * This method sets the max latency from the first change of a file to its archive, so that a file being edited
+     * continuously is still archived regularly. It must be set before the tracking starts.
+     *
+     * @param archiveMaxLatency The max latency in milliseconds.
+     */
+    public void setArchiveMaxLatency(long archiveMaxLatency) {
+        this.archiveMaxLatency = archiveMaxLatency;
+    }
+
+    /**
+     * This method archives the file with the text of its document at the moment of the event. If the document is not
+     * loaded, the file on the disk is archived.
+     *
+     * @param file      The file.
+     * @param timestamp The timestamp of the file.
+     * @param remark    The remark of the file.
+     */
+    private void archiveFile(VirtualFile file, String timestamp, String remark) {
+        com.intellij.openapi.editor.Document document = FileDocumentManager.getInstance().getCachedDocument(file);
+        archiveFile(file.getPath(), timestamp, remark, document != null ? document.getImmutableCharSequence() : null);
+    }
+
+    /**
+     * This method archives the file. The {@code archive} element is created at the moment of the event, and the
+     * archive is written by the {@code archiveExecutor}. Once it is written, the element is recorded with the result.
      *
      * @param path      The path of the file.
      * @param timestamp The timestamp of the file.
      * @param remark    The remark of the file.
-     * @param text      The text of the file.
+     * @param text      The snapshot of the text of the file, or {@code null} to archive the file on the disk.
+     */
+    public void archiveFile(String path, String timestamp, String remark, CharSequence text) {
+        Element archive = iDETracking.createElement("archive");
+        if (!path.equals("unknown")) {
+            archive.setAttribute("id", "fileArchive");
+        } else {
+            archive.setAttribute("id", "consoleArchive");
+        }
+        archive.setAttribute("timestamp", timestamp);
+        if (!path.equals("unknown")) {
+            archive.setAttribute("path", RelativePathGetter.getRelativePath(path, projectPath));
+        }
+        archiveExecutor.execute(() -> writeArchive(archive, path, remark, text));
+    }
+
+    /**
+     * This method writes the archive. If the file is a code file, its content is stored in the {@code archiveStore},
+     * and the {@code archive} element references it by its hash.
+     *
+     * @param archive The archive element.
+     * @param path    The path of the file.
+     * @param remark  The remark of the file.
+     * @param text    The snapshot of the text of the file, or {@code null} to archive the file on the disk.
      */
-    public void archiveFile(String path, String timestamp, String remark, String text) {
+    private void writeArchive(Element archive, String path, String remark, CharSequence text) {
         File srcFile = new File(path);
-        File destFile = new File(dataOutputPath + "/archives/" + timestamp + ".archive");
+        ArchiveStore.Result result = null;
         String[] codeExtensions = {".java", ".cpp", ".c", ".py", ".rb", ".js", ".md", ".cs", ".html", ".htm", ".css", ".php", ".ts", ".swift", ".go", ".kt", ".kts", ".rs", ".pl", ".sh", ".bat", ".ps1", ".asp", ".aspx", ".jsp", ".lua"};
         try {
             if (path.equals("unknown")) {
-                FileUtils.writeStringToFile(destFile, text, "UTF-8", true);
+                result = archiveStore.store(path, text.toString().getBytes(StandardCharsets.UTF_8));
             } else {
                 if (Arrays.stream(codeExtensions).anyMatch(path::endsWith)) {
                     if (text == null) {
-                        FileUtils.copyFile(srcFile, destFile);
+                        result = archiveStore.store(path, FileUtils.readFileToByteArray(srcFile));
                     } else {
-                        FileUtils.writeStringToFile(destFile, text, "UTF-8", true);
+                        result = archiveStore.store(path, text.toString().getBytes(StandardCharsets.UTF_8));
                     }
                 } else {
                     remark += " | NotCodeFile | Fail";
@@ -708,18 +943,36 @@ public final class IDETracker implements Disposable {
             remark += " | IOException | Fail";
         }
 
-        Element archive = iDETracking.createElement("archive");
-        archives.appendChild(archive);
         if (!path.equals("unknown")) {
-            archive.setAttribute("id", "fileArchive");
-        } else {
-            archive.setAttribute("id", "consoleArchive");
-        }
-        archive.setAttribute("timestamp", timestamp);
-        if (!path.equals("unknown")) {
-            archive.setAttribute("path", RelativePathGetter.getRelativePath(path, projectPath));
             archive.setAttribute("remark", remark);
         }
+        if (result != null) {
+            archive.setAttribute("hash", result.hash());
+            archive.setAttribute("storage", result.storage());
+        }
+        recordElement("archives", archive);
+    }
+
+    /**
+     * This method writes the complete XML element to the given section of the {@code ide_tracking.xml} file, or of the
+     * {@code ide_tracking} directory in the columnar format.
+     *
+     * @param section The name of the section.
+     * @param element The XML element.
+     */
+    private void recordElement(String section, Element element) {
+        try {
+            if (columnarWriter != null) {
+                columnarWriter.writeElement(section, element);
+            } else if (iDETrackingWriter != null) {
+                iDETrackingWriter.writeElement(section, element);
+            }
+            if (eventJournal != null) {
+                eventJournal.append(journalFileId, section, element);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to write the " + element.getTagName() + " to the " + section + " section", e);
+        }
     }
 
     /**
@@ -742,9 +995,91 @@ public final class IDETracker implements Disposable {
         return mouseElement;
     }
 
-    // This method passes the AOIBounds Map so the EyeTracker can determine which AOI gazes are in.
-    public Map<String, AOIBounds> getAOIMap() {
-        return this.AOIMap;
+    /**
+     * This method adds the mouse motion event to the current mouse path.
+     *
+     * @param e  The editor mouse event.
+     * @param id The id of the mouse event.
+     */
+    private void coalesceMouseMotion(EditorMouseEvent e, String id) {
+        VirtualFile virtualFile = FileDocumentManager.getInstance().getFile(e.getEditor().getDocument());
+        MouseEvent mouseEvent = e.getMouseEvent();
+        mouseMotionCoalescer.addEvent(id, virtualFile != null ?
+                        RelativePathGetter.getRelativePath(virtualFile.getPath(), projectPath) : null,
+                System.currentTimeMillis(), mouseEvent.getXOnScreen(), mouseEvent.getYOnScreen());
+    }
+
+    /**
+     * This method ends the current mouse path, e.g., before a mouse button event, so that the mouse elements stay in
+     * order.
+     */
+    private void flushMouseMotion() {
+        if (mouseMotionCoalescer != null) {
+            mouseMotionCoalescer.flush();
+        }
+    }
+
+    /**
+     * This method records the mouse path of a coalesced segment of mouse motion events. The {@code points} attribute
+     * lists the kept points as {@code offset:x,y}, where the offset is in milliseconds from the {@code start}.
+     *
+     * @param segment The segment.
+     */
+    private void recordMousePath(MouseMotionCoalescer.Segment segment) {
+        Element mousePath = iDETracking.createElement("mouse_path");
+        mousePath.setAttribute("id", segment.id());
+        mousePath.setAttribute("path", segment.path());
+        mousePath.setAttribute("start", String.valueOf(segment.start()));
+        mousePath.setAttribute("end", String.valueOf(segment.end()));
+        mousePath.setAttribute("count", String.valueOf(segment.count()));
+        StringBuilder points = new StringBuilder();
+        for (int i = 0; i < segment.timestamps().length; i++) {
+            if (i > 0) {
+                points.append(' ');
+            }
+            points.append(segment.timestamps()[i] - segment.start()).append(':')
+                    .append(segment.xs()[i]).append(',').append(segment.ys()[i]);
+        }
+        mousePath.setAttribute("points", points.toString());
+        recordElement("mouses", mousePath);
+        handleElement(mousePath);
+    }
+
+    /**
+     * This method records a typing burst. The {@code intervals} attribute lists the milliseconds between each keystroke
+     * and the previous one, so it has one value less than the {@code text} has characters.
+     *
+     * @param burst The typing burst.
+     */
+    private void recordTypingBurst(TypingBurstAggregator.Burst burst) {
+        Element typingBurst = iDETracking.createElement("typing_burst");
+        typingBurst.setAttribute("text", burst.text());
+        typingBurst.setAttribute("start", String.valueOf(burst.start()));
+        typingBurst.setAttribute("end", String.valueOf(burst.end()));
+        typingBurst.setAttribute("path", burst.path());
+        typingBurst.setAttribute("line", String.valueOf(burst.line()));
+        typingBurst.setAttribute("start_column", String.valueOf(burst.startColumn()));
+        typingBurst.setAttribute("end_column", String.valueOf(burst.endColumn()));
+        StringBuilder intervals = new StringBuilder();
+        long[] timestamps = burst.timestamps();
+        for (int i = 1; i < timestamps.length; i++) {
+            if (i > 1) {
+                intervals.append(',');
+            }
+            intervals.append(timestamps[i] - timestamps[i - 1]);
+        }
+        typingBurst.setAttribute("intervals", intervals.toString());
+        recordElement("typings", typingBurst);
+        handleElement(typingBurst);
+    }
+
+    /**
+     * This method returns the AOI registry, so the EyeTracker can determine which AOI gazes are in.
+     *
+     * @return The AOI registry.
+     */
+    public AOIRegistry getAOIRegistry() {
+        return aoiRegistry;
     }
 
     /**
@@ -757,18 +1092,70 @@ public final class IDETracker implements Disposable {
     }
 
     /**
-     * This method handles the XML element for real-time data transmission.
+     * This method sets the format of the tracking data files.
+     *
+     * @param outputFormat The output format.
+     */
+    public void setOutputFormat(OutputFormatEnum outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+
+    /**
+     * This method sets the journal the tracking elements are also appended to.
+     *
+     * @param eventJournal The event journal.
+     */
+    public void setEventJournal(EventJournal eventJournal) {
+        this.eventJournal = eventJournal;
+    }
+
+    /**
+     * This method sets the policy of coalescing the mouse motion events.
+     *
+     * @param mouseCoalescing The coalescing policy, or {@code NONE} to record every event.
+     */
+    public void setMouseCoalescing(MouseCoalescingEnum mouseCoalescing) {
+        this.mouseCoalescing = mouseCoalescing;
+    }
+
+    /**
+     * This method sets whether the keystrokes are folded into typing bursts.
+     *
+     * @param isTypingBurst Whether the keystrokes are folded into typing bursts.
+     */
+    public void setTypingBurst(boolean isTypingBurst) {
+        this.isTypingBurst = isTypingBurst;
+    }
+
+    /**
+     * This method publishes the XML element to the {@link EventBus} as an {@link IdeEvent} for real-time data
+     * transmission. The event is not created if nothing is subscribed.
      *
      * @param element The XML element.
      */
     private void handleElement(Element element) {
-        if (ideTrackerDataHandler == null) {
-            return;
-//            throw new RuntimeException("ideTrackerDataHandler is null");
-        }
-        if (isRealTimeDataTransmitting) {
-            ideTrackerDataHandler.accept(element);
-        }
+        EventBus eventBus = EventBus.getInstance();
+        if (!eventBus.hasSubscriptions()) return;
+        eventBus.publish(IdeEvent.fromElement(getEventFamily(element.getTagName()), element));
+    }
+
+    /**
+     * This method returns the event family of an element of the IDE tracker.
+     *
+     * @param tagName The tag name of the element.
+     * @return The event family.
+     */
+    private static EventFamily getEventFamily(String tagName) {
+        return switch (tagName) {
+            case "action" -> EventFamily.ACTION;
+            case "typing", "typing_burst" -> EventFamily.TYPING;
+            case "file" -> EventFamily.FILE;
+            case "mouse", "mouse_path" -> EventFamily.MOUSE;
+            case "caret" -> EventFamily.CARET;
+            case "selection" -> EventFamily.SELECTION;
+            case "visible_area" -> EventFamily.VISIBLE_AREA;
+            default -> throw new IllegalArgumentException("Unknown IDE tracker element: " + tagName);
+        };
     }
 
     /**
@@ -0,0 +1,250 @@
+package trackers;
+
+import entity.MouseCoalescingEnum;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * This class coalesces the stream of mouse motion events into path segments. A segment is a run of events with the same
+ * id (i.e., {@code mouseMoved} or {@code mouseDragged}) and path, which ends when the id or the path changes, when the
+ * mouse rests for longer than the max gap, when it reaches {@link #MAX_POINTS} events, or when {@link #flush()} is
+ * called. Only the points selected by the policy are kept, but the segment keeps the number of the original events.
+ * The first and the last points of a segment are always kept.
+ * <p>
+ * The points are in screen pixels and the timestamps are in milliseconds.
+ */
+public final class MouseMotionCoalescer {
+    /**
+     * The default length of a time bucket in milliseconds, i.e., at most 20 points per second.
+     */
+    public static final long DEFAULT_BUCKET_INTERVAL = 50;
+    /**
+     * The default distance in pixels a point must move from the last kept point to be kept.
+     */
+    public static final double DEFAULT_DISTANCE_THRESHOLD = 8;
+    /**
+     * The default tolerance of the Douglas-Peucker simplification in pixels, i.e., the maximum distance of a dropped
+     * point from the simplified path.
+     */
+    public static final double DEFAULT_EPSILON = 2;
+    /**
+     * The default maximum time between two events of a segment in milliseconds.
+     */
+    public static final long DEFAULT_MAX_GAP = 200;
+    /**
+     * The maximum number of events in a segment, which bounds the buffered points and the delay of a segment.
+     */
+    public static final int MAX_POINTS = 1024;
+
+    /**
+     * This record is a coalesced segment of mouse motion.
+     *
+     * @param id         The id of the events, i.e., {@code mouseMoved} or {@code mouseDragged}.
+     * @param path       The path of the file of the events.
+     * @param count      The number of the original events.
+     * @param timestamps The timestamps of the kept points.
+     * @param xs         The x coordinates of the kept points.
+     * @param ys         The y coordinates of the kept points.
+     */
+    public record Segment(String id, String path, int count, long[] timestamps, int[] xs, int[] ys) {
+        /**
+         * Get the timestamp of the first event.
+         *
+         * @return The timestamp.
+         */
+        public long start() {
+            return timestamps[0];
+        }
+
+        /**
+         * Get the timestamp of the last event.
+         *
+         * @return The timestamp.
+         */
+        public long end() {
+            return timestamps[timestamps.length - 1];
+        }
+    }
+
+    private final MouseCoalescingEnum policy;
+    private final double threshold;
+    private final long maxGap;
+    private final Consumer<Segment> segmentHandler;
+
+    /**
+     * The current segment. For {@code DISTANCE}, the last point is tentative if it is too close to the previous one, and
+     * it is replaced by the next point.
+     */
+    private String segmentId;
+    private String segmentPath;
+    private int count = 0;
+    private long[] timestamps = new long[64];
+    private int[] xs = new int[64];
+    private int[] ys = new int[64];
+    private int size = 0;
+    private boolean isLastTentative = false;
+
+    /**
+     * Create the coalescer with the default threshold of the policy.
+     *
+     * @param policy         The policy, which must not be {@code NONE}.
+     * @param segmentHandler The handler of the segments.
+     */
+    public MouseMotionCoalescer(MouseCoalescingEnum policy, Consumer<Segment> segmentHandler) {
+        this(policy, switch (policy) {
+            case TIME_BUCKET -> DEFAULT_BUCKET_INTERVAL;
+            case DISTANCE -> DEFAULT_DISTANCE_THRESHOLD;
+            default -> DEFAULT_EPSILON;
+        }, DEFAULT_MAX_GAP, segmentHandler);
+    }
+
+    /**
+     * Create the coalescer.
+     *
+     * @param policy         The policy, which must not be {@code NONE}.
+     * @param threshold      The bucket interval in milliseconds ({@code TIME_BUCKET}), the distance threshold in
+     *                       pixels ({@code DISTANCE}), or the tolerance in pixels ({@code DOUGLAS_PEUCKER}).
+     * @param maxGap         The maximum time between two events of a segment in milliseconds.
+     * @param segmentHandler The handler of the segments.
+     */
+    public MouseMotionCoalescer(MouseCoalescingEnum policy, double threshold, long maxGap,
+                                Consumer<Segment> segmentHandler) {
+        if (policy == MouseCoalescingEnum.NONE) {
+            throw new IllegalArgumentException("No mouse coalescing policy");
+        }
+        this.policy = policy;
+        this.threshold = threshold;
+        this.maxGap = maxGap;
+        this.segmentHandler = segmentHandler;
+    }
+
+    /**
+     * Add a mouse motion event.
+     *
+     * @param id        The id of the event, i.e., {@code mouseMoved} or {@code mouseDragged}.
+     * @param path      The path of the file of the event.
+     * @param timestamp The timestamp of the event.
+     * @param x         The x coordinate of the mouse on the screen.
+     * @param y         The y coordinate of the mouse on the screen.
+     */
+    public synchronized void addEvent(String id, String path, long timestamp, int x, int y) {
+        if (count > 0) {
+            long lastTimestamp = timestamps[size - 1];
+            if (!id.equals(segmentId) || !Objects.equals(path, segmentPath) || timestamp - lastTimestamp > maxGap
+                    || timestamp < lastTimestamp || count == MAX_POINTS) {
+                flush();
+            }
+        }
+        count++;
+        if (count == 1) {
+            segmentId = id;
+            segmentPath = path;
+            append(timestamp, x, y);
+            return;
+        }
+        switch (policy) {
+            case TIME_BUCKET -> {
+                // the first point is kept, and then the last point of each bucket
+                long bucket = (long) ((timestamp - timestamps[0]) / threshold);
+                long lastBucket = (long) ((timestamps[size - 1] - timestamps[0]) / threshold);
+                if (size > 1 && bucket == lastBucket) {
+                    set(size - 1, timestamp, x, y);
+                } else {
+                    append(timestamp, x, y);
+                }
+            }
+            case DISTANCE -> {
+                int anchor = isLastTentative ? size - 2 : size - 1;
+                boolean isFarEnough = Math.hypot(x - xs[anchor], y - ys[anchor]) >= threshold;
+                if (isLastTentative) {
+                    set(size - 1, timestamp, x, y);
+                } else {
+                    append(timestamp, x, y);
+                }
+                isLastTentative = !isFarEnough;
+            }
+            default -> append(timestamp, x, y);
+        }
+    }
+
+    /**
+     * End the current segment and emit it.
+     */
+    public synchronized void flush() {
+        if (count == 0) return;
+        if (policy == MouseCoalescingEnum.DOUGLAS_PEUCKER) {
+            simplify();
+        }
+        Segment segment = new Segment(segmentId, segmentPath, count, Arrays.copyOf(timestamps, size),
+                Arrays.copyOf(xs, size), Arrays.copyOf(ys, size));
+        count = 0;
+        size = 0;
+        isLastTentative = false;
+        segmentHandler.accept(segment);
+    }
+
+    private void append(long timestamp, int x, int y) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            xs = Arrays.copyOf(xs, size * 2);
+            ys = Arrays.copyOf(ys, size * 2);
+        }
+        set(size++, timestamp, x, y);
+    }
+
+    private void set(int index, long timestamp, int x, int y) {
+        timestamps[index] = timestamp;
+        xs[index] = x;
+        ys[index] = y;
+    }
+
+    /**
+     * Keep only the points selected by the Douglas-Peucker algorithm, without recursion.
+     */
+    private void simplify() {
+        if (size < 3) return;
+        boolean[] isKept = new boolean[size];
+        isKept[0] = true;
+        isKept[size - 1] = true;
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{0, size - 1});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int start = range[0], end = range[1];
+            double maxDistance = 0;
+            int farthest = -1;
+            for (int i = start + 1; i < end; i++) {
+                double distance = distanceToSegment(i, start, end);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            if (farthest >= 0 && maxDistance > threshold) {
+                isKept[farthest] = true;
+                ranges.push(new int[]{start, farthest});
+                ranges.push(new int[]{farthest, end});
+            }
+        }
+        int keptSize = 0;
+        for (int i = 0; i < size; i++) {
+            if (isKept[i]) {
+                set(keptSize++, timestamps[i], xs[i], ys[i]);
+            }
+        }
+        size = keptSize;
+    }
+
+    private double distanceToSegment(int point, int start, int end) {
+        double dx = xs[end] - xs[start];
+        double dy = ys[end] - ys[start];
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, ((xs[point] - xs[start]) * dx + (ys[point] - ys[start]) * dy) / lengthSquared));
+        return Math.hypot(xs[point] - (xs[start] + t * dx), ys[point] - (ys[start] + t * dy));
+    }
+}
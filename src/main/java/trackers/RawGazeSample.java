@@ -0,0 +1,412 @@
+package trackers;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is a reusable record of one raw gaze sample from the eye tracker. A sample line like
+ * {@code "timestamp; left_x, left_y, left_validity, left_pupil, left_pupil_validity; right_x, ..., left_z, right_z"}
+ * is decoded by {@link #parse(String)} in a single pass without splitting it, and a binary frame is decoded by
+ * {@link #decode(ByteBuffer, int)}. The same instance is refilled for every sample.
+ */
+public final class RawGazeSample {
+    public static final int TIMESTAMP = 0;
+    public static final int LEFT_GAZE_POINT_X = 1;
+    public static final int LEFT_GAZE_POINT_Y = 2;
+    public static final int LEFT_GAZE_VALIDITY = 3;
+    public static final int LEFT_PUPIL_DIAMETER = 4;
+    public static final int LEFT_PUPIL_VALIDITY = 5;
+    public static final int RIGHT_GAZE_POINT_X = 6;
+    public static final int RIGHT_GAZE_POINT_Y = 7;
+    public static final int RIGHT_GAZE_VALIDITY = 8;
+    public static final int RIGHT_PUPIL_DIAMETER = 9;
+    public static final int RIGHT_PUPIL_VALIDITY = 10;
+    public static final int LEFT_GAZE_POINT_Z = 11;
+    public static final int RIGHT_GAZE_POINT_Z = 12;
+    /**
+     * The number of fields in a complete sample. The mouse simulation does not report the last two fields.
+     */
+    public static final int FIELD_COUNT = 13;
+    private static final int MIN_FIELD_COUNT = RIGHT_PUPIL_VALIDITY + 1;
+    /**
+     * The magic number at the start of the binary gaze stream, {@code "CGRT"} in ASCII.
+     */
+    public static final int FRAME_MAGIC = 0x54524743;
+    /**
+     * The version of the binary frame layout of the eye tracker, which reports the gaze origins.
+     */
+    public static final int FRAME_VERSION = 1;
+    /**
+     * The version of the binary frame layout of the mouse simulation. The frames have the same size, but the gaze
+     * origins are not reported, like in the text lines of the mouse simulation. Its constant validity and pupil fields
+     * are formatted like in its text lines, i.e., {@code 1.0, 0, 0.0}: the validity fields as floats, and the pupil
+     * diameter as an integer.
+     */
+    public static final int MOUSE_FRAME_VERSION = 2;
+    /**
+     * The size of the binary stream header: the magic number, the version (uint16) and the frame size (uint16).
+     */
+    public static final int HEADER_SIZE = 8;
+    /**
+     * The size of a binary frame. The timestamp is an int64, the validity fields are int32, and the other fields are
+     * float64, all little-endian and in the order of the field indices.
+     */
+    public static final int FRAME_SIZE = 88;
+    private static final double[] POWERS_OF_TEN = new double[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private String line;
+    private int fieldCount;
+    private int frameVersion;
+    private long timestamp;
+    private final int[] starts = new int[FIELD_COUNT];
+    private final int[] ends = new int[FIELD_COUNT];
+    private final double[] values = new double[FIELD_COUNT];
+
+    /**
+     * Decode the sample line into this record, replacing the previous sample.
+     *
+     * @param line The sample line.
+     * @return {@code true} if the line is a valid sample, {@code false} otherwise.
+     */
+    public boolean parse(String line) {
+        this.line = line;
+        fieldCount = 0;
+        int length = line.length();
+        int position = 0;
+        while (position < length && fieldCount < FIELD_COUNT) {
+            while (position < length && line.charAt(position) == ' ') {
+                position++;
+            }
+            int start = position;
+            while (position < length && line.charAt(position) != ';' && line.charAt(position) != ',') {
+                position++;
+            }
+            int end = position;
+            while (end > start && line.charAt(end - 1) == ' ') {
+                end--;
+            }
+            if (end == start) {
+                return false;
+            }
+            starts[fieldCount] = start;
+            ends[fieldCount] = end;
+            if (fieldCount == TIMESTAMP) {
+                if (!parseTimestamp(start, end)) {
+                    return false;
+                }
+            } else {
+                values[fieldCount] = parseDouble(start, end);
+            }
+            fieldCount++;
+            position++; // skip the separator
+        }
+        return fieldCount >= MIN_FIELD_COUNT;
+    }
+
+    /**
+     * Decode a binary frame into this record, replacing the previous sample. The buffer must be little-endian and
+     * contain at least {@link #FRAME_SIZE} remaining bytes. Whether the gaze origins are reported is given by the
+     * version in the stream header, not by their values, since the eye tracker reports {@code NaN} origins when it
+     * loses both eyes.
+     *
+     * @param frame   The binary frame.
+     * @param version The version of the frame layout, {@link #FRAME_VERSION} or {@link #MOUSE_FRAME_VERSION}.
+     */
+    public void decode(ByteBuffer frame, int version) {
+        line = null;
+        frameVersion = version;
+        timestamp = frame.getLong();
+        values[TIMESTAMP] = timestamp;
+        for (int field = LEFT_GAZE_POINT_X; field < FIELD_COUNT; field++) {
+            values[field] = isValidityField(field) ? frame.getInt() : frame.getDouble();
+        }
+        fieldCount = version == MOUSE_FRAME_VERSION ? MIN_FIELD_COUNT : FIELD_COUNT;
+    }
+
+    static boolean isValidityField(int field) {
+        return field == LEFT_GAZE_VALIDITY || field == LEFT_PUPIL_VALIDITY
+                || field == RIGHT_GAZE_VALIDITY || field == RIGHT_PUPIL_VALIDITY;
+    }
+
+    /**
+     * Parse the timestamp field as a non-negative integer.
+     */
+    private boolean parseTimestamp(int start, int end) {
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            result = result * 10 + (c - '0');
+        }
+        timestamp = result;
+        return true;
+    }
+
+    /**
+     * Parse a decimal number (e.g., {@code 0.5338541666666666}, {@code -1.5e-05}, {@code nan}) without creating a
+     * substring. The result is within one ulp of {@link Double#parseDouble(String)}, which is far below the precision
+     * of the eye tracker. Unusual formats fall back to {@link Double#parseDouble(String)}, and unparsable fields are
+     * {@code NaN}.
+     */
+    private double parseDouble(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        char c = line.charAt(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+        if (i < end && (line.charAt(i) == 'n' || line.charAt(i) == 'N')) {
+            return Double.NaN;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean inFraction = false;
+        boolean hasDigit = false;
+        for (; i < end; i++) {
+            c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                if (digits < 18) {
+                    if (mantissa != 0 || c != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (inFraction) {
+                        fractionDigits++;
+                    }
+                } else if (!inFraction) {
+                    return parseDoubleSlowly(start, end);
+                }
+            } else if (c == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!hasDigit) {
+            return parseDoubleSlowly(start, end);
+        }
+        int exponent = 0;
+        if (i < end) {
+            c = line.charAt(i);
+            if (c != 'e' && c != 'E') {
+                return parseDoubleSlowly(start, end);
+            }
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+                negativeExponent = line.charAt(i) == '-';
+                i++;
+            }
+            if (i == end) {
+                return parseDoubleSlowly(start, end);
+            }
+            for (; i < end; i++) {
+                c = line.charAt(i);
+                if (c < '0' || c > '9' || exponent > 1000) {
+                    return parseDoubleSlowly(start, end);
+                }
+                exponent = exponent * 10 + (c - '0');
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        exponent -= fractionDigits;
+        double result;
+        if (exponent == 0) {
+            result = mantissa;
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            result = mantissa / POWERS_OF_TEN[-exponent];
+        } else if (exponent > 0 && exponent < POWERS_OF_TEN.length) {
+            result = mantissa * POWERS_OF_TEN[exponent];
+        } else {
+            return parseDoubleSlowly(start, end);
+        }
+        return negative ? -result : result;
+    }
+
+    private double parseDoubleSlowly(int start, int end) {
+        try {
+            return Double.parseDouble(line.substring(start, end));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Get the timestamp of the sample.
+     *
+     * @return The timestamp in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Get the numeric value of a field.
+     *
+     * @param field The field index, e.g., {@link #LEFT_GAZE_POINT_X}.
+     * @return The value, or {@code NaN} if the field is invalid or not reported.
+     */
+    public double getValue(int field) {
+        return field < fieldCount ? values[field] : Double.NaN;
+    }
+
+    /**
+     * Check whether a field is reported in the sample.
+     *
+     * @param field The field index.
+     * @return {@code true} if the field is reported, {@code false} otherwise.
+     */
+    public boolean hasField(int field) {
+        return field < fieldCount;
+    }
+
+    /**
+     * Get the text of a field, as used in the XML attributes. For a parsed line, this is the original text. For a
+     * decoded frame, the value is formatted like the text format of the same Python process, so that both formats give
+     * the same attributes: the integer fields as integers, and the other fields like Python's {@code str} of a float
+     * (e.g., {@code 0.0}, {@code 1e-05}, {@code nan}). The integer fields are the validity fields of the eye tracker,
+     * and the pupil diameters of the mouse simulation.
+     *
+     * @param field The field index.
+     * @return The text of the field, or {@code null} if the field is not reported.
+     */
+    public String getText(int field) {
+        if (field >= fieldCount) {
+            return null;
+        }
+        if (line != null) {
+            return line.substring(starts[field], ends[field]);
+        }
+        if (field == TIMESTAMP) {
+            return String.valueOf(timestamp);
+        }
+        boolean isIntegerField = frameVersion == MOUSE_FRAME_VERSION
+                ? field == LEFT_PUPIL_DIAMETER || field == RIGHT_PUPIL_DIAMETER : isValidityField(field);
+        return isIntegerField ? String.valueOf((long) values[field]) : formatDouble(values[field]);
+    }
+
+    /**
+     * Format a number like Python's {@code repr} of a float: the shortest digits in positional notation with at least
+     * one fractional digit if the decimal exponent is in [-4, 16), otherwise in scientific notation with an at least
+     * two-digit exponent. The digits are those of {@link Double#toString(double)}, which are already the shortest ones
+     * except for some numbers with 17 or more digits before JDK 19, so only those are shortened.
+     */
+    static String formatDouble(double value) {
+        if (Double.isNaN(value)) {
+            return "nan";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "inf" : "-inf";
+        }
+        if (value == 0) {
+            return 1 / value < 0 ? "-0.0" : "0.0";
+        }
+        double magnitude = Math.abs(value);
+        String javaText = Double.toString(magnitude);
+        // split the text, e.g., 0.00123 or 1.2345E-5, into the significant digits and the exponent of the first one
+        char[] digits = new char[javaText.length()];
+        int digitCount = 0;
+        int integerDigits = 0;
+        int leadingZeros = 0;
+        boolean isFraction = false;
+        int i = 0;
+        for (; i < javaText.length() && javaText.charAt(i) != 'E'; i++) {
+            char c = javaText.charAt(i);
+            if (c == '.') {
+                isFraction = true;
+            } else if (digitCount == 0 && c == '0') {
+                if (isFraction) {
+                    leadingZeros++;
+                }
+            } else {
+                digits[digitCount++] = c;
+                if (!isFraction) {
+                    integerDigits++;
+                }
+            }
+        }
+        int exponent = integerDigits > 0 ? integerDigits - 1 : -leadingZeros - 1;
+        if (i < javaText.length()) {
+            exponent += Integer.parseInt(javaText, i + 1, javaText.length(), 10);
+        }
+        while (digitCount > 1 && digits[digitCount - 1] == '0') {
+            digitCount--;
+        }
+        if (digitCount >= 17 || magnitude < Double.MIN_NORMAL) {
+            // round the digits to fewer and fewer digits while the number still round-trips
+            char[] javaDigits = digits.clone();
+            int javaDigitCount = digitCount;
+            int javaExponent = exponent;
+            for (int count = javaDigitCount - 1; count > 0; count--) {
+                long mantissa = 0;
+                for (int d = 0; d < count; d++) {
+                    mantissa = mantissa * 10 + (javaDigits[d] - '0');
+                }
+                if (javaDigits[count] >= '5') {
+                    mantissa++;
+                }
+                int mantissaExponent = javaExponent - count + 1;
+                if (Double.parseDouble(mantissa + "E" + mantissaExponent) != magnitude) {
+                    // a last digit of 5 may have been rounded up by Double.toString, so also try rounding down
+                    boolean isTie = count == javaDigitCount - 1 && javaDigits[count] == '5';
+                    if (!isTie || Double.parseDouble(--mantissa + "E" + mantissaExponent) != magnitude) {
+                        break;
+                    }
+                }
+                String rounded = Long.toString(mantissa);
+                digitCount = rounded.length();
+                rounded.getChars(0, digitCount, digits, 0);
+                exponent = mantissaExponent + digitCount - 1;
+                while (digitCount > 1 && digits[digitCount - 1] == '0') {
+                    digitCount--;
+                }
+            }
+        }
+        StringBuilder text = new StringBuilder(24);
+        if (value < 0) {
+            text.append('-');
+        }
+        if (exponent >= 16 || exponent < -4) {
+            text.append(digits[0]);
+            if (digitCount > 1) {
+                text.append('.').append(digits, 1, digitCount - 1);
+            }
+            text.append(exponent < 0 ? "e-" : "e+");
+            if (Math.abs(exponent) < 10) {
+                text.append('0');
+            }
+            text.append(Math.abs(exponent));
+        } else if (exponent < 0) {
+            text.append("0.");
+            for (int zero = -1; zero > exponent; zero--) {
+                text.append('0');
+            }
+            text.append(digits, 0, digitCount);
+        } else {
+            text.append(digits, 0, Math.min(digitCount, exponent + 1));
+            for (int zero = digitCount; zero <= exponent; zero++) {
+                text.append('0');
+            }
+            text.append('.');
+            if (digitCount > exponent + 1) {
+                text.append(digits, exponent + 1, digitCount - exponent - 1);
+            } else {
+                text.append('0');
+            }
+        }
+        return text.toString();
+    }
+}
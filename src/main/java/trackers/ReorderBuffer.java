@@ -0,0 +1,63 @@
+package trackers;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * This class hands items to the sink in the order of their sequence numbers, whichever thread completes them. A
+ * sequence number is issued when an item is created, e.g., when a gaze arrives, and the item is put back with it once
+ * it is complete, e.g., after it has been mapped on another thread. Items completed ahead of an earlier one are held
+ * until the earlier one is put. Every issued sequence number must be put exactly once.
+ * <p>
+ * The sink is called while the buffer is locked, so it is never called concurrently.
+ *
+ * @param <E> The type of the items.
+ */
+public final class ReorderBuffer<E> {
+    private final Consumer<E> sink;
+    private final Map<Long, E> pending = new HashMap<>();
+    private long issuedCount = 0;
+    private long nextSequence = 0;
+
+    /**
+     * Create the buffer.
+     *
+     * @param sink The sink of the items, in the order of their sequence numbers.
+     */
+    public ReorderBuffer(Consumer<E> sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Issue the next sequence number.
+     *
+     * @return The sequence number.
+     */
+    public synchronized long issue() {
+        return issuedCount++;
+    }
+
+    /**
+     * Put a complete item, and hand it to the sink with the items held back for it.
+     *
+     * @param sequence The sequence number issued for the item.
+     * @param item     The item.
+     */
+    public synchronized void put(long sequence, E item) {
+        pending.put(sequence, item);
+        while ((item = pending.remove(nextSequence)) != null) {
+            nextSequence++;
+            sink.accept(item);
+        }
+    }
+
+    /**
+     * Get the number of items held back for an earlier item.
+     *
+     * @return The number of pending items.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+}
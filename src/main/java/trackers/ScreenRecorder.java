@@ -1,22 +1,125 @@
 package trackers;
 
+import com.intellij.openapi.diagnostic.Logger;
 import com.opencsv.CSVWriter;
+import entity.CaptureRegionEnum;
+import entity.EncoderProfileEnum;
+import entity.FrameQueuePolicyEnum;
 import org.bytedeco.ffmpeg.global.avcodec;
+import org.bytedeco.ffmpeg.global.avutil;
 import org.bytedeco.javacv.*;
 import org.bytedeco.javacv.Frame;
 
 import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import utils.LatencyHistogram;
 
 /**
  * This class is the screen recorder.
  */
 public class ScreenRecorder {
+    private static final Logger LOG = Logger.getInstance(ScreenRecorder.class);
+
+    /**
+     * The number of consecutive failed captures or encodings after which a clip is abandoned.
+     */
+    private static final int MAX_CONSECUTIVE_FAILURES = 10;
+    /**
+     * The x264 presets from the slowest to the fastest, which {@link FrameQueuePolicyEnum#DEGRADE_PRESET} steps through.
+     * The first one is the default of x264.
+     */
+    private static final String[] PRESETS = {"medium", "fast", "faster", "veryfast", "superfast", "ultrafast"};
+    /**
+     * The length of a group of pictures in seconds, i.e., the maximum time between two keyframes.
+     */
+    private static final int GOP_DURATION = 10;
+    /**
+     * The length of a segment of the video in seconds. It is a multiple of {@link #GOP_DURATION}, so each segment starts
+     * with a keyframe.
+     */
+    private static final int SEGMENT_DURATION = 60;
+    /**
+     * The number of frames dropped during a segment from which {@link FrameQueuePolicyEnum#DEGRADE_PRESET} switches the
+     * encoder to the next faster preset for the next segment.
+     */
+    private static final int DEGRADE_DROPPED_FRAMES = 10;
+
+    /**
+     * This class is a pooled buffer of a captured frame with the region of the screen it shows and the times of its
+     * stages.
+     */
+    private static final class CapturedFrame {
+        private Frame frame;
+        private Clip clip;
+        private Rectangle region;
+        private long timestamp;
+        private long captureNanos;
+        private long queueNanos;
+
+        /**
+         * Copy the region of the image of the grabbed frame, which the grabber reuses for the next frame. The image
+         * buffer is only allocated for the first frame or if the size of the region changes.
+         */
+        private void copyFrom(Frame grabbed, Rectangle region) {
+            this.region = region;
+            if (frame == null || frame.imageWidth != region.width || frame.imageHeight != region.height
+                    || frame.imageChannels != grabbed.imageChannels || frame.imageDepth != grabbed.imageDepth) {
+                frame = new Frame(region.width, region.height, grabbed.imageDepth, grabbed.imageChannels);
+            }
+            frame.timestamp = grabbed.timestamp;
+            ByteBuffer source = (ByteBuffer) grabbed.image[0];
+            ByteBuffer target = (ByteBuffer) frame.image[0];
+            int pixelSize = Math.abs(grabbed.imageDepth) / 8 * grabbed.imageChannels;
+            int sourceStride = grabbed.imageStride * Math.abs(grabbed.imageDepth) / 8;
+            int targetStride = frame.imageStride * Math.abs(frame.imageDepth) / 8;
+            int rowSize = region.width * pixelSize;
+            if (region.x == 0 && sourceStride == targetStride) {
+                // the rows are contiguous, so copy them at once
+                target.put(0, source, region.y * sourceStride, (region.height - 1) * targetStride + rowSize);
+                return;
+            }
+            for (int row = 0; row < region.height; row++) {
+                target.put(row * targetStride, source, (region.y + row) * sourceStride + region.x * pixelSize, rowSize);
+            }
+        }
+    }
+
+    /**
+     * This class is a clip, i.e., the frames captured from a start or resume to the next pause or stop, with its capture
+     * statistics. The frames of all clips are encoded by the same encoder into the same sequence of segments.
+     */
+    private static final class Clip {
+        private final int number;
+        private final CaptureScheduler scheduler;
+        /**
+         * These variables are updated by the capture thread.
+         */
+        private long droppedCount = 0;
+        private double duration = 0;
+        private boolean isFinished = false;
+        /**
+         * These variables are updated by the encoder thread. The preset is the last one the clip was encoded with.
+         */
+        private int frameCount = 0;
+        private volatile String preset;
+
+        private Clip(int number, String preset, int frameRate) {
+            this.number = number;
+            this.preset = preset;
+            this.scheduler = new CaptureScheduler(frameRate);
+        }
+    }
 
     /**
      * This variable indicates the state of the screen recorder. 0: initial state; only startAction enabled 1: started, not paused; stopAction and pauseAction enabled 2: started, paused; only resumeAction enabled
@@ -28,17 +131,98 @@ public class ScreenRecorder {
     int frameRate = 10; // higher frame rate (e.g., 12) will result in larger file size and blurry video
     private FrameRecorder recorder;
     private FrameGrabber grabber;
-    private final ArrayList<String[]> timeList = new ArrayList<>();
+    private final List<String[]> timeList = Collections.synchronizedList(new ArrayList<>());
+    /**
+     * This variable is the clips of the recording, whose capture statistics, i.e., the target and achieved frame rates
+     * and the missed deadlines, are written to the {@code capture_stats.csv} file.
+     */
+    private final List<Clip> clips = Collections.synchronizedList(new ArrayList<>());
     private CSVWriter csvWriter;
+    /**
+     * This variable is the thread capturing the frames of the recording, which waits while the recording is paused.
+     */
+    private Thread captureThread;
+    /**
+     * This variable is the thread encoding the frames of the recording, which takes the captured frames from a
+     * {@link FrameQueue}.
+     */
+    private Thread encoderThread;
+    /**
+     * This variable indicates what happens to the frames when the encoder cannot keep up with the capture.
+     */
+    private FrameQueuePolicyEnum frameQueuePolicy = FrameQueuePolicyEnum.DROP_OLDEST;
+    /**
+     * This variable is the profile of the encoder, which sets the x264 preset of the first clip.
+     */
+    private EncoderProfileEnum encoderProfile = EncoderProfileEnum.BALANCED;
+    /**
+     * This variable is the index of the x264 preset of the encoder in {@link #PRESETS}. It is only changed by the
+     * encoder thread during the recording.
+     */
+    private volatile int presetIndex = 0;
+    /**
+     * This variable indicates the region of the screen that is recorded.
+     */
+    private CaptureRegionEnum captureRegion = CaptureRegionEnum.FULL_SCREEN;
+    /**
+     * This variable is the scale of the recorded video relative to the recorded region, e.g., 0.5 for half the width and
+     * height.
+     */
+    private double captureScale = 1;
+    /**
+     * This variable indicates whether the video is recorded in grayscale.
+     */
+    private boolean isGrayscale = false;
+    /**
+     * This variable is the IDE window recorded with {@link CaptureRegionEnum#IDE_WINDOW}.
+     */
+    private Window captureWindow;
+    /**
+     * This variable is the bounds of the IDE window on the first screen in pixels, updated when the window is moved or
+     * resized, or {@code null} if it is unknown.
+     */
+    private volatile Rectangle windowBounds;
+    private final ComponentListener windowListener = new ComponentAdapter() {
+        @Override
+        public void componentMoved(ComponentEvent e) {
+            updateWindowBounds();
+        }
+
+        @Override
+        public void componentResized(ComponentEvent e) {
+            updateWindowBounds();
+        }
+    };
+    /**
+     * These variables are the latency histograms of the stages of the frames, which are written to the
+     * {@code frame_latency.csv} file.
+     */
+    private final LatencyHistogram captureLatency = new LatencyHistogram("capture");
+    private final LatencyHistogram queueLatency = new LatencyHistogram("queue");
+    private final LatencyHistogram encodeLatency = new LatencyHistogram("encode");
+    private final LatencyHistogram totalLatency = new LatencyHistogram("total");
     boolean isRecording = false;
     /**
      * This variable indicates the current clip number.
      */
     private int clipNumber = 1;
     /**
-     * This variable indicates the current frame number.
+     * This variable is the clip being captured, or {@code null} while the recording is paused or stopped.
+     */
+    private volatile Clip currentClip;
+    /**
+     * This variable is the queue of the captured frames between the capture thread and the encoder thread.
      */
-    private int frameNumber = 0;
+    private FrameQueue<CapturedFrame> frameQueue;
+    /**
+     * These variables are the size of the video, which is fixed for the recording.
+     */
+    private int videoWidth;
+    private int videoHeight;
+    /**
+     * This variable is the number of the first segment written by the current encoder.
+     */
+    private int firstSegmentNumber = 1;
     private String dataOutputPath = "";
     private static ScreenRecorder instance = null;
 
@@ -50,9 +234,9 @@ public class ScreenRecorder {
     }
 
     /**
-     * Create the encoder using {@link FFmpegFrameGrabber} and {@link FFmpegFrameRecorder}.
+     * Create the grabber using {@link FFmpegFrameGrabber}.
      */
-    private void createEncoder() throws IOException {
+    private void createGrabber() throws IOException {
         // avfoundation for macOS, gdigrab for Windows, xcbgrab for Linux
         if (utils.OSDetector.isMac()) {
             grabber = new FFmpegFrameGrabber("1");
@@ -75,101 +259,451 @@ public class ScreenRecorder {
         grabber.setOption("offset_x", "0");
         grabber.setOption("offset_y", "0");
         grabber.start();
+    }
 
-        recorder = FrameRecorder.createDefault(dataOutputPath + "/screen_recording/clip_" + clipNumber + ".mp4", grabber.getImageWidth(), grabber.getImageHeight());
+    /**
+     * Create the encoder using {@link FFmpegFrameRecorder}. It writes the video with the segment muxer of FFmpeg, i.e.,
+     * into the files {@code segment_[k].mp4} of {@link #SEGMENT_DURATION} seconds each, numbered from
+     * {@link #firstSegmentNumber}.
+     *
+     * @param preset The x264 preset.
+     */
+    private void createEncoder(String preset) throws IOException {
+        recorder = FrameRecorder.createDefault(dataOutputPath + "/screen_recording/segment_%d.mp4", videoWidth, videoHeight);
+        recorder.setFormat("segment");
+        recorder.setOption("segment_format", "mp4");
+        recorder.setOption("segment_time", String.valueOf(SEGMENT_DURATION));
+        recorder.setOption("segment_start_number", String.valueOf(firstSegmentNumber));
+        recorder.setOption("reset_timestamps", "1");
         recorder.setFrameRate(frameRate);
         recorder.setVideoCodec(avcodec.AV_CODEC_ID_H264);
+        if (isGrayscale) {
+            recorder.setPixelFormat(avutil.AV_PIX_FMT_GRAY8);
+        }
+        configureEncoder(recorder, encoderProfile, preset, frameRate);
+        // every segment needs the parameter sets of the stream in its header
+        recorder.setVideoOption("flags", "+global_header");
         recorder.start();
     }
 
     /**
-     * Start recording the screen. Reset the clip number and invoke {@link #recordScreen()}.
+     * Configure the x264 options of an encoder for a profile.
+     * <ul>
+     *     <li>{@code LOW_CPU}: CRF 28 on a single thread, tuned for zero latency, so the encoder never buffers frames
+     *     for the lookahead.</li>
+     *     <li>{@code BALANCED}: CRF 23 (the default of x264) on two threads, tuned for zero latency.</li>
+     *     <li>{@code ARCHIVAL}: CRF 20 on all cores, tuned for still images, which suits the mostly static screen of
+     *     the IDE.</li>
+     * </ul>
+     * All profiles use a keyframe exactly every {@link #GOP_DURATION} seconds, without the extra keyframes at scene cuts,
+     * so the video can be seeked without a long decode, and the segments of the video start at the same frames.
+     *
+     * @param recorder  The encoder, before it is started.
+     * @param profile   The profile.
+     * @param preset    The x264 preset, which may be faster than the one of the profile if the encoder could not keep
+     *                  up.
+     * @param frameRate The frame rate.
+     */
+    static void configureEncoder(FrameRecorder recorder, EncoderProfileEnum profile, String preset, int frameRate) {
+        recorder.setVideoOption("preset", preset);
+        recorder.setGopSize(GOP_DURATION * frameRate);
+        recorder.setVideoOption("x264-params", "scenecut=0");
+        switch (profile) {
+            case LOW_CPU -> {
+                recorder.setVideoOption("crf", "28");
+                recorder.setVideoOption("threads", "1");
+                recorder.setVideoOption("tune", "zerolatency");
+            }
+            case BALANCED -> {
+                recorder.setVideoOption("crf", "23");
+                recorder.setVideoOption("threads", "2");
+                recorder.setVideoOption("tune", "zerolatency");
+            }
+            case ARCHIVAL -> {
+                recorder.setVideoOption("crf", "20");
+                recorder.setVideoOption("threads", "0");
+                recorder.setVideoOption("tune", "stillimage");
+            }
+        }
+    }
+
+    /**
+     * Get the x264 preset of a profile.
+     *
+     * @param profile The profile.
+     * @return The preset.
+     */
+    static String getPreset(EncoderProfileEnum profile) {
+        return switch (profile) {
+            case LOW_CPU -> "ultrafast";
+            case BALANCED -> "veryfast";
+            case ARCHIVAL -> "medium";
+        };
+    }
+
+    /**
+     * Start recording the screen. Reset the clip number, and start the capture and encoder threads with the first clip.
+     * The grabber and the encoder are kept until the recording stops, so pausing and resuming does not restart them.
      */
     public void startRecording() throws IOException {
         state = 1;
         clipNumber = 1;
+        firstSegmentNumber = 1;
         timeList.clear();
+        clips.clear();
+        presetIndex = Arrays.asList(PRESETS).indexOf(getPreset(encoderProfile));
+        for (LatencyHistogram histogram : getLatencyHistograms()) {
+            histogram.reset();
+        }
         isRecording = true;
         File file = new File(dataOutputPath + "/screen_recording/frames.csv");
         file.getParentFile().mkdirs();
         csvWriter = new CSVWriter(new FileWriter(file));
-        csvWriter.writeNext(new String[]{"timestamp", "frame_number", "clip_number"});
+        csvWriter.writeNext(new String[]{"timestamp", "frame_number", "clip_number", "segment_number", "x", "y", "width",
+                "height"});
+        if (captureRegion == CaptureRegionEnum.IDE_WINDOW && captureWindow != null) {
+            updateWindowBounds();
+            captureWindow.addComponentListener(windowListener);
+        }
         timeList.add(new String[]{String.valueOf(System.currentTimeMillis()), "Start", String.valueOf(clipNumber)});
         try {
             recordScreen();
-        } catch (AWTException | IOException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Stop recording the screen. Write the time list to the CSV file.
+     * Stop recording the screen. Wait for the last frame, and write the time list and the capture statistics to the CSV
+     * files.
      */
     public void stopRecording() throws IOException {
         state = 0;
         isRecording = false;
+        currentClip = null;
+        awaitRecordingThreads();
+        if (captureWindow != null) {
+            captureWindow.removeComponentListener(windowListener);
+        }
         timeList.add(new String[]{String.valueOf(System.currentTimeMillis()), "Stop", String.valueOf(clipNumber)});
         csvWriter.writeAll(timeList);
         csvWriter.close();
+        try (CSVWriter statsWriter = new CSVWriter(new FileWriter(dataOutputPath + "/screen_recording/capture_stats.csv"))) {
+            statsWriter.writeNext(new String[]{"clip_number", "target_fps", "achieved_fps", "frame_count",
+                    "missed_deadlines", "dropped_frames", "max_lateness", "duration", "preset"});
+            synchronized (clips) {
+                for (Clip clip : clips) {
+                    double achievedFrameRate = clip.duration > 0 ? clip.frameCount * 1000 / clip.duration : 0;
+                    statsWriter.writeNext(new String[]{String.valueOf(clip.number), String.valueOf(frameRate),
+                            String.format("%.2f", achievedFrameRate), String.valueOf(clip.frameCount),
+                            String.valueOf(clip.scheduler.getMissedCount()), String.valueOf(clip.droppedCount),
+                            String.format("%.1f", clip.scheduler.getMaxLateness()), String.format("%.0f", clip.duration),
+                            clip.preset});
+                    LOG.info("Screen recording of clip " + clip.number + ": " + String.format("%.2f", achievedFrameRate)
+                            + " of " + frameRate + " fps, " + clip.scheduler.getMissedCount() + " missed deadlines, "
+                            + clip.droppedCount + " dropped frames");
+                }
+            }
+        }
+        try (CSVWriter latencyWriter = new CSVWriter(new FileWriter(dataOutputPath + "/screen_recording/frame_latency.csv"))) {
+            latencyWriter.writeNext(new String[]{"stage", "upper_bound", "count"});
+            for (LatencyHistogram histogram : getLatencyHistograms()) {
+                latencyWriter.writeAll(histogram.toRows());
+                LOG.info("Screen recording latency of " + histogram);
+            }
+        }
     }
 
     /**
-     * Pause recording the screen. Write the time list to the CSV file and increment the clip number.
+     * Update the bounds of the IDE window, in the pixels of the first screen. It is called on the event dispatch thread.
+     */
+    private void updateWindowBounds() {
+        try {
+            GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment().
+                    getDefaultScreenDevice().getDefaultConfiguration();
+            Rectangle screenBounds = config.getBounds();
+            double scaleX = config.getDefaultTransform().getScaleX();
+            double scaleY = config.getDefaultTransform().getScaleY();
+            Point location = captureWindow.getLocationOnScreen();
+            windowBounds = new Rectangle((int) Math.round((location.x - screenBounds.x) * scaleX),
+                    (int) Math.round((location.y - screenBounds.y) * scaleY),
+                    (int) Math.round(captureWindow.getWidth() * scaleX), (int) Math.round(captureWindow.getHeight() * scaleY));
+        } catch (IllegalComponentStateException e) {
+            // the window is not showing
+            windowBounds = null;
+        }
+    }
+
+    /**
+     * Get the region of the screen to record. It is the bounds of the IDE window clipped to the screen, or the whole
+     * screen if the full screen is recorded or the window is not on the screen.
+     *
+     * @param width  The width of the screen in pixels.
+     * @param height The height of the screen in pixels.
+     * @return The region.
+     */
+    private Rectangle getCaptureRegion(int width, int height) {
+        Rectangle screen = new Rectangle(width, height);
+        Rectangle bounds = windowBounds;
+        if (captureRegion != CaptureRegionEnum.IDE_WINDOW || bounds == null) {
+            return screen;
+        }
+        Rectangle region = bounds.intersection(screen);
+        return region.isEmpty() ? screen : region;
+    }
+
+    private List<LatencyHistogram> getLatencyHistograms() {
+        return List.of(captureLatency, queueLatency, encodeLatency, totalLatency);
+    }
+
+    /**
+     * Pause recording the screen. The capture thread stops grabbing frames until the recording is resumed, while the
+     * encoder keeps running. Increment the clip number.
      */
     public void pauseRecording() throws IOException {
         state = 2;
         isRecording = false;
+        currentClip = null;
         timeList.add(new String[]{String.valueOf(System.currentTimeMillis()), "Pause", String.valueOf(clipNumber)});
         clipNumber++;
     }
 
     /**
-     * Resume recording the screen. Invoke {@link #recordScreen()}.
+     * Resume recording the screen. The grabber and the encoder are still running, so it only starts the next clip, whose
+     * frames continue the current segment of the video.
      */
     public void resumeRecording() {
         state = 1;
         isRecording = true;
         timeList.add(new String[]{String.valueOf(System.currentTimeMillis()), "Resume", String.valueOf(clipNumber)});
+        if (captureThread != null) {
+            currentClip = startClip();
+            LockSupport.unpark(captureThread);
+        }
+    }
+
+    /**
+     * Record the screen. Create the grabber and the encoder, and start a capture thread and an encoder thread connected
+     * by a {@link FrameQueue}, so that a slow encoding does not delay the capture. They run until the recording is
+     * stopped.
+     */
+    private void recordScreen() throws IOException {
+        createGrabber();
+        // the size of the video is fixed for the recording, and the region of each frame is scaled to it
+        Rectangle region = getCaptureRegion(grabber.getImageWidth(), grabber.getImageHeight());
+        videoWidth = Math.max(2, (int) Math.round(region.width * captureScale / 2) * 2);
+        videoHeight = Math.max(2, (int) Math.round(region.height * captureScale / 2) * 2);
+        String preset = PRESETS[presetIndex];
         try {
-            recordScreen();
-        } catch (AWTException | IOException e) {
-            e.printStackTrace();
+            createEncoder(preset);
+        } catch (IOException e) {
+            grabber.stop();
+            grabber.release();
+            throw e;
+        }
+        FrameGrabber recordingGrabber = grabber;
+        FrameQueue<CapturedFrame> recordingFrameQueue = new FrameQueue<>(FrameQueue.DEFAULT_CAPACITY, frameQueuePolicy,
+                CapturedFrame::new);
+        frameQueue = recordingFrameQueue;
+        currentClip = startClip();
+        captureThread = new Thread(() -> capture(recordingGrabber, recordingFrameQueue), "CodeGRITS Screen Capture");
+        encoderThread = new Thread(() -> encode(preset, recordingFrameQueue), "CodeGRITS Screen Encoder");
+        captureThread.setDaemon(true);
+        encoderThread.setDaemon(true);
+        encoderThread.start();
+        captureThread.start();
+    }
+
+    private Clip startClip() {
+        Clip clip = new Clip(clipNumber, PRESETS[presetIndex], frameRate);
+        clips.add(clip);
+        return clip;
+    }
+
+    /**
+     * Capture the frames of the recording into the frame queue, clip by clip, until the frame queue is closed. While the
+     * recording is paused, the thread waits without grabbing.
+     *
+     * @param grabber    The grabber of the recording.
+     * @param frameQueue The frame queue of the recording.
+     */
+    private void capture(FrameGrabber grabber, FrameQueue<CapturedFrame> frameQueue) {
+        try {
+            while (!frameQueue.isClosed()) {
+                Clip clip = currentClip;
+                if (clip == null || clip.isFinished) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                captureClip(clip, grabber, frameQueue);
+            }
+        } finally {
+            try {
+                grabber.stop();
+                grabber.release();
+            } catch (IOException e) {
+                LOG.warn("Failed to release the grabber of the screen recording", e);
+            }
         }
     }
 
     /**
-     * Record the screen. Use {@link Timer} to schedule the recording with the given frame rate.
+     * Capture the frames of a clip until it is paused or stopped. The frames are paced by the {@link CaptureScheduler} of
+     * the clip, and the timestamp of each frame is the time its capture started. A failed capture is logged and skipped,
+     * so it does not stop the recording unless the captures keep failing.
+     *
+     * @param clip       The clip.
+     * @param grabber    The grabber of the recording.
+     * @param frameQueue The frame queue of the recording.
      */
-    private void recordScreen() throws AWTException, IOException {
-        createEncoder();
-        frameNumber = 0;
-        Timer timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (!isRecording) {
-                    try {
-                        grabber.stop();
-                        recorder.stop();
-                        grabber.release();
-                        recorder.release();
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
+    private void captureClip(Clip clip, FrameGrabber grabber, FrameQueue<CapturedFrame> frameQueue) {
+        CaptureScheduler scheduler = clip.scheduler;
+        int failureCount = 0;
+        try {
+            while (currentClip == clip && !frameQueue.isClosed()) {
+                scheduler.awaitNextDeadline();
+                if (currentClip != clip) break;
+                long timestamp = System.currentTimeMillis();
+                long captureNanos = System.nanoTime();
+                try {
+                    Frame grabbed = grabber.grabFrame();
+                    CapturedFrame capturedFrame = frameQueue.acquire();
+                    capturedFrame.copyFrom(grabbed, getCaptureRegion(grabbed.imageWidth, grabbed.imageHeight));
+                    capturedFrame.clip = clip;
+                    capturedFrame.timestamp = timestamp;
+                    capturedFrame.captureNanos = captureNanos;
+                    capturedFrame.queueNanos = System.nanoTime();
+                    captureLatency.record(capturedFrame.queueNanos - captureNanos);
+                    if (frameQueue.offer(capturedFrame)) {
+                        clip.droppedCount++;
                     }
-                    timer.cancel();
-                } else {
-                    frameNumber++;
-                    timeList.add(new String[]{String.valueOf(System.currentTimeMillis()), String.valueOf(frameNumber), String.valueOf(clipNumber)});
-                    try {
-                        Frame frame = grabber.grabFrame();
-                        recorder.record(frame);
-                    } catch (FrameGrabber.Exception | FrameRecorder.Exception e) {
-                        throw new RuntimeException(e);
+                    failureCount = 0;
+                } catch (FrameGrabber.Exception e) {
+                    LOG.warn("Failed to capture a frame of clip " + clip.number, e);
+                    if (++failureCount == MAX_CONSECUTIVE_FAILURES) {
+                        LOG.warn("Abandoned clip " + clip.number + " after " + failureCount + " failed captures");
+                        break;
                     }
+                }
+            }
+        } finally {
+            clip.duration = scheduler.getElapsedTime();
+            clip.isFinished = true;
+        }
+    }
 
+    /**
+     * Encode the frames from the frame queue until the queue is closed and drained. Each encoded frame is added to the
+     * time list with the timestamp of its capture and the number of its segment. With
+     * {@link FrameQueuePolicyEnum#DEGRADE_PRESET}, if at least {@link #DEGRADE_DROPPED_FRAMES} frames were dropped
+     * during a segment, the encoder is restarted with the next faster preset when the segment ends, so a long clip does
+     * not keep dropping frames until it is paused.
+     *
+     * @param preset     The x264 preset of the encoder.
+     * @param frameQueue The frame queue of the recording.
+     */
+    private void encode(String preset, FrameQueue<CapturedFrame> frameQueue) {
+        String encoderPreset = preset;
+        int segmentFrames = SEGMENT_DURATION * frameRate;
+        long segmentDroppedStart = frameQueue.getDroppedCount();
+        int failureCount = 0;
+        try {
+            CapturedFrame capturedFrame;
+            while ((capturedFrame = frameQueue.take()) != null) {
+                long encodeNanos = System.nanoTime();
+                queueLatency.record(encodeNanos - capturedFrame.queueNanos);
+                Clip clip = capturedFrame.clip;
+                int frameNumber = recorder.getFrameNumber();
+                if (frameNumber > 0 && frameNumber % segmentFrames == 0) {
+                    // the segment is complete, so a restart does not close it early
+                    long segmentDroppedCount = frameQueue.getDroppedCount() - segmentDroppedStart;
+                    segmentDroppedStart += segmentDroppedCount;
+                    if (frameQueuePolicy == FrameQueuePolicyEnum.DEGRADE_PRESET
+                            && segmentDroppedCount >= DEGRADE_DROPPED_FRAMES && presetIndex < PRESETS.length - 1) {
+                        presetIndex++;
+                        encoderPreset = PRESETS[presetIndex];
+                        LOG.info(segmentDroppedCount + " frames were dropped during the last segment");
+                        restartEncoder(encoderPreset);
+                    }
                 }
+                clip.preset = encoderPreset;
+                try {
+                    // the frame number of the encoder is the presentation time of the frame in frames
+                    int segmentNumber = firstSegmentNumber + recorder.getFrameNumber() / (SEGMENT_DURATION * frameRate);
+                    recorder.record(capturedFrame.frame);
+                    long encodedNanos = System.nanoTime();
+                    encodeLatency.record(encodedNanos - encodeNanos);
+                    totalLatency.record(encodedNanos - capturedFrame.captureNanos);
+                    clip.frameCount++;
+                    Rectangle region = capturedFrame.region;
+                    timeList.add(new String[]{String.valueOf(capturedFrame.timestamp), String.valueOf(clip.frameCount),
+                            String.valueOf(clip.number), String.valueOf(segmentNumber), String.valueOf(region.x),
+                            String.valueOf(region.y), String.valueOf(region.width), String.valueOf(region.height)});
+                    failureCount = 0;
+                } catch (FrameRecorder.Exception e) {
+                    LOG.warn("Failed to encode a frame of clip " + clip.number, e);
+                    if (++failureCount == MAX_CONSECUTIVE_FAILURES) {
+                        LOG.warn("Stopped the screen recording after " + failureCount + " failed encodings");
+                        frameQueue.close();
+                    }
+                } finally {
+                    frameQueue.release(capturedFrame);
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to restart the encoder with the preset " + encoderPreset, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            frameQueue.close();
+            try {
+                recorder.stop();
+                recorder.release();
+            } catch (IOException e) {
+                LOG.warn("Failed to release the encoder of the screen recording", e);
             }
-        }, 0, 1000 / frameRate);
+        }
+    }
+
+    /**
+     * Restart the encoder with another preset at the end of a segment. A segment that is not complete yet is closed
+     * early, and the new encoder continues with the next segment number.
+     *
+     * @param preset The x264 preset.
+     * @throws IOException If the encoder cannot be restarted.
+     */
+    private void restartEncoder(String preset) throws IOException {
+        int frameCount = recorder.getFrameNumber();
+        recorder.stop();
+        recorder.release();
+        int segmentFrames = SEGMENT_DURATION * frameRate;
+        firstSegmentNumber += (frameCount + segmentFrames - 1) / segmentFrames;
+        createEncoder(preset);
+        LOG.info("Restarted the encoder with the preset " + preset + " at segment " + firstSegmentNumber);
+    }
+
+    /**
+     * Stop the capture and encoder threads, and wait for them to encode the queued frames and release the grabber and the
+     * encoder.
+     */
+    private void awaitRecordingThreads() {
+        if (frameQueue != null) {
+            frameQueue.close();
+        }
+        try {
+            if (captureThread != null) {
+                LockSupport.unpark(captureThread);
+                captureThread.join();
+            }
+            if (encoderThread != null) {
+                encoderThread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        captureThread = null;
+        encoderThread = null;
+        frameQueue = null;
     }
 
     /**
@@ -180,4 +714,67 @@ public class ScreenRecorder {
     public void setDataOutputPath(String dataOutputPath) {
         this.dataOutputPath = dataOutputPath;
     }
+
+    /**
+     * Set the frame rate of the screen recording.
+     *
+     * @param frameRate The frame rate.
+     */
+    public void setFrameRate(int frameRate) {
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * Set the region of the screen that is recorded.
+     *
+     * @param captureRegion The region.
+     */
+    public void setCaptureRegion(CaptureRegionEnum captureRegion) {
+        this.captureRegion = captureRegion;
+    }
+
+    /**
+     * Set the IDE window recorded with {@link CaptureRegionEnum#IDE_WINDOW}.
+     *
+     * @param captureWindow The window.
+     */
+    public void setCaptureWindow(Window captureWindow) {
+        this.captureWindow = captureWindow;
+    }
+
+    /**
+     * Set the scale of the recorded video relative to the recorded region.
+     *
+     * @param captureScale The scale, e.g., 0.5 for half the width and height.
+     */
+    public void setCaptureScale(double captureScale) {
+        this.captureScale = captureScale;
+    }
+
+    /**
+     * Set whether the video is recorded in grayscale.
+     *
+     * @param isGrayscale Whether the video is recorded in grayscale.
+     */
+    public void setGrayscale(boolean isGrayscale) {
+        this.isGrayscale = isGrayscale;
+    }
+
+    /**
+     * Set the profile of the encoder.
+     *
+     * @param encoderProfile The profile.
+     */
+    public void setEncoderProfile(EncoderProfileEnum encoderProfile) {
+        this.encoderProfile = encoderProfile;
+    }
+
+    /**
+     * Set the policy when the encoder cannot keep up with the capture.
+     *
+     * @param frameQueuePolicy The policy.
+     */
+    public void setFrameQueuePolicy(FrameQueuePolicyEnum frameQueuePolicy) {
+        this.frameQueuePolicy = frameQueuePolicy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package trackers;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class folds consecutive keystrokes into typing bursts. A burst is a run of keystrokes in the same file and line,
+ * where each keystroke is at the caret position left by the previous one. It ends when the caret moves elsewhere (e.g.,
+ * a backspace or a click), when the user pauses for longer than the max pause, when it reaches {@link #MAX_LENGTH}
+ * characters, or when {@link #flush()} is called. A burst that is idle for the max pause is emitted by an idle check,
+ * so that it is not held back until the next keystroke. A daemon thread times the idle checks and hands them to the
+ * idle check executor, e.g., the EDT, so that the bursts are emitted on the same thread as the keystrokes.
+ * <p>
+ * The timestamps are in milliseconds since the epoch, as given by {@link System#currentTimeMillis()}.
+ */
+public final class TypingBurstAggregator {
+    /**
+     * The default maximum pause between two keystrokes of a burst in milliseconds.
+     */
+    public static final long DEFAULT_MAX_PAUSE = 1000;
+    /**
+     * The maximum number of characters in a burst.
+     */
+    public static final int MAX_LENGTH = 1024;
+
+    /**
+     * This record is a typing burst.
+     *
+     * @param path        The path of the file.
+     * @param line        The line of the caret.
+     * @param startColumn The column of the caret before the first keystroke.
+     * @param endColumn   The column of the caret after the last keystroke.
+     * @param text        The typed characters.
+     * @param timestamps  The timestamps of the keystrokes.
+     */
+    public record Burst(String path, int line, int startColumn, int endColumn, String text, long[] timestamps) {
+        /**
+         * Get the timestamp of the first keystroke.
+         *
+         * @return The timestamp.
+         */
+        public long start() {
+            return timestamps[0];
+        }
+
+        /**
+         * Get the timestamp of the last keystroke.
+         *
+         * @return The timestamp.
+         */
+        public long end() {
+            return timestamps[timestamps.length - 1];
+        }
+    }
+
+    private final long maxPause;
+    private final Consumer<Burst> burstHandler;
+    private final Executor idleCheckExecutor;
+    private final ScheduledThreadPoolExecutor executor;
+
+    private String burstPath;
+    private int burstLine;
+    private int startColumn;
+    private int nextColumn;
+    private final StringBuilder text = new StringBuilder();
+    private long[] timestamps = new long[64];
+    private boolean isIdleCheckScheduled = false;
+
+    /**
+     * Create the aggregator with the default max pause. The idle checks run on the timing thread.
+     *
+     * @param burstHandler The handler of the bursts.
+     */
+    public TypingBurstAggregator(Consumer<Burst> burstHandler) {
+        this(DEFAULT_MAX_PAUSE, burstHandler, Runnable::run);
+    }
+
+    /**
+     * Create the aggregator.
+     *
+     * @param maxPause          The maximum pause between two keystrokes of a burst in milliseconds.
+     * @param burstHandler      The handler of the bursts.
+     * @param idleCheckExecutor The executor of the idle checks, i.e., the thread idle bursts are emitted on.
+     */
+    public TypingBurstAggregator(long maxPause, Consumer<Burst> burstHandler, Executor idleCheckExecutor) {
+        this.maxPause = maxPause;
+        this.burstHandler = burstHandler;
+        this.idleCheckExecutor = idleCheckExecutor;
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "CodeGRITS Typing Burst Aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Add a keystroke.
+     *
+     * @param path      The path of the file.
+     * @param line      The line of the caret before the keystroke.
+     * @param column    The column of the caret before the keystroke.
+     * @param timestamp The timestamp of the keystroke.
+     * @param character The typed character.
+     */
+    public synchronized void addKey(String path, int line, int column, long timestamp, char character) {
+        int length = text.length();
+        if (length > 0 && (!Objects.equals(path, burstPath) || line != burstLine || column != nextColumn
+                || timestamp - timestamps[length - 1] > maxPause || timestamp < timestamps[length - 1]
+                || length == MAX_LENGTH)) {
+            flush();
+            length = 0;
+        }
+        if (length == 0) {
+            burstPath = path;
+            burstLine = line;
+            startColumn = column;
+            scheduleIdleCheck(maxPause);
+        }
+        if (length == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, length * 2);
+        }
+        timestamps[length] = timestamp;
+        text.append(character);
+        nextColumn = column + 1;
+    }
+
+    /**
+     * End the current burst and emit it.
+     */
+    public synchronized void flush() {
+        int length = text.length();
+        if (length == 0) return;
+        Burst burst = new Burst(burstPath, burstLine, startColumn, nextColumn, text.toString(),
+                Arrays.copyOf(timestamps, length));
+        text.setLength(0);
+        burstHandler.accept(burst);
+    }
+
+    /**
+     * Emit the current burst and stop the thread.
+     */
+    public void close() {
+        flush();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedule a check of the current burst. Only one check is pending at a time; if the burst is still active when it
+     * runs, the check is scheduled again for the end of the max pause after the last keystroke.
+     *
+     * @param delay The delay in milliseconds.
+     */
+    private void scheduleIdleCheck(long delay) {
+        if (isIdleCheckScheduled || executor.isShutdown()) return;
+        isIdleCheckScheduled = true;
+        executor.schedule(() -> idleCheckExecutor.execute(this::checkIdle), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void checkIdle() {
+        isIdleCheckScheduled = false;
+        int length = text.length();
+        if (length == 0) return;
+        long idle = System.currentTimeMillis() - timestamps[length - 1];
+        if (idle >= maxPause) {
+            flush();
+        } else {
+            scheduleIdleCheck(maxPause - idle);
+        }
+    }
+}
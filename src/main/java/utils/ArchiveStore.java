@@ -0,0 +1,254 @@
+package utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This class is the content-addressed store of the archived files. Each distinct content is stored once, in the file
+ * {@code <hash>.blob} named by the SHA-256 hash of the content. A new version of a path is stored as a delta against
+ * the previous version of the same path (the common prefix and suffix are kept, and the changed middle is stored),
+ * unless the delta is not much smaller than the content or the delta chain is too deep. All blobs are compressed with
+ * Deflate.
+ * <p>
+ * An archived version can be reconstructed with {@link #read(Path, String)}, or from the command line with
+ * {@code java utils.ArchiveStore <archives directory> <hash> [output file]}.
+ */
+public final class ArchiveStore {
+    /**
+     * The storage of a content that is stored in full.
+     */
+    public static final String FULL = "full";
+    /**
+     * The storage of a content that is stored as a delta against the previous version of the same path.
+     */
+    public static final String DELTA = "delta";
+    /**
+     * The storage of a content that was already in the store.
+     */
+    public static final String DUPLICATE = "duplicate";
+    /**
+     * The maximum number of deltas applied to reconstruct a content. A deeper chain is cut by storing the content in
+     * full.
+     */
+    public static final int MAX_CHAIN_DEPTH = 32;
+    private static final String BLOB_EXTENSION = ".blob";
+    private static final byte KIND_FULL = 0;
+    private static final byte KIND_DELTA = 1;
+
+    /**
+     * This record is the result of storing a content.
+     *
+     * @param hash    The SHA-256 hash of the content, in hexadecimal.
+     * @param storage How the content is stored, i.e., {@link #FULL}, {@link #DELTA} or {@link #DUPLICATE}.
+     */
+    public record Result(String hash, String storage) {
+    }
+
+    private final Path directory;
+    /**
+     * The depth of the delta chain of each stored hash. A full blob has depth 0.
+     */
+    private final Map<String, Integer> chainDepths = new HashMap<>();
+    /**
+     * The hash and the content of the last version of each path.
+     */
+    private final Map<String, String> lastHashes = new HashMap<>();
+    private final Map<String, byte[]> lastContents = new HashMap<>();
+
+    /**
+     * Create the store in the directory, creating the directory if needed.
+     *
+     * @param directoryPath The path of the directory.
+     * @throws IOException If the directory cannot be created.
+     */
+    public ArchiveStore(String directoryPath) throws IOException {
+        directory = Paths.get(directoryPath);
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Store a version of the path.
+     *
+     * @param path    The path of the file, used to find the previous version to diff against.
+     * @param content The content of the file.
+     * @return The hash of the content and how it is stored.
+     * @throws IOException If the blob cannot be written.
+     */
+    public synchronized Result store(String path, byte[] content) throws IOException {
+        String hash = hash(content);
+        String storage;
+        if (chainDepths.containsKey(hash) || Files.exists(blobPath(directory, hash))) {
+            // The depth of a blob written by an earlier store is unknown, so it is never used as a base.
+            chainDepths.putIfAbsent(hash, MAX_CHAIN_DEPTH);
+            storage = DUPLICATE;
+        } else {
+            String baseHash = lastHashes.get(path);
+            byte[] base = lastContents.get(path);
+            storage = FULL;
+            if (baseHash != null && chainDepths.getOrDefault(baseHash, MAX_CHAIN_DEPTH) < MAX_CHAIN_DEPTH) {
+                int prefixLength = commonPrefixLength(base, content);
+                int suffixLength = commonSuffixLength(base, content, prefixLength);
+                int insertedLength = content.length - prefixLength - suffixLength;
+                if (insertedLength < content.length / 2) {
+                    writeBlob(hash, output -> {
+                        output.writeByte(KIND_DELTA);
+                        output.writeUTF(baseHash);
+                        output.writeInt(prefixLength);
+                        output.writeInt(suffixLength);
+                        output.writeInt(insertedLength);
+                        output.write(content, prefixLength, insertedLength);
+                    });
+                    chainDepths.put(hash, chainDepths.get(baseHash) + 1);
+                    storage = DELTA;
+                }
+            }
+            if (storage.equals(FULL)) {
+                writeBlob(hash, output -> {
+                    output.writeByte(KIND_FULL);
+                    output.write(content);
+                });
+                chainDepths.put(hash, 0);
+            }
+        }
+        lastHashes.put(path, hash);
+        lastContents.put(path, content);
+        return new Result(hash, storage);
+    }
+
+    private interface BlobWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    /**
+     * Write the blob to a temporary file first, so that a blob file is always complete.
+     */
+    private void writeBlob(String hash, BlobWriter blobWriter) throws IOException {
+        Path blobPath = blobPath(directory, hash);
+        Path temporaryPath = blobPath.resolveSibling(blobPath.getFileName() + ".tmp");
+        try (OutputStream fileOutput = Files.newOutputStream(temporaryPath);
+             DataOutputStream output = new DataOutputStream(new DeflaterOutputStream(fileOutput))) {
+            blobWriter.write(output);
+        }
+        Files.move(temporaryPath, blobPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reconstruct the archived content of the hash.
+     *
+     * @param directory The directory of the store.
+     * @param hash      The hash of the content.
+     * @return The content.
+     * @throws IOException If a blob is missing or corrupted.
+     */
+    public static byte[] read(Path directory, String hash) throws IOException {
+        List<byte[]> deltas = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+        String currentHash = hash;
+        byte[] content;
+        while (true) {
+            try (InputStream fileInput = Files.newInputStream(blobPath(directory, currentHash));
+                 DataInputStream input = new DataInputStream(new InflaterInputStream(fileInput))) {
+                byte kind = input.readByte();
+                if (kind == KIND_FULL) {
+                    content = input.readAllBytes();
+                    break;
+                }
+                if (kind != KIND_DELTA || deltas.size() > MAX_CHAIN_DEPTH) {
+                    throw new IOException("Corrupted archive blob " + currentHash);
+                }
+                currentHash = input.readUTF();
+                int prefixLength = input.readInt();
+                int suffixLength = input.readInt();
+                byte[] inserted = new byte[input.readInt()];
+                input.readFully(inserted);
+                deltas.add(inserted);
+                ranges.add(new int[]{prefixLength, suffixLength});
+            }
+        }
+        for (int i = deltas.size() - 1; i >= 0; i--) {
+            int prefixLength = ranges.get(i)[0];
+            int suffixLength = ranges.get(i)[1];
+            byte[] inserted = deltas.get(i);
+            ByteArrayOutputStream result = new ByteArrayOutputStream(prefixLength + inserted.length + suffixLength);
+            result.write(content, 0, prefixLength);
+            result.write(inserted);
+            result.write(content, content.length - suffixLength, suffixLength);
+            content = result.toByteArray();
+        }
+        if (!hash(content).equals(hash)) {
+            throw new IOException("Archive blob " + hash + " does not match its content");
+        }
+        return content;
+    }
+
+    /**
+     * Reconstruct an archived content from the command line.
+     *
+     * @param args The archives directory, the hash, and optionally the output file. Without the output file, the
+     *             content is written to the standard output.
+     * @throws IOException If the content cannot be reconstructed or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java utils.ArchiveStore <archives directory> <hash> [output file]");
+            System.exit(1);
+        }
+        byte[] content = read(Paths.get(args[0]), args[1]);
+        if (args.length > 2) {
+            Files.write(Paths.get(args[2]), content);
+        } else {
+            System.out.write(content);
+            System.out.flush();
+        }
+    }
+
+    private static Path blobPath(Path directory, String hash) {
+        return directory.resolve(hash + BLOB_EXTENSION);
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int commonPrefixLength(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < length && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Get the length of the common suffix that does not overlap the common prefix in either array.
+     */
+    private static int commonSuffixLength(byte[] a, byte[] b, int prefixLength) {
+        int length = Math.min(a.length, b.length) - prefixLength;
+        int i = 0;
+        while (i < length && a[a.length - 1 - i] == b[b.length - 1 - i]) {
+            i++;
+        }
+        return i;
+    }
+}
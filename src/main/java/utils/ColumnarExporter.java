@@ -0,0 +1,110 @@
+package utils;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * This class is used to convert a session directory written by {@link ColumnarWriter} (e.g., {@code eye_tracking/})
+ * into the XML file it replaces (e.g., {@code eye_tracking.xml}), with the same layout as the XML output mode.
+ * <p>
+ * It can be run from the command line with
+ * {@code java utils.ColumnarExporter <columnar directory> [output file]}.
+ */
+public class ColumnarExporter {
+    /**
+     * Convert the columnar directory into the XML file.
+     *
+     * @param directory The columnar directory.
+     * @param filePath  The path of the XML file.
+     * @throws IOException If the directory cannot be read or the XML file cannot be written.
+     */
+    public static void export(Path directory, String filePath) throws IOException {
+        JsonObject manifest;
+        try (Reader reader = Files.newBufferedReader(directory.resolve(ColumnarWriter.MANIFEST), StandardCharsets.UTF_8)) {
+            manifest = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+        Document document;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+        try (Writer fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath), StandardCharsets.UTF_8))) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(fileWriter);
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement(manifest.get("root").getAsString());
+            Path headerFile = directory.resolve(ColumnarWriter.HEADER + ColumnarWriter.COLUMN_EXTENSION);
+            if (Files.exists(headerFile)) {
+                try (ColumnarReader reader = new ColumnarReader(headerFile)) {
+                    while (reader.nextBlock()) {
+                        for (Element element : reader.getElements(document)) {
+                            XMLWriter.writeElement(writer, element, 1);
+                        }
+                    }
+                }
+            }
+            for (JsonElement section : manifest.getAsJsonArray("sections")) {
+                String sectionName = section.getAsString();
+                XMLWriter.writeIndent(writer, 1);
+                try (ColumnarReader reader = new ColumnarReader(
+                        directory.resolve(sectionName + ColumnarWriter.COLUMN_EXTENSION))) {
+                    if (!reader.nextBlock()) {
+                        writer.writeEmptyElement(sectionName);
+                        continue;
+                    }
+                    writer.writeStartElement(sectionName);
+                    do {
+                        for (Element element : reader.getElements(document)) {
+                            XMLWriter.writeElement(writer, element, 2);
+                        }
+                    } while (reader.nextBlock());
+                }
+                XMLWriter.writeIndent(writer, 1);
+                writer.writeEndElement();
+            }
+            XMLWriter.writeIndent(writer, 0);
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Convert a columnar directory from the command line.
+     *
+     * @param args The columnar directory, and optionally the output file. Without the output file, the XML file is
+     *             written next to the directory, e.g., {@code eye_tracking/} to {@code eye_tracking.xml}.
+     * @throws IOException If the directory cannot be converted.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java utils.ColumnarExporter <columnar directory> [output file]");
+            System.exit(1);
+        }
+        Path directory = Paths.get(args[0]).toAbsolutePath().normalize();
+        String filePath = args.length > 1 ? args[1] : directory + ".xml";
+        export(directory, filePath);
+    }
+}
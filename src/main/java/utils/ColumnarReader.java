@@ -0,0 +1,484 @@
+package utils;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * This class is used to read a {@code .col} file written by {@link ColumnarWriter}, one block at a time. The columns of
+ * a block are only decoded when they are requested, so that scanning a few columns (e.g., the timestamps and the
+ * gaze points) skips the decoding of all the others. A truncated last block, e.g., after an IDE crash, is ignored.
+ * <p>
+ * Example of scanning the lines looked at:
+ * <pre>{@code
+ * try (ColumnarReader reader = new ColumnarReader(Path.of("eye_tracking/gazes.col"))) {
+ *     while (reader.nextBlock()) {
+ *         long[] lines = reader.getLongs("gaze/location@line");
+ *     }
+ * }
+ * }</pre>
+ */
+public class ColumnarReader implements Closeable {
+    /**
+     * This record is the entry of a block in the {@code .idx} block index.
+     *
+     * @param offset       The offset of the block in the {@code .col} file.
+     * @param rowCount     The number of rows in the block.
+     * @param minTimestamp The minimum timestamp of the rows, or {@link Long#MAX_VALUE} if no row has a timestamp.
+     * @param maxTimestamp The maximum timestamp of the rows, or {@link Long#MIN_VALUE} if no row has a timestamp.
+     */
+    public record BlockInfo(long offset, int rowCount, long minTimestamp, long maxTimestamp) {
+    }
+
+    /**
+     * The location of the data of a column in the current block.
+     */
+    private record ColumnData(byte type, int count, int offset, int length) {
+    }
+
+    private final DataInputStream input;
+    private final List<String> strings = new ArrayList<>();
+    private final List<int[]> shapes = new ArrayList<>();
+    /**
+     * The ids of the columns of the attribute values of each shape, in depth-first order.
+     */
+    private final List<int[]> shapeColumns = new ArrayList<>();
+    private final List<String> columnNames = new ArrayList<>();
+    private final Map<String, Integer> columnIds = new HashMap<>();
+    private byte[] block;
+    private int rowCount;
+    private int[] rowShapes = new int[0];
+    private final Map<Integer, ColumnData> columns = new HashMap<>();
+
+    /**
+     * Open the file and check its header.
+     *
+     * @param file The path of the {@code .col} file.
+     * @throws IOException If the file cannot be read or is not a columnar file.
+     */
+    public ColumnarReader(Path file) throws IOException {
+        input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        byte[] magic = new byte[ColumnarWriter.MAGIC.length];
+        try {
+            input.readFully(magic);
+            if (!Arrays.equals(magic, ColumnarWriter.MAGIC)) {
+                throw new IOException("Not a columnar file: " + file);
+            }
+            int version = input.readUnsignedByte();
+            if (version != ColumnarWriter.VERSION) {
+                throw new IOException("Unsupported columnar file version " + version + ": " + file);
+            }
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read the next block.
+     *
+     * @return {@code true} if a block is read, {@code false} at the end of the file.
+     * @throws IOException If the block is corrupted.
+     */
+    public boolean nextBlock() throws IOException {
+        byte[] nextBlock;
+        int checksum;
+        try {
+            int length = input.readInt();
+            nextBlock = new byte[length];
+            input.readFully(nextBlock);
+            checksum = input.readInt();
+        } catch (EOFException e) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(nextBlock);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Corrupted columnar block");
+        }
+        block = nextBlock;
+        columns.clear();
+        DataInputStream blockInput = new DataInputStream(new ByteArrayInputStream(block));
+        rowCount = blockInput.readInt();
+        int stringCount = readCount(blockInput);
+        for (int i = 0; i < stringCount; i++) {
+            strings.add(readString(blockInput));
+        }
+        int shapeCount = readCount(blockInput);
+        for (int i = 0; i < shapeCount; i++) {
+            int[] tokens = new int[readCount(blockInput)];
+            for (int j = 0; j < tokens.length; j++) {
+                tokens[j] = readCount(blockInput);
+            }
+            shapes.add(tokens);
+            shapeColumns.add(null);
+        }
+        int columnCount = readCount(blockInput);
+        for (int i = 0; i < columnCount; i++) {
+            String name = readString(blockInput);
+            columnIds.put(name, columnNames.size());
+            columnNames.add(name);
+        }
+        readCount(blockInput);
+        if (rowShapes.length < rowCount) {
+            rowShapes = new int[rowCount];
+        }
+        for (int i = 0; i < rowCount; i++) {
+            rowShapes[i] = readCount(blockInput);
+        }
+        int presentColumnCount = readCount(blockInput);
+        for (int i = 0; i < presentColumnCount; i++) {
+            int columnId = readCount(blockInput);
+            byte type = blockInput.readByte();
+            int count = readCount(blockInput);
+            int length = readCount(blockInput);
+            int offset = block.length - blockInput.available();
+            columns.put(columnId, new ColumnData(type, count, offset, length));
+            blockInput.skipNBytes(length);
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of rows, i.e., elements, in the current block.
+     *
+     * @return The number of rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Get the names of the columns read so far, e.g., {@code gaze@timestamp} or {@code gaze/location@line}.
+     *
+     * @return The names of the columns.
+     */
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(columnNames);
+    }
+
+    /**
+     * Get the values of the column in the current block as longs. Values that are not integers are truncated, and
+     * strings that are not numbers are 0.
+     *
+     * @param columnName The name of the column.
+     * @return The values, in the order of the rows, or an empty array if the block has no such column.
+     */
+    public long[] getLongs(String columnName) throws IOException {
+        ColumnData data = getColumnData(columnName);
+        if (data == null) return new long[0];
+        long[] values = new long[data.count];
+        DataInputStream columnInput = columnInput(data);
+        switch (data.type) {
+            case ColumnarWriter.TYPE_LONG -> {
+                long previous = 0;
+                for (int i = 0; i < values.length; i++) {
+                    previous += ColumnarWriter.unzigzag(ColumnarWriter.readVarLong(columnInput));
+                    values[i] = previous;
+                }
+            }
+            case ColumnarWriter.TYPE_DOUBLE, ColumnarWriter.TYPE_SPELLED_DOUBLE -> {
+                if (data.type == ColumnarWriter.TYPE_SPELLED_DOUBLE) {
+                    readString(columnInput);
+                }
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (long) columnInput.readDouble();
+                }
+            }
+            default -> {
+                String[] strings = decodeStrings(data, columnInput);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = (long) parseDouble(strings[i]);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get the values of the column in the current block as doubles. Strings that are not numbers are {@code NaN}.
+     *
+     * @param columnName The name of the column.
+     * @return The values, in the order of the rows, or an empty array if the block has no such column.
+     */
+    public double[] getDoubles(String columnName) throws IOException {
+        ColumnData data = getColumnData(columnName);
+        if (data == null) return new double[0];
+        double[] values = new double[data.count];
+        DataInputStream columnInput = columnInput(data);
+        switch (data.type) {
+            case ColumnarWriter.TYPE_LONG -> {
+                long previous = 0;
+                for (int i = 0; i < values.length; i++) {
+                    previous += ColumnarWriter.unzigzag(ColumnarWriter.readVarLong(columnInput));
+                    values[i] = previous;
+                }
+            }
+            case ColumnarWriter.TYPE_DOUBLE, ColumnarWriter.TYPE_SPELLED_DOUBLE -> {
+                if (data.type == ColumnarWriter.TYPE_SPELLED_DOUBLE) {
+                    readString(columnInput);
+                }
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = columnInput.readDouble();
+                }
+            }
+            default -> {
+                String[] strings = decodeStrings(data, columnInput);
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = parseDouble(strings[i]);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get the values of the column in the current block as the strings written in the XML file.
+     *
+     * @param columnName The name of the column.
+     * @return The values, in the order of the rows, or an empty array if the block has no such column.
+     */
+    public String[] getStrings(String columnName) throws IOException {
+        Integer columnId = columnIds.get(columnName);
+        return columnId == null ? new String[0] : getStrings(columnId);
+    }
+
+    private String[] getStrings(int columnId) throws IOException {
+        ColumnData data = columns.get(columnId);
+        if (data == null) return new String[0];
+        DataInputStream columnInput = columnInput(data);
+        String[] values = new String[data.count];
+        switch (data.type) {
+            case ColumnarWriter.TYPE_LONG -> {
+                long previous = 0;
+                for (int i = 0; i < values.length; i++) {
+                    previous += ColumnarWriter.unzigzag(ColumnarWriter.readVarLong(columnInput));
+                    values[i] = Long.toString(previous);
+                }
+            }
+            case ColumnarWriter.TYPE_DOUBLE -> {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = Double.toString(columnInput.readDouble());
+                }
+            }
+            case ColumnarWriter.TYPE_SPELLED_DOUBLE -> {
+                String nanText = readString(columnInput);
+                for (int i = 0; i < values.length; i++) {
+                    double value = columnInput.readDouble();
+                    values[i] = Double.isNaN(value) ? nanText : Double.toString(value);
+                }
+                int spelledCount = readCount(columnInput);
+                int row = 0;
+                for (int i = 0; i < spelledCount; i++) {
+                    row += readCount(columnInput);
+                    if (row >= values.length) {
+                        throw new IOException("Corrupted columnar block: spelled value out of "
+                                + columnNames.get(columnId));
+                    }
+                    values[row] = readString(columnInput);
+                }
+            }
+            default -> values = decodeStrings(data, columnInput);
+        }
+        return values;
+    }
+
+    /**
+     * Rebuild the elements of the current block.
+     *
+     * @param document The XML document for creating the elements.
+     * @return The elements, in the order they were written.
+     */
+    public List<Element> getElements(Document document) throws IOException {
+        Map<Integer, String[]> values = new HashMap<>();
+        Map<Integer, Integer> cursors = new HashMap<>();
+        for (int columnId : columns.keySet()) {
+            values.put(columnId, getStrings(columnId));
+            cursors.put(columnId, 0);
+        }
+        List<Element> elements = new ArrayList<>(rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            int shapeId = rowShapes[row];
+            int[] valueColumns = getShapeColumns(shapeId);
+            ElementBuilder builder = new ElementBuilder(document, shapes.get(shapeId), valueColumns, values, cursors);
+            elements.add(builder.build());
+        }
+        return elements;
+    }
+
+    /**
+     * The builder of an element from its shape tokens and the values of its columns.
+     */
+    private final class ElementBuilder {
+        private final Document document;
+        private final int[] tokens;
+        private final int[] valueColumns;
+        private final Map<Integer, String[]> values;
+        private final Map<Integer, Integer> cursors;
+        private int tokenIndex = 0;
+        private int valueIndex = 0;
+
+        ElementBuilder(Document document, int[] tokens, int[] valueColumns, Map<Integer, String[]> values,
+                       Map<Integer, Integer> cursors) {
+            this.document = document;
+            this.tokens = tokens;
+            this.valueColumns = valueColumns;
+            this.values = values;
+            this.cursors = cursors;
+        }
+
+        Element build() throws IOException {
+            Element element = document.createElement(strings.get(tokens[tokenIndex++] - 1));
+            int attributeCount = tokens[tokenIndex++];
+            for (int i = 0; i < attributeCount; i++) {
+                element.setAttribute(strings.get(tokens[tokenIndex++]), nextValue());
+            }
+            int childCount = tokens[tokenIndex++];
+            for (int i = 0; i < childCount; i++) {
+                if (tokens[tokenIndex] == ColumnarWriter.TEXT_TOKEN) {
+                    tokenIndex++;
+                    element.appendChild(document.createTextNode(nextValue()));
+                } else {
+                    element.appendChild(build());
+                }
+            }
+            return element;
+        }
+
+        private String nextValue() throws IOException {
+            int columnId = valueColumns[valueIndex++];
+            String[] columnValues = values.get(columnId);
+            int cursor = cursors.get(columnId);
+            if (columnValues == null || cursor >= columnValues.length) {
+                throw new IOException("Corrupted columnar block: missing value of " + columnNames.get(columnId));
+            }
+            cursors.put(columnId, cursor + 1);
+            return columnValues[cursor];
+        }
+    }
+
+    /**
+     * Get the ids of the columns of the attribute values of the shape, in depth-first order.
+     */
+    private int[] getShapeColumns(int shapeId) throws IOException {
+        int[] valueColumns = shapeColumns.get(shapeId);
+        if (valueColumns == null) {
+            List<Integer> ids = new ArrayList<>();
+            int[] tokens = shapes.get(shapeId);
+            collectShapeColumns(tokens, 0, "", ids);
+            valueColumns = ids.stream().mapToInt(Integer::intValue).toArray();
+            shapeColumns.set(shapeId, valueColumns);
+        }
+        return valueColumns;
+    }
+
+    /**
+     * Collect the column ids of the element starting at the token index.
+     *
+     * @return The token index after the element.
+     */
+    private int collectShapeColumns(int[] tokens, int index, String parentPath, List<Integer> ids) throws IOException {
+        String tag = strings.get(tokens[index++] - 1);
+        String path = parentPath.isEmpty() ? tag : parentPath + "/" + tag;
+        int attributeCount = tokens[index++];
+        for (int i = 0; i < attributeCount; i++) {
+            ids.add(columnId(path + "@" + strings.get(tokens[index++])));
+        }
+        int childCount = tokens[index++];
+        for (int i = 0; i < childCount; i++) {
+            if (tokens[index] == ColumnarWriter.TEXT_TOKEN) {
+                index++;
+                ids.add(columnId(path + "#text"));
+            } else {
+                index = collectShapeColumns(tokens, index, path, ids);
+            }
+        }
+        return index;
+    }
+
+    private int columnId(String columnName) throws IOException {
+        Integer columnId = columnIds.get(columnName);
+        if (columnId == null) {
+            throw new IOException("Corrupted columnar file: unknown column " + columnName);
+        }
+        return columnId;
+    }
+
+    private ColumnData getColumnData(String columnName) {
+        Integer columnId = columnIds.get(columnName);
+        return columnId == null ? null : columns.get(columnId);
+    }
+
+    private DataInputStream columnInput(ColumnData data) {
+        return new DataInputStream(new ByteArrayInputStream(block, data.offset, data.length));
+    }
+
+    private String[] decodeStrings(ColumnData data, DataInputStream columnInput) throws IOException {
+        String[] values = new String[data.count];
+        for (int i = 0; i < values.length; i++) {
+            int id = readCount(columnInput) - 1;
+            values[i] = id < 0 ? readString(columnInput) : strings.get(id);
+        }
+        return values;
+    }
+
+    private static double parseDouble(String value) {
+        try {
+            return ColumnarWriter.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static int readCount(DataInputStream input) throws IOException {
+        return (int) ColumnarWriter.readVarLong(input);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[readCount(input)];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the block index of a {@code .col} file, to find the blocks of a time range without reading the file.
+     *
+     * @param indexFile The path of the {@code .idx} file.
+     * @return The entries of the blocks, in the order of the file.
+     * @throws IOException If the index cannot be read.
+     */
+    public static List<BlockInfo> readBlockIndex(Path indexFile) throws IOException {
+        List<BlockInfo> blocks = new ArrayList<>();
+        try (DataInputStream indexInput = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            while (true) {
+                try {
+                    blocks.add(new BlockInfo(indexInput.readLong(), indexInput.readInt(), indexInput.readLong(),
+                            indexInput.readLong()));
+                } catch (EOFException e) {
+                    return blocks;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
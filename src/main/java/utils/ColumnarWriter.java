@@ -0,0 +1,625 @@
+package utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * This class is used to write a tracking session in the columnar binary format instead of an XML file. Each section
+ * (e.g., {@code <gazes>}, {@code <mouses>}) is written to its own {@code <section>.col} file, and the header elements
+ * (e.g., {@code <environment>}) to {@code header.col}. The root name and the order of the sections are kept in
+ * {@code manifest.json}, so that {@link ColumnarExporter} can convert the directory back to the XML file.
+ * <p>
+ * The elements of a file are buffered into blocks of {@link #BLOCK_SIZE} rows. In a block, every attribute path (e.g.,
+ * {@code gaze/location@line}) is a column, and its values are stored together: integers as zigzag varint deltas,
+ * decimals as raw doubles with the text of the few values formatted otherwise than {@link Double#toString(double)}
+ * (e.g., Python's {@code nan} and {@code 1e-05}), and other strings as ids into the dictionary of the file. The
+ * structure of each element, i.e., its tags and attribute names, is stored once as a shape, and every row only refers
+ * to its shape. After each block, its offset, row count and timestamp range are appended to the
+ * {@code <section>.idx} block index, so that a reader can skip the blocks out of a time range. See
+ * {@link ColumnarReader} for reading the files.
+ */
+public class ColumnarWriter {
+    /**
+     * The magic bytes at the start of a {@code .col} file, followed by the {@link #VERSION}.
+     */
+    static final byte[] MAGIC = {'C', 'G', 'C', 'O', 'L'};
+    static final int VERSION = 1;
+    static final String COLUMN_EXTENSION = ".col";
+    static final String INDEX_EXTENSION = ".idx";
+    static final String HEADER = "header";
+    static final String MANIFEST = "manifest.json";
+    /**
+     * The number of rows in a block. A block is written to the disk once it is full.
+     */
+    public static final int BLOCK_SIZE = 4096;
+    /**
+     * The column types of a block.
+     */
+    static final byte TYPE_LONG = 0;
+    static final byte TYPE_DOUBLE = 1;
+    static final byte TYPE_STRING = 2;
+    /**
+     * The type of a column of decimals, some of which are not formatted like {@link Double#toString(double)}. The
+     * doubles are preceded by the spelling of {@code NaN} in the column, and followed by the text of the other values
+     * that {@link Double#toString(double)} does not reproduce, with their row deltas.
+     */
+    static final byte TYPE_SPELLED_DOUBLE = 3;
+    /**
+     * The shape token of a text node. An element token is its tag id plus one.
+     */
+    static final int TEXT_TOKEN = 0;
+    /**
+     * The string values longer than this are stored inline instead of in the dictionary, as they rarely repeat.
+     */
+    private static final int MAX_DICTIONARY_VALUE_LENGTH = 256;
+    /**
+     * The maximum number of string values in the dictionary of a file, which bounds the memory of a long session.
+     */
+    private static final int MAX_DICTIONARY_VALUES = 1 << 16;
+    /**
+     * The maximum share of the values of a decimal column whose text is stored besides the double. A column with more
+     * of them is stored as strings.
+     */
+    private static final double MAX_SPELLED_VALUE_SHARE = 0.25;
+    /**
+     * The attributes of the root element whose values are recorded as the timestamp range of a block.
+     */
+    private static final List<String> TIMESTAMP_ATTRIBUTES = List.of("timestamp", "start");
+
+    private final Map<String, FamilyWriter> families = new LinkedHashMap<>();
+    private final File directory;
+    private boolean isClosed = false;
+
+    /**
+     * Create the directory, the manifest, and the files of all the sections.
+     *
+     * @param directoryPath The path of the directory.
+     * @param rootName      The name of the root element of the XML file.
+     * @param sectionNames  The names of the sections, in the order they appear in the XML file.
+     */
+    public ColumnarWriter(String directoryPath, String rootName, List<String> sectionNames) throws IOException {
+        directory = new File(directoryPath);
+        directory.mkdirs();
+        JsonObject manifest = new JsonObject();
+        manifest.addProperty("version", VERSION);
+        manifest.addProperty("root", rootName);
+        JsonArray sections = new JsonArray();
+        sectionNames.forEach(sections::add);
+        manifest.add("sections", sections);
+        try (FileWriter fileWriter = new FileWriter(new File(directory, MANIFEST), StandardCharsets.UTF_8)) {
+            fileWriter.write(new Gson().toJson(manifest));
+        }
+        for (String sectionName : sectionNames) {
+            families.put(sectionName, new FamilyWriter(directory, sectionName));
+        }
+    }
+
+    /**
+     * Append the complete element to the given section. Elements written after {@link #close} are ignored.
+     *
+     * @param sectionName The name of the section.
+     * @param element     The XML element.
+     */
+    public synchronized void writeElement(String sectionName, Element element) throws IOException {
+        if (isClosed) return;
+        FamilyWriter family = families.get(sectionName);
+        if (family == null) {
+            throw new IllegalArgumentException("Unknown section: " + sectionName);
+        }
+        family.writeElement(element);
+    }
+
+    /**
+     * Write the header elements and the last blocks of all the sections, and close the files.
+     *
+     * @param headerElements The elements written before the sections in the XML file (e.g., {@code <environment>}).
+     */
+    public synchronized void close(List<Element> headerElements) throws IOException {
+        if (isClosed) return;
+        isClosed = true;
+        FamilyWriter header = new FamilyWriter(directory, HEADER);
+        for (Element headerElement : headerElements) {
+            header.writeElement(headerElement);
+        }
+        header.close();
+        for (FamilyWriter family : families.values()) {
+            family.close();
+        }
+    }
+
+    /**
+     * The shape of an element, i.e., its tags, attribute names and sub-elements without the values.
+     */
+    private record Shape(int[] tokens) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Shape shape && Arrays.equals(tokens, shape.tokens);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(tokens);
+        }
+    }
+
+    /**
+     * The values of one column in the current block.
+     */
+    private static final class ColumnBuffer {
+        final List<String> values = new ArrayList<>();
+    }
+
+    /**
+     * The writer of the {@code .col} and {@code .idx} files of one section.
+     */
+    private static final class FamilyWriter {
+        private final DataOutputStream output;
+        private final DataOutputStream index;
+        private long offset;
+        /**
+         * The dictionary of the tags, the attribute names and the string values.
+         */
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private int dictionaryValueCount = 0;
+        private final List<String> newStrings = new ArrayList<>();
+        private final Map<Shape, Integer> shapeIds = new HashMap<>();
+        private final List<Shape> newShapes = new ArrayList<>();
+        /**
+         * The ids of the columns of the values of each shape, in depth-first order, so that the column of a value is
+         * found without building its name.
+         */
+        private final List<int[]> shapeColumns = new ArrayList<>();
+        private final Map<String, Integer> columnIds = new HashMap<>();
+        private final List<ColumnBuffer> columns = new ArrayList<>();
+        private final List<String> newColumns = new ArrayList<>();
+        private int[] rowShapes = new int[BLOCK_SIZE];
+        private int rowCount = 0;
+        private long minTimestamp = Long.MAX_VALUE;
+        private long maxTimestamp = Long.MIN_VALUE;
+        /**
+         * The shape tokens and the values of the element being written.
+         */
+        private int[] tokens = new int[64];
+        private int tokenCount;
+        private String[] values = new String[64];
+        private int valueCount;
+        private int[] lastTokens = new int[0];
+        private int lastShapeId = -1;
+
+        FamilyWriter(File directory, String name) throws IOException {
+            output = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(new File(directory, name + COLUMN_EXTENSION))));
+            index = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(new File(directory, name + INDEX_EXTENSION))));
+            output.write(MAGIC);
+            output.writeByte(VERSION);
+            offset = MAGIC.length + 1;
+        }
+
+        void writeElement(Element element) throws IOException {
+            tokenCount = 0;
+            valueCount = 0;
+            addElement(element);
+            // consecutive elements mostly have the same shape, which is checked without a lookup
+            if (!Arrays.equals(tokens, 0, tokenCount, lastTokens, 0, lastTokens.length)) {
+                Shape shape = new Shape(Arrays.copyOf(tokens, tokenCount));
+                Integer shapeId = shapeIds.get(shape);
+                if (shapeId == null) {
+                    shapeId = addShape(shape);
+                }
+                lastTokens = shape.tokens;
+                lastShapeId = shapeId;
+            }
+            int[] valueColumns = shapeColumns.get(lastShapeId);
+            for (int i = 0; i < valueCount; i++) {
+                columns.get(valueColumns[i]).values.add(values[i]);
+                values[i] = null;
+            }
+            rowShapes[rowCount++] = lastShapeId;
+            for (String attribute : TIMESTAMP_ATTRIBUTES) {
+                String value = element.getAttribute(attribute);
+                if (!value.isEmpty()) {
+                    try {
+                        long timestamp = Long.parseLong(value);
+                        minTimestamp = Math.min(minTimestamp, timestamp);
+                        maxTimestamp = Math.max(maxTimestamp, timestamp);
+                    } catch (NumberFormatException ignored) {
+                    }
+                    break;
+                }
+            }
+            if (rowCount == BLOCK_SIZE) {
+                writeBlock();
+            }
+        }
+
+        /**
+         * Add the shape tokens of the element and the values of its attributes and text, depth first.
+         */
+        private void addElement(Element element) {
+            addToken(intern(element.getTagName()) + 1);
+            NamedNodeMap attributes = element.getAttributes();
+            addToken(attributes.getLength());
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                addToken(intern(attribute.getNodeName()));
+                addValue(attribute.getNodeValue() != null ? attribute.getNodeValue() : "");
+            }
+            NodeList children = element.getChildNodes();
+            int childCountIndex = tokenCount;
+            addToken(0);
+            int childCount = 0;
+            for (int i = 0; i < children.getLength(); i++) {
+                Node child = children.item(i);
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    addElement((Element) child);
+                    childCount++;
+                } else if (child.getNodeType() == Node.TEXT_NODE) {
+                    addToken(TEXT_TOKEN);
+                    addValue(child.getNodeValue());
+                    childCount++;
+                }
+            }
+            tokens[childCountIndex] = childCount;
+        }
+
+        private void addToken(int token) {
+            if (tokenCount == tokens.length) {
+                tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            }
+            tokens[tokenCount++] = token;
+        }
+
+        private void addValue(String value) {
+            if (valueCount == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[valueCount++] = value;
+        }
+
+        /**
+         * Add a new shape, and the columns of its values that are not known yet.
+         *
+         * @return The id of the shape.
+         */
+        private int addShape(Shape shape) {
+            int shapeId = shapeColumns.size();
+            shapeIds.put(shape, shapeId);
+            newShapes.add(shape);
+            List<Integer> valueColumns = new ArrayList<>();
+            addShapeColumns(shape.tokens, 0, "", valueColumns);
+            shapeColumns.add(valueColumns.stream().mapToInt(Integer::intValue).toArray());
+            return shapeId;
+        }
+
+        /**
+         * Add the columns of the element starting at the token index, depth first.
+         *
+         * @return The token index after the element.
+         */
+        private int addShapeColumns(int[] shapeTokens, int index, String parentPath, List<Integer> valueColumns) {
+            String tag = stringOf(shapeTokens[index++] - 1);
+            String path = parentPath.isEmpty() ? tag : parentPath + "/" + tag;
+            int attributeCount = shapeTokens[index++];
+            for (int i = 0; i < attributeCount; i++) {
+                valueColumns.add(columnId(path + "@" + stringOf(shapeTokens[index++])));
+            }
+            int childCount = shapeTokens[index++];
+            for (int i = 0; i < childCount; i++) {
+                if (shapeTokens[index] == TEXT_TOKEN) {
+                    index++;
+                    valueColumns.add(columnId(path + "#text"));
+                } else {
+                    index = addShapeColumns(shapeTokens, index, path, valueColumns);
+                }
+            }
+            return index;
+        }
+
+        private int columnId(String columnName) {
+            return columnIds.computeIfAbsent(columnName, name -> {
+                newColumns.add(name);
+                columns.add(new ColumnBuffer());
+                return columns.size() - 1;
+            });
+        }
+
+        private String stringOf(int id) {
+            return strings.get(id);
+        }
+
+        /**
+         * Get the dictionary id of a tag or an attribute name, adding it to the dictionary if needed.
+         */
+        private int intern(String string) {
+            Integer id = dictionary.get(string);
+            if (id == null) {
+                id = dictionary.size();
+                dictionary.put(string, id);
+                strings.add(string);
+                newStrings.add(string);
+            }
+            return id;
+        }
+
+        /**
+         * Get the dictionary id of a string value, or -1 if the value is stored inline.
+         */
+        private int valueId(String value) {
+            Integer id = dictionary.get(value);
+            if (id != null) return id;
+            if (value.length() > MAX_DICTIONARY_VALUE_LENGTH || dictionaryValueCount >= MAX_DICTIONARY_VALUES) {
+                return -1;
+            }
+            dictionaryValueCount++;
+            return intern(value);
+        }
+
+        private void writeBlock() throws IOException {
+            if (rowCount == 0) return;
+            // The column data is encoded first, as it may add string values to the dictionary of the block.
+            ByteArrayOutputStream columnBytes = new ByteArrayOutputStream();
+            DataOutputStream columnOutput = new DataOutputStream(columnBytes);
+            int columnCount = 0;
+            ByteArrayOutputStream valueBytes = new ByteArrayOutputStream();
+            DataOutputStream valueOutput = new DataOutputStream(valueBytes);
+            for (int columnId = 0; columnId < columns.size(); columnId++) {
+                List<String> values = columns.get(columnId).values;
+                if (values.isEmpty()) continue;
+                valueBytes.reset();
+                byte type = encodeColumn(values, valueOutput);
+                writeVarLong(columnOutput, columnId);
+                columnOutput.writeByte(type);
+                writeVarLong(columnOutput, values.size());
+                writeVarLong(columnOutput, valueBytes.size());
+                valueBytes.writeTo(columnOutput);
+                values.clear();
+                columnCount++;
+            }
+
+            ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+            DataOutputStream block = new DataOutputStream(blockBytes);
+            block.writeInt(rowCount);
+            writeVarLong(block, newStrings.size());
+            for (String string : newStrings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(block, bytes.length);
+                block.write(bytes);
+            }
+            writeVarLong(block, newShapes.size());
+            for (Shape shape : newShapes) {
+                writeVarLong(block, shape.tokens.length);
+                for (int token : shape.tokens) {
+                    writeVarLong(block, token);
+                }
+            }
+            writeVarLong(block, newColumns.size());
+            for (String column : newColumns) {
+                byte[] bytes = column.getBytes(StandardCharsets.UTF_8);
+                writeVarLong(block, bytes.length);
+                block.write(bytes);
+            }
+            valueBytes.reset();
+            for (int i = 0; i < rowCount; i++) {
+                writeVarLong(valueOutput, rowShapes[i]);
+            }
+            writeVarLong(block, valueBytes.size());
+            valueBytes.writeTo(block);
+            writeVarLong(block, columnCount);
+            columnBytes.writeTo(block);
+
+            CRC32 crc = new CRC32();
+            crc.update(blockBytes.toByteArray());
+            output.writeInt(blockBytes.size());
+            blockBytes.writeTo(output);
+            output.writeInt((int) crc.getValue());
+            output.flush();
+            index.writeLong(offset);
+            index.writeInt(rowCount);
+            index.writeLong(minTimestamp);
+            index.writeLong(maxTimestamp);
+            index.flush();
+            offset += 4 + blockBytes.size() + 4;
+
+            newStrings.clear();
+            newShapes.clear();
+            newColumns.clear();
+            rowCount = 0;
+            minTimestamp = Long.MAX_VALUE;
+            maxTimestamp = Long.MIN_VALUE;
+        }
+
+        /**
+         * Encode the values of a column with the most compact type that reproduces all of them exactly.
+         *
+         * @return The type of the column.
+         */
+        private byte encodeColumn(List<String> values, DataOutputStream valueOutput) throws IOException {
+            long[] longs = new long[values.size()];
+            boolean isLong = true;
+            for (int i = 0; i < longs.length && isLong; i++) {
+                isLong = isCanonicalLong(values.get(i));
+                if (isLong) {
+                    longs[i] = Long.parseLong(values.get(i));
+                }
+            }
+            if (isLong) {
+                long previous = 0;
+                for (long value : longs) {
+                    writeVarLong(valueOutput, zigzag(value - previous));
+                    previous = value;
+                }
+                return TYPE_LONG;
+            }
+            double[] doubles = new double[values.size()];
+            boolean[] isSpelled = new boolean[values.size()];
+            String nanText = null;
+            int spelledCount = 0;
+            int maxSpelledCount = (int) (values.size() * MAX_SPELLED_VALUE_SHARE);
+            boolean isDouble = true;
+            for (int i = 0; i < doubles.length && isDouble; i++) {
+                String value = values.get(i);
+                try {
+                    doubles[i] = parseDouble(value);
+                } catch (NumberFormatException e) {
+                    isDouble = false;
+                    break;
+                }
+                if (Double.isNaN(doubles[i])) {
+                    if (nanText == null) {
+                        nanText = value;
+                    }
+                    isSpelled[i] = !value.equals(nanText);
+                } else {
+                    isSpelled[i] = !Double.toString(doubles[i]).equals(value);
+                }
+                if (isSpelled[i]) {
+                    isDouble = ++spelledCount <= maxSpelledCount;
+                }
+            }
+            if (isDouble && spelledCount == 0 && (nanText == null || nanText.equals("NaN"))) {
+                for (double value : doubles) {
+                    valueOutput.writeDouble(value);
+                }
+                return TYPE_DOUBLE;
+            }
+            if (isDouble) {
+                writeString(valueOutput, nanText != null ? nanText : "NaN");
+                for (double value : doubles) {
+                    valueOutput.writeDouble(value);
+                }
+                writeVarLong(valueOutput, spelledCount);
+                int previousRow = 0;
+                for (int i = 0; i < doubles.length; i++) {
+                    if (isSpelled[i]) {
+                        writeVarLong(valueOutput, i - previousRow);
+                        writeString(valueOutput, values.get(i));
+                        previousRow = i;
+                    }
+                }
+                return TYPE_SPELLED_DOUBLE;
+            }
+            for (String value : values) {
+                int id = valueId(value);
+                writeVarLong(valueOutput, id + 1);
+                if (id < 0) {
+                    writeString(valueOutput, value);
+                }
+            }
+            return TYPE_STRING;
+        }
+
+        void close() throws IOException {
+            try {
+                writeBlock();
+            } finally {
+                output.close();
+                index.close();
+            }
+        }
+    }
+
+    /**
+     * Check whether the string is a long that {@link Long#toString(long)} formats back to the same string.
+     */
+    private static boolean isCanonicalLong(String value) {
+        int length = value.length();
+        if (length == 0 || length > 20) return false;
+        int start = value.charAt(0) == '-' ? 1 : 0;
+        if (start == length || (value.charAt(start) == '0' && length > start + 1)) return false;
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        if (value.equals("-0")) return false;
+        try {
+            Long.parseLong(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parse a decimal, which may also be spelled like Python, i.e., {@code nan}, {@code inf} and {@code -inf}.
+     *
+     * @throws NumberFormatException If the string is not a decimal.
+     */
+    static double parseDouble(String value) {
+        switch (value) {
+            case "nan" -> {
+                return Double.NaN;
+            }
+            case "inf" -> {
+                return Double.POSITIVE_INFINITY;
+            }
+            case "-inf" -> {
+                return Double.NEGATIVE_INFINITY;
+            }
+            default -> {
+                // rejects the empty string, and the padded strings that Double.parseDouble trims
+                char first = value.isEmpty() ? ' ' : value.charAt(0);
+                if (first != '-' && first != 'N' && first != 'I' && (first < '0' || first > '9')) {
+                    throw new NumberFormatException("Not a decimal: " + value);
+                }
+                return Double.parseDouble(value);
+            }
+        }
+    }
+
+    private static void writeString(DataOutput output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarLong(DataOutput output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = input.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,126 @@
+package utils;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class debounces actions per key. An action runs once the key has been quiet (i.e., not called again) for the
+ * quiet period, but at the latest after the max latency since the first call of the burst, so that a continuous burst
+ * of calls still runs the action regularly. Only the latest action of a burst runs. The actions run on a single daemon
+ * thread that is idle when nothing is pending.
+ *
+ * @param <K> The type of the key, e.g., the document.
+ */
+public final class Debouncer<K> {
+    private static final Logger LOG = Logger.getInstance(Debouncer.class);
+
+    /**
+     * This class is the pending action of a key.
+     */
+    private final class Pending {
+        private final K key;
+        private final long firstCallTime;
+        private Runnable action;
+        private ScheduledFuture<?> future;
+
+        private Pending(K key, long firstCallTime) {
+            this.key = key;
+            this.firstCallTime = firstCallTime;
+        }
+    }
+
+    private final long quietPeriod;
+    private final long maxLatency;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Map<K, Pending> pendings = new HashMap<>();
+    private boolean isClosed = false;
+
+    /**
+     * Create the debouncer and its thread.
+     *
+     * @param name        The name of the thread.
+     * @param quietPeriod The quiet period in milliseconds.
+     * @param maxLatency  The max latency from the first call of a burst to the action in milliseconds.
+     */
+    public Debouncer(String name, long quietPeriod, long maxLatency) {
+        this.quietPeriod = quietPeriod;
+        this.maxLatency = Math.max(quietPeriod, maxLatency);
+        executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Schedule the action of the key, replacing the pending action of the key if there is one.
+     *
+     * @param key    The key.
+     * @param action The action.
+     */
+    public synchronized void call(K key, Runnable action) {
+        if (isClosed) return;
+        long now = System.currentTimeMillis();
+        Pending pending = pendings.get(key);
+        if (pending == null) {
+            pending = new Pending(key, now);
+            pendings.put(key, pending);
+        } else {
+            pending.future.cancel(false);
+        }
+        pending.action = action;
+        long delay = Math.min(quietPeriod, pending.firstCallTime + maxLatency - now);
+        Pending scheduled = pending;
+        pending.future = executor.schedule(() -> fire(scheduled), Math.max(0, delay), TimeUnit.MILLISECONDS);
+    }
+
+    private void fire(Pending pending) {
+        synchronized (this) {
+            if (pendings.get(pending.key) != pending) return;
+            pendings.remove(pending.key);
+        }
+        run(pending.action);
+    }
+
+    private void run(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to run the debounced action", e);
+        }
+    }
+
+    /**
+     * Run all the pending actions now on the calling thread.
+     */
+    public void flush() {
+        List<Runnable> actions = new ArrayList<>();
+        synchronized (this) {
+            for (Pending pending : pendings.values()) {
+                pending.future.cancel(false);
+                actions.add(pending.action);
+            }
+            pendings.clear();
+        }
+        actions.forEach(this::run);
+    }
+
+    /**
+     * Cancel all the pending actions without running them and stop the thread.
+     */
+    public void close() {
+        synchronized (this) {
+            isClosed = true;
+            pendings.clear();
+        }
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,423 @@
+package utils;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This class is the crash-safe journal of a tracking session. The trackers append every complete element to it as it
+ * is recorded, so that {@code ide_tracking.xml} and {@code eye_tracking.xml} can be rebuilt with {@link #recover} if
+ * the IDE crashes or is killed before the tracking is stopped. The journal is deleted after a clean stop.
+ * <p>
+ * The journal file is written through memory-mapped regions of {@link #REGION_SIZE} bytes, so that appending a record
+ * is a copy into the page cache without a system call, and the written records survive a crash of the IDE process.
+ * Every {@link #COMMIT_INTERVAL} records or {@link #COMMIT_PERIOD} milliseconds, a commit marker with the CRC-32 of the
+ * records since the previous marker is appended, which lets the recovery detect a torn or corrupted tail.
+ * <p>
+ * Layout: each region starts with its size, followed by the records. A record is its length and its body, whose first
+ * byte is its type. A length of 0 is the end of the journal, and {@link #END_OF_REGION} continues at the next region.
+ */
+public final class EventJournal {
+    private static final Logger LOG = Logger.getInstance(EventJournal.class);
+    /**
+     * The size of a memory-mapped region of the journal file. A record larger than this gets a region of its own.
+     */
+    public static final int REGION_SIZE = 16 << 20;
+    /**
+     * The number of records after which a commit marker is appended.
+     */
+    public static final int COMMIT_INTERVAL = 256;
+    /**
+     * The time in milliseconds after which the next record also appends a commit marker.
+     */
+    public static final long COMMIT_PERIOD = 1000;
+    private static final int END_OF_REGION = -1;
+    private static final byte TYPE_OPEN = 1;
+    private static final byte TYPE_ELEMENT = 2;
+    private static final byte TYPE_COMMIT = 3;
+    private static final byte NODE_ELEMENT = 1;
+    private static final byte NODE_TEXT = 2;
+
+    private final Path path;
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart = 0;
+    private final List<List<String>> fileSections = new ArrayList<>();
+    private final CRC32 crc = new CRC32();
+    private int uncommittedCount = 0;
+    private long lastCommitTime = System.currentTimeMillis();
+    private long commitSequence = 0;
+    private boolean isClosed = false;
+    /**
+     * The reusable buffer the records are encoded into before they are copied into the mapped region.
+     */
+    private ByteBuffer scratch = ByteBuffer.allocate(4096);
+
+    /**
+     * Create the journal file, replacing an existing one.
+     *
+     * @param filePath The path of the journal file.
+     * @throws IOException If the file cannot be created or mapped.
+     */
+    public EventJournal(String filePath) throws IOException {
+        path = Paths.get(filePath);
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapRegion(REGION_SIZE);
+    }
+
+    private void mapRegion(int size) throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, size);
+        region.putInt(size);
+    }
+
+    /**
+     * Start journaling an XML file.
+     *
+     * @param rootName     The name of the root element of the XML file, which is also its file name.
+     * @param sectionNames The names of the sections, in the order they appear in the XML file.
+     * @return The id of the file, used to append its elements.
+     */
+    public synchronized int openFile(String rootName, List<String> sectionNames) throws IOException {
+        if (isClosed) return -1;
+        scratch.clear();
+        scratch.put(TYPE_OPEN);
+        putString(rootName);
+        scratch.putInt(sectionNames.size());
+        for (String sectionName : sectionNames) {
+            putString(sectionName);
+        }
+        fileSections.add(List.copyOf(sectionNames));
+        appendScratch();
+        return fileSections.size() - 1;
+    }
+
+    /**
+     * Append a complete element of a file. Elements appended after {@link #close()} are ignored.
+     *
+     * @param fileId      The id of the file returned by {@link #openFile}.
+     * @param sectionName The name of the section, or {@code null} for a header element before the sections (e.g.,
+     *                    {@code <environment>}).
+     * @param element     The XML element.
+     */
+    public synchronized void append(int fileId, String sectionName, Element element) throws IOException {
+        if (isClosed || fileId < 0) return;
+        int sectionIndex = sectionName == null ? -1 : fileSections.get(fileId).indexOf(sectionName);
+        scratch.clear();
+        scratch.put(TYPE_ELEMENT);
+        scratch.putShort((short) fileId);
+        scratch.putShort((short) sectionIndex);
+        putElement(element);
+        appendScratch();
+    }
+
+    /**
+     * Append a commit marker for the records since the previous marker.
+     */
+    public synchronized void commit() throws IOException {
+        if (isClosed || uncommittedCount == 0) return;
+        scratch.clear();
+        scratch.put(TYPE_COMMIT);
+        scratch.putLong(commitSequence++);
+        scratch.putInt(uncommittedCount);
+        scratch.putInt((int) crc.getValue());
+        writeRecord();
+        crc.reset();
+        uncommittedCount = 0;
+        lastCommitTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Commit the last records, write the journal to the disk, and close it.
+     */
+    public synchronized void close() throws IOException {
+        if (isClosed) return;
+        commit();
+        isClosed = true;
+        region.force();
+        region = null;
+        channel.close();
+    }
+
+    /**
+     * Close the journal and delete its file, e.g., after the XML files are written by a clean stop.
+     */
+    public void delete() throws IOException {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // the file cannot be deleted while it is still mapped on some platforms
+            LOG.warn("Failed to delete the journal " + path, e);
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    private void appendScratch() throws IOException {
+        writeRecord();
+        crc.update(scratch.array(), 0, scratch.limit());
+        uncommittedCount++;
+        if (uncommittedCount >= COMMIT_INTERVAL || System.currentTimeMillis() - lastCommitTime >= COMMIT_PERIOD) {
+            commit();
+        }
+    }
+
+    /**
+     * Copy the encoded record into the mapped region, mapping the next region if it does not fit. The length is written
+     * after the body, so that a record cut by a crash is read as the end of the journal.
+     */
+    private void writeRecord() throws IOException {
+        scratch.flip();
+        int length = scratch.remaining();
+        // the record and the end of the journal (or of the region) after it must fit in the region
+        if (region.remaining() < 4 + length + 4) {
+            region.putInt(END_OF_REGION);
+            regionStart += region.capacity();
+            mapRegion(Math.max(REGION_SIZE, 4 + 4 + length + 4));
+        }
+        int recordStart = region.position();
+        region.position(recordStart + 4);
+        region.put(scratch.duplicate());
+        region.putInt(recordStart, length);
+    }
+
+    private void putElement(Element element) {
+        putString(element.getTagName());
+        NamedNodeMap attributes = element.getAttributes();
+        ensureScratch(4);
+        scratch.putInt(attributes.getLength());
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            putString(attribute.getNodeName());
+            putString(attribute.getNodeValue() != null ? attribute.getNodeValue() : "");
+        }
+        NodeList children = element.getChildNodes();
+        int childCount = 0;
+        for (int i = 0; i < children.getLength(); i++) {
+            short type = children.item(i).getNodeType();
+            if (type == Node.ELEMENT_NODE || type == Node.TEXT_NODE) {
+                childCount++;
+            }
+        }
+        ensureScratch(4);
+        scratch.putInt(childCount);
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                ensureScratch(1);
+                scratch.put(NODE_ELEMENT);
+                putElement((Element) child);
+            } else if (child.getNodeType() == Node.TEXT_NODE) {
+                ensureScratch(1);
+                scratch.put(NODE_TEXT);
+                putString(child.getNodeValue());
+            }
+        }
+    }
+
+    private void putString(String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        ensureScratch(4 + bytes.length);
+        scratch.putInt(bytes.length);
+        scratch.put(bytes);
+    }
+
+    private void ensureScratch(int length) {
+        if (scratch.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + length));
+            larger.put(scratch.flip());
+            scratch = larger;
+        }
+    }
+
+    /**
+     * Rebuild the XML files of all the journaled files from a journal, e.g., after the IDE crashed. The records up to
+     * the last valid commit marker are recovered, and so are the complete records after it. A checksum mismatch ends
+     * the recovery at the previous commit marker.
+     *
+     * @param journalPath     The path of the journal file.
+     * @param outputDirectory The directory of the rebuilt XML files, e.g., {@code ide_tracking.xml}.
+     * @return The number of recovered elements.
+     * @throws IOException If the journal cannot be read or the XML files cannot be written.
+     */
+    public static int recover(Path journalPath, String outputDirectory) throws IOException {
+        Document document;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+        List<String> rootNames = new ArrayList<>();
+        List<List<String>> sectionNames = new ArrayList<>();
+        List<List<Element>> headers = new ArrayList<>();
+        List<SpillingXMLWriter> writers = new ArrayList<>();
+        List<ByteBuffer> pending = new ArrayList<>();
+        int recoveredCount = 0;
+        int uncommittedCount = 0;
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long regionStart = 0;
+            CRC32 crc = new CRC32();
+            boolean isEnd = false;
+            while (!isEnd && regionStart + 4 <= size) {
+                ByteBuffer sizeBuffer = ByteBuffer.allocate(4);
+                channel.read(sizeBuffer, regionStart);
+                int regionSize = sizeBuffer.flip().getInt();
+                if (regionSize <= 0) break;
+                ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                        Math.min(regionSize, size - regionStart));
+                region.position(4);
+                while (true) {
+                    if (region.remaining() < 4) {
+                        isEnd = true;
+                        break;
+                    }
+                    int length = region.getInt();
+                    if (length == END_OF_REGION) break;
+                    if (length <= 0 || length > region.remaining()) {
+                        isEnd = true;
+                        break;
+                    }
+                    ByteBuffer body = region.slice(region.position(), length);
+                    region.position(region.position() + length);
+                    if (body.get(0) == TYPE_COMMIT) {
+                        body.position(1 + 8);
+                        int count = body.getInt();
+                        int checksum = body.getInt();
+                        if (count != pending.size() || checksum != (int) crc.getValue()) {
+                            LOG.warn("Journal checksum mismatch, recovering up to the previous commit");
+                            pending.clear();
+                            isEnd = true;
+                            break;
+                        }
+                        for (ByteBuffer record : pending) {
+                            recoveredCount += applyRecord(record, document, rootNames, sectionNames, headers, writers,
+                                    outputDirectory);
+                        }
+                        pending.clear();
+                        crc.reset();
+                    } else {
+                        crc.update(body.duplicate());
+                        pending.add(body);
+                    }
+                }
+                regionStart += regionSize;
+            }
+            // the complete records after the last commit marker, which are only lost if the whole system crashed
+            for (ByteBuffer record : pending) {
+                try {
+                    recoveredCount += applyRecord(record, document, rootNames, sectionNames, headers, writers,
+                            outputDirectory);
+                    uncommittedCount++;
+                } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                         | DOMException e) {
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < writers.size(); i++) {
+            writers.get(i).merge(outputDirectory + "/" + rootNames.get(i) + ".xml", rootNames.get(i), headers.get(i));
+        }
+        LOG.info("Recovered " + recoveredCount + " elements from " + journalPath + ", " + uncommittedCount
+                + " records after the last commit");
+        return recoveredCount;
+    }
+
+    /**
+     * Apply a journal record to the rebuilt files.
+     *
+     * @return The number of recovered elements, i.e., 1 for an element record and 0 otherwise.
+     */
+    private static int applyRecord(ByteBuffer record, Document document, List<String> rootNames,
+                                   List<List<String>> sectionNames, List<List<Element>> headers,
+                                   List<SpillingXMLWriter> writers, String outputDirectory) throws IOException {
+        ByteBuffer body = record.duplicate().position(0);
+        byte type = body.get();
+        if (type == TYPE_OPEN) {
+            String rootName = getString(body);
+            String[] sections = new String[body.getInt()];
+            for (int i = 0; i < sections.length; i++) {
+                sections[i] = getString(body);
+            }
+            rootNames.add(rootName);
+            sectionNames.add(Arrays.asList(sections));
+            headers.add(new ArrayList<>());
+            writers.add(new SpillingXMLWriter(outputDirectory + "/spill-" + rootName, Arrays.asList(sections)));
+            return 0;
+        }
+        if (type != TYPE_ELEMENT) {
+            throw new IllegalArgumentException("Unknown journal record type " + type);
+        }
+        int fileId = body.getShort();
+        int sectionIndex = body.getShort();
+        Element element = getElement(body, document);
+        if (sectionIndex < 0) {
+            headers.get(fileId).add(element);
+        } else {
+            writers.get(fileId).writeElement(sectionNames.get(fileId).get(sectionIndex), element);
+        }
+        return 1;
+    }
+
+    private static Element getElement(ByteBuffer body, Document document) {
+        Element element = document.createElement(getString(body));
+        int attributeCount = body.getInt();
+        for (int i = 0; i < attributeCount; i++) {
+            element.setAttribute(getString(body), getString(body));
+        }
+        int childCount = body.getInt();
+        for (int i = 0; i < childCount; i++) {
+            if (body.get() == NODE_ELEMENT) {
+                element.appendChild(getElement(body, document));
+            } else {
+                element.appendChild(document.createTextNode(getString(body)));
+            }
+        }
+        return element;
+    }
+
+    private static String getString(ByteBuffer body) {
+        byte[] bytes = new byte[body.getInt()];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rebuild the XML files from a journal from the command line.
+     *
+     * @param args The journal file, and optionally the output directory. Without the output directory, the XML files
+     *             are written next to the journal.
+     * @throws IOException If the XML files cannot be rebuilt.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: java utils.EventJournal <journal file> [output directory]");
+            System.exit(1);
+        }
+        Path journalPath = Paths.get(args[0]).toAbsolutePath();
+        String outputDirectory = args.length > 1 ? args[1] : journalPath.getParent().toString();
+        System.out.println("Recovered " + recover(journalPath, outputDirectory) + " elements");
+    }
+}
@@ -0,0 +1,134 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a histogram of latencies with power-of-two buckets, from 1 microsecond up to about 17 seconds. Each
+ * bucket counts the latencies up to its upper bound, and the last bucket also counts the longer ones. Recording is
+ * lock-free, so it can be done from any thread.
+ */
+public final class LatencyHistogram {
+    /**
+     * The number of buckets.
+     */
+    public static final int BUCKET_COUNT = 25;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Create the histogram.
+     *
+     * @param name The name of the histogram, e.g., the stage it measures.
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the name of the histogram.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Record a latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(1, (nanos + 999) / 1000);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros - 1));
+        counts.incrementAndGet(bucket);
+    }
+
+    /**
+     * Clear the counts.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Get the upper bound of a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The upper bound in milliseconds.
+     */
+    public static double getUpperBound(int bucket) {
+        return (1L << bucket) / 1000.0;
+    }
+
+    /**
+     * Get the number of latencies in a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The number of latencies.
+     */
+    public long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    /**
+     * Get the total number of latencies.
+     *
+     * @return The number of latencies.
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Get the upper bound of the bucket of a percentile.
+     *
+     * @param percentile The percentile, e.g., 99.
+     * @return The upper bound in milliseconds, or 0 if no latency is recorded.
+     */
+    public double getPercentile(double percentile) {
+        long total = getTotalCount();
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+            if (count >= Math.max(1, rank)) {
+                return getUpperBound(i);
+            }
+        }
+        return getUpperBound(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Get the rows of the histogram for a CSV file, i.e., the name, the upper bound in milliseconds and the count of each
+     * non-empty bucket.
+     *
+     * @return The rows.
+     */
+    public List<String[]> toRows() {
+        List<String[]> rows = new ArrayList<>();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = counts.get(i);
+            if (count > 0) {
+                rows.add(new String[]{name, String.valueOf(getUpperBound(i)), String.valueOf(count)});
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": p50 " + getPercentile(50) + " ms, p90 " + getPercentile(90) + " ms, p99 "
+                + getPercentile(99) + " ms (" + getTotalCount() + ")";
+    }
+}
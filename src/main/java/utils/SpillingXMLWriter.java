@@ -0,0 +1,174 @@
+package utils;
+
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class is used to write an XML file whose root element consists of several sections (e.g., {@code <actions>},
+ * {@code <typings>}) that are filled at the same time. While recording, the elements of each section are streamed to a
+ * separate spill file, so that the memory usage stays flat regardless of the session length. {@link #merge} then
+ * concatenates the spill files into the final XML file in the order of the sections.
+ */
+public class SpillingXMLWriter {
+    /**
+     * The number of written elements of a section after which its spill file is flushed to the disk.
+     */
+    private static final int FLUSH_INTERVAL = 256;
+    private final File spillDirectory;
+    private final Map<String, Spill> spills = new LinkedHashMap<>();
+    private boolean isMerged = false;
+
+    /**
+     * The spill file of one section.
+     */
+    private static class Spill {
+        final File file;
+        final Writer fileWriter;
+        final XMLStreamWriter writer;
+        int elementCount = 0;
+
+        Spill(File file) throws IOException {
+            this.file = file;
+            fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+            try {
+                writer = XMLOutputFactory.newInstance().createXMLStreamWriter(fileWriter);
+            } catch (XMLStreamException e) {
+                fileWriter.close();
+                throw new IOException(e);
+            }
+        }
+
+        void close() throws IOException {
+            try {
+                writer.flush();
+                writer.close();
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            } finally {
+                fileWriter.close();
+            }
+        }
+    }
+
+    /**
+     * Create the spill files of all the sections.
+     *
+     * @param spillDirectoryPath The directory of the spill files. It is deleted after {@link #merge}.
+     * @param sectionNames       The names of the sections, in the order they appear in the final XML file.
+     */
+    public SpillingXMLWriter(String spillDirectoryPath, List<String> sectionNames) throws IOException {
+        spillDirectory = new File(spillDirectoryPath);
+        spillDirectory.mkdirs();
+        for (String sectionName : sectionNames) {
+            spills.put(sectionName, new Spill(new File(spillDirectory, sectionName + ".xml.part")));
+        }
+    }
+
+    /**
+     * Append the complete element to the given section. Elements written after {@link #merge} are ignored.
+     *
+     * @param sectionName The name of the section.
+     * @param element     The XML element.
+     */
+    public synchronized void writeElement(String sectionName, Element element) throws IOException {
+        if (isMerged) return;
+        Spill spill = spills.get(sectionName);
+        if (spill == null) {
+            throw new IllegalArgumentException("Unknown section: " + sectionName);
+        }
+        try {
+            // depth 2: the root element and the section element
+            XMLWriter.writeElement(spill.writer, element, 2);
+            if (++spill.elementCount % FLUSH_INTERVAL == 0) {
+                spill.writer.flush();
+                spill.fileWriter.flush();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Write the final XML file. The header elements come first, followed by all the sections with the content of their
+     * spill files. The spill files are deleted afterwards.
+     *
+     * @param filePath       The path of the XML file.
+     * @param rootName       The name of the root element.
+     * @param headerElements The elements written before the sections (e.g., {@code <environment>}).
+     */
+    public synchronized void merge(String filePath, String rootName, List<Element> headerElements) throws IOException {
+        if (isMerged) return;
+        try (Writer fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath), StandardCharsets.UTF_8))) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(fileWriter);
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement(rootName);
+            for (Element headerElement : headerElements) {
+                XMLWriter.writeElement(writer, headerElement, 1);
+            }
+            transferSections(writer, fileWriter);
+            XMLWriter.writeIndent(writer, 0);
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Write all the sections with the content of their spill files as sub-elements of the root element of another XML
+     * file, i.e., at depth 1. The spill files are deleted afterwards, and elements written later are ignored.
+     *
+     * @param writer     The XML writer of the other file, with the root element open.
+     * @param fileWriter The underlying writer of the XML writer, used to copy the content of the spill files.
+     */
+    synchronized void transferSections(XMLStreamWriter writer, Writer fileWriter) throws IOException, XMLStreamException {
+        if (isMerged) return;
+        isMerged = true;
+        for (Spill spill : spills.values()) {
+            spill.close();
+        }
+        try {
+            for (Map.Entry<String, Spill> entry : spills.entrySet()) {
+                XMLWriter.writeIndent(writer, 1);
+                if (entry.getValue().elementCount == 0) {
+                    writer.writeEmptyElement(entry.getKey());
+                    continue;
+                }
+                writer.writeStartElement(entry.getKey());
+                // writing empty characters closes the start tag before the raw content of the spill file is copied
+                writer.writeCharacters("");
+                writer.flush();
+                try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(entry.getValue().file), StandardCharsets.UTF_8))) {
+                    reader.transferTo(fileWriter);
+                }
+                XMLWriter.writeIndent(writer, 1);
+                writer.writeEndElement();
+            }
+        } finally {
+            for (Spill spill : spills.values()) {
+                spill.file.delete();
+            }
+            // the directory is kept if another writer still spills into it
+            spillDirectory.delete();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package utils;
+
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * This class is used to write an XML file incrementally. Elements are appended to the file as soon as they are
+ * complete, so that the memory usage stays bounded and the recorded data survives an IDE crash up to the last flush.
+ * All the open elements, including the root element, are closed by {@link #close()}.
+ */
+public class StreamingXMLWriter {
+    /**
+     * The number of written elements after which the buffered output is flushed to the disk.
+     */
+    private static final int FLUSH_INTERVAL = 256;
+    private final Writer fileWriter;
+    private final XMLStreamWriter writer;
+    /**
+     * The names of the elements that are started but not yet ended, the innermost one first.
+     */
+    private final Deque<String> openElements = new ArrayDeque<>();
+    private int unflushedElements = 0;
+    private boolean isClosed = false;
+
+    /**
+     * Create the XML file and start the root element.
+     *
+     * @param filePath The path of the XML file.
+     * @param rootName The name of the root element.
+     */
+    public StreamingXMLWriter(String filePath, String rootName) throws IOException {
+        File file = new File(filePath);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(fileWriter);
+            writer.writeStartDocument("UTF-8", "1.0");
+        } catch (XMLStreamException e) {
+            fileWriter.close();
+            throw new IOException(e);
+        }
+        startElement(rootName);
+    }
+
+    /**
+     * Start a new element. The following elements are written as its sub-elements until {@link #endElement()}.
+     *
+     * @param name The name of the element.
+     */
+    public synchronized void startElement(String name) throws IOException {
+        if (isClosed) return;
+        try {
+            if (!openElements.isEmpty()) {
+                XMLWriter.writeIndent(writer, openElements.size());
+            }
+            writer.writeStartElement(name);
+            openElements.push(name);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * End the innermost element started by {@link #startElement(String)}.
+     */
+    public synchronized void endElement() throws IOException {
+        if (isClosed || openElements.isEmpty()) return;
+        try {
+            openElements.pop();
+            XMLWriter.writeIndent(writer, openElements.size());
+            writer.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Append the complete element to the innermost open element. Elements written after {@link #close()} are ignored.
+     *
+     * @param element The XML element.
+     */
+    public synchronized void writeElement(Element element) throws IOException {
+        if (isClosed) return;
+        try {
+            XMLWriter.writeElement(writer, element, openElements.size());
+            if (++unflushedElements >= FLUSH_INTERVAL) {
+                writer.flush();
+                fileWriter.flush();
+                unflushedElements = 0;
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * End all the open elements except the root element, and append all the sections of the spilling writer to the root
+     * element (e.g., the {@code <fixations>} collected while the {@code <gazes>} were written).
+     *
+     * @param spillingWriter The spilling writer. Its spill files are deleted afterwards.
+     */
+    public synchronized void appendSections(SpillingXMLWriter spillingWriter) throws IOException {
+        if (isClosed) return;
+        while (openElements.size() > 1) {
+            endElement();
+        }
+        try {
+            spillingWriter.transferSections(writer, fileWriter);
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * End all the open elements, including the root element, and close the file.
+     */
+    public synchronized void close() throws IOException {
+        if (isClosed) return;
+        try {
+            while (!openElements.isEmpty()) {
+                endElement();
+            }
+            writer.writeEndDocument();
+            writer.flush();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            isClosed = true;
+            fileWriter.close();
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package utils;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Element;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -14,6 +20,11 @@ import java.io.File;
  * This class is used to write the XML document to the XML file.
  */
 public class XMLWriter {
+    /**
+     * The indentation used for each nesting level when streaming elements.
+     */
+    private static final String INDENT = "    ";
+
     /**
      * Write the formatted XML document to the XML file.
      *
@@ -28,4 +39,59 @@ public class XMLWriter {
         StreamResult result = new StreamResult(new File(filePath));
         transformer.transform(source, result);
     }
+
+    /**
+     * Write the formatted XML element and all its sub-elements to the XML stream, starting on a new line indented to
+     * the given depth. The attributes are written in the same order as {@link #writeToXML(Document, String)} does.
+     *
+     * @param writer  The XML stream writer.
+     * @param element The XML element.
+     * @param depth   The nesting depth of the element.
+     */
+    public static void writeElement(XMLStreamWriter writer, Element element, int depth) throws XMLStreamException {
+        writeIndent(writer, depth);
+        NodeList children = element.getChildNodes();
+        if (children.getLength() == 0) {
+            writer.writeEmptyElement(element.getTagName());
+        } else {
+            writer.writeStartElement(element.getTagName());
+        }
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            writer.writeAttribute(attribute.getNodeName(), attribute.getNodeValue() != null ? attribute.getNodeValue() : "");
+        }
+        if (children.getLength() == 0) {
+            // writing empty characters closes the pending empty element, so that flushed output is always well-formed
+            writer.writeCharacters("");
+            return;
+        }
+        boolean hasElementChild = false;
+        for (int i = 0; i < children.getLength(); i++) {
+            Node child = children.item(i);
+            if (child.getNodeType() == Node.ELEMENT_NODE) {
+                writeElement(writer, (Element) child, depth + 1);
+                hasElementChild = true;
+            } else if (child.getNodeType() == Node.TEXT_NODE) {
+                writer.writeCharacters(child.getNodeValue());
+            }
+        }
+        if (hasElementChild) {
+            writeIndent(writer, depth);
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * Write a line break followed by the indentation of the given depth.
+     *
+     * @param writer The XML stream writer.
+     * @param depth  The nesting depth.
+     */
+    public static void writeIndent(XMLStreamWriter writer, int depth) throws XMLStreamException {
+        writer.writeCharacters("\n");
+        for (int i = 0; i < depth; i++) {
+            writer.writeCharacters(INDENT);
+        }
+    }
 }